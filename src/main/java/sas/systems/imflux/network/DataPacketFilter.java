@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Sebastian Schmidl
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sas.systems.imflux.network;
+
+import java.net.SocketAddress;
+
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.DataPacketView;
+
+/**
+ * Interface for deciding whether a received RTP packet is worth decoding. The implementing class only sees the header 
+ * of the encoded packet, so packets which would be discarded anyway never get materialized as {@link DataPacket}.
+ * 
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public interface DataPacketFilter {
+
+	/**
+	 * Decides whether the packet described by {@code header} should be decoded and forwarded to the 
+	 * {@link DataPacketReceiver}. The {@code header} is only valid during this call.
+	 * 
+	 * @param origin source of the packet
+	 * @param header view on the header of the received packet
+	 * @return {@code true} if the packet should be decoded, {@code false} to drop it
+	 */
+	boolean acceptDataPacket(SocketAddress origin, DataPacketView header);
+}
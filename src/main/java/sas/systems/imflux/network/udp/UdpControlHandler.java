@@ -61,6 +61,19 @@ public class UdpControlHandler extends SimpleChannelInboundHandler<AddressedEnve
     }
     
     // SimpleChannelUpstreamHandler -----------------------------------------------------------------------------------
+    /**
+     * Only {@link AddressedEnvelope}s containing a {@link CompoundControlPacket} are handled, other messages (e.g. 
+     * data packets received on a multiplexed channel) are passed to the next handler.
+     * 
+     * @param msg the inbound message
+     * @return {@code true} if the message should be handled by this handler
+     */
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        return super.acceptInboundMessage(msg) 
+        		&& (((AddressedEnvelope<?, ?>) msg).content() instanceof CompoundControlPacket);
+    }
+
     @Override
 	protected void channelRead0(ChannelHandlerContext ctx, AddressedEnvelope<CompoundControlPacket, SocketAddress> msg) throws Exception {
     	this.messageReceived(ctx, msg);
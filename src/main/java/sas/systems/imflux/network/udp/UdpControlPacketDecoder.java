@@ -61,29 +61,23 @@ public class UdpControlPacketDecoder extends MessageToMessageDecoder<DatagramPac
     public static UdpControlPacketDecoder getInstance() {
         return InstanceHolder.INSTANCE;
     }
-    
-    // MessageToMessageEncoder ----------------------------------------------------------------------------------------
-    /**
-     * Decodes a {@link DatagramPacket} to a {@link CompoundControlPacket} wrapped into an {@link AddressedEnvelope}.
-     * 
-     * @param ctx The context of the ChannelHandler
-     * @param msg the message which should be encoded
-     * @param out a list where all messages are written to
-     */
-	@Override
-	protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) throws Exception {
-		final ByteBuf content = msg.content();
-		final SocketAddress sender = msg.sender();
-		final SocketAddress recipient = msg.recipient();
-		
+
+	/**
+	 * Decodes all control packets contained in the buffer.
+	 * 
+	 * @param content the received bytes, the reader index is moved past the decoded packets
+	 * @return the decoded packets or {@code null} if the buffer did not contain any valid control packet
+	 */
+	public static CompoundControlPacket decodeCompoundPacket(ByteBuf content) {
 		if ((content.readableBytes() % 4) != 0) {
             LOG.debug("Invalid RTCP packet received: total length should be multiple of 4 but is {}",
             		content.readableBytes());
-            return;
+            return null;
         }
 
         // Usually 2 packets per UDP frame...
         final List<ControlPacket> controlPacketList = new ArrayList<>(2);
+        final int size = content.readableBytes();
 
         // While there's data to read, keep on decoding.
         while (content.readableBytes() > 0) {
@@ -99,15 +93,37 @@ public class UdpControlPacketDecoder extends MessageToMessageDecoder<DatagramPac
             }
         }
 
-        if (!controlPacketList.isEmpty()) {
+        // TODO shouldn't the whole compound packet be discarded when one of them has errors?!
+        if (controlPacketList.isEmpty()) {
+        	return null;
+        }
+        final CompoundControlPacket compoundPacket = new CompoundControlPacket(controlPacketList);
+        compoundPacket.setEncodedSize(size - content.readableBytes());
+        return compoundPacket;
+	}
+    
+    // MessageToMessageEncoder ----------------------------------------------------------------------------------------
+    /**
+     * Decodes a {@link DatagramPacket} to a {@link CompoundControlPacket} wrapped into an {@link AddressedEnvelope}.
+     * 
+     * @param ctx The context of the ChannelHandler
+     * @param msg the message which should be encoded
+     * @param out a list where all messages are written to
+     */
+	@Override
+	protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) throws Exception {
+		final SocketAddress sender = msg.sender();
+		final SocketAddress recipient = msg.recipient();
+		
+		final CompoundControlPacket compoundPacket = decodeCompoundPacket(msg.content());
+        if (compoundPacket != null) {
             // Only forward to next ChannelHandler when there were more than one valid decoded packets.
-            // TODO shouldn't the whole compound packet be discarded when one of them has errors?!
 			final AddressedEnvelope<CompoundControlPacket, SocketAddress> newMsg = 
-					new DefaultAddressedEnvelope<>(new CompoundControlPacket(controlPacketList), recipient, sender);
+					new DefaultAddressedEnvelope<>(compoundPacket, recipient, sender);
 			out.add(newMsg);
         }
 	}
-	
+
 	// private classes ------------------------------------------------------------------------------------------------
     /**
      * Factory class for the {@link UdpControlPacketDecoder}.
@@ -58,6 +58,19 @@ public class UdpControlPacketEncoder extends MessageToMessageEncoder<AddressedEn
     }
 	
     // MessageToMessageEncoder ----------------------------------------------------------------------------------------
+    /**
+     * Only {@link AddressedEnvelope}s containing a {@link CompoundControlPacket} are encoded, other envelopes (e.g. 
+     * data packets sent on a multiplexed channel) are passed through.
+     * 
+     * @param msg the outbound message
+     * @return {@code true} if the message should be encoded by this encoder
+     */
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        return super.acceptOutboundMessage(msg) 
+        		&& (((AddressedEnvelope<?, ?>) msg).content() instanceof CompoundControlPacket);
+    }
+
     /**
      * Encodes a {@link CompoundControlPacket} wrapped into an {@link AddressedEnvelope} to a {@link ByteBuf} also wrapped
      * into an {@link AddressedEnvelope}. 
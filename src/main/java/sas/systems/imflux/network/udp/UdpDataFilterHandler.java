@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.network.udp;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+import sas.systems.imflux.network.DataPacketFilter;
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.DataPacketView;
+
+/**
+ * Inspects the header of received {@link DatagramPacket}s through a {@link DataPacketView} and drops the ones the 
+ * {@link DataPacketFilter} does not accept, before a {@link DataPacket} is decoded from them. Accepted datagrams are 
+ * passed on unchanged. It must be placed in front of the {@link UdpDataPacketDecoder} in the {@link ChannelPipeline}.
+ * <p/>
+ * The handler reuses one view for all packets and therefore must not be shared between channels.
+ * 
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class UdpDataFilterHandler extends ChannelInboundHandlerAdapter {
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private final DataPacketFilter filter;
+    private final DataPacketView view;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    /**
+     * Creates a new {@link UdpDataFilterHandler} asking the specified {@link DataPacketFilter}-implementation.
+     * 
+     * @param filter concrete class implementing {@link DataPacketFilter}
+     */
+    public UdpDataFilterHandler(DataPacketFilter filter) {
+        this.filter = filter;
+        this.view = new DataPacketView();
+    }
+
+    // ChannelInboundHandlerAdapter -----------------------------------------------------------------------------------
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof DatagramPacket)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        final DatagramPacket packet = (DatagramPacket) msg;
+        boolean accepted = false;
+        try {
+            this.view.wrap(packet.content());
+            accepted = this.view.isValid() && this.filter.acceptDataPacket(packet.sender(), this.view);
+        } finally {
+            this.view.clear();
+            if (!accepted) {
+                // dropped or failed, the datagram is not passed on
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        if (accepted) {
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
@@ -52,6 +52,10 @@ public class UdpDataHandler extends SimpleChannelInboundHandler<AddressedEnvelop
      * This handler deals with the {@link DataPacket}s wrapped into an {@link AddressedEnvelope} to
 	 * get the sender address when the {@link SocketChannel} is not connected to a remote (just bound to the 
 	 * local address and port).
+	 * <p/>
+	 * The received {@link DataPacket} (and with it its payload) is released as soon as 
+	 * {@link DataPacketReceiver#dataPacketReceived(SocketAddress, DataPacket)} returns. Receivers that need to keep the
+	 * packet beyond that call must {@link DataPacket#retain() retain} it and release it when they are done.
      * 
      * @param receiver concrete class implementing {@link DataPacketReceiver}
      */
@@ -61,6 +65,18 @@ public class UdpDataHandler extends SimpleChannelInboundHandler<AddressedEnvelop
     }
     
     // SimpleChannelUpstreamHandler -----------------------------------------------------------------------------------
+    /**
+     * Only {@link AddressedEnvelope}s containing a {@link DataPacket} are handled, other messages (e.g. control packets
+     * received on a multiplexed channel) are passed to the next handler.
+     * 
+     * @param msg the inbound message
+     * @return {@code true} if the message should be handled by this handler
+     */
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        return super.acceptInboundMessage(msg) && (((AddressedEnvelope<?, ?>) msg).content() instanceof DataPacket);
+    }
+
     @Override
 	protected void channelRead0(ChannelHandlerContext ctx, AddressedEnvelope<DataPacket, SocketAddress> msg) throws Exception {
     	this.messageReceived(ctx, msg);
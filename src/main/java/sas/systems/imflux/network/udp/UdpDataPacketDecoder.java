@@ -45,8 +45,12 @@ public class UdpDataPacketDecoder extends MessageToMessageDecoder<DatagramPacket
     // constants ------------------------------------------------------------------------------------------------------
     protected static final Logger LOG = Logger.getLogger(UdpDataPacketDecoder.class);
 
+    // configuration --------------------------------------------------------------------------------------------------
+    private final boolean zeroCopy;
+
     // constructor ----------------------------------------------------------------------------------------------------
- 	private UdpDataPacketDecoder() {
+ 	private UdpDataPacketDecoder(boolean zeroCopy) {
+ 		this.zeroCopy = zeroCopy;
  	}
 
  	// public static methods ------------------------------------------------------------------------------------------
@@ -57,6 +61,18 @@ public class UdpDataPacketDecoder extends MessageToMessageDecoder<DatagramPacket
      public static UdpDataPacketDecoder getInstance() {
          return InstanceHolder.INSTANCE;
      }
+
+     /**
+      * Returns the zero-copy variant of this decoder. The payload of each decoded {@link DataPacket} is a retained 
+      * slice of the received datagram instead of a copy and the packet itself is taken from a pool (see 
+      * {@link DataPacket#decodePooled(ByteBuf)}). The decoded packet owns that reference and is released by the 
+      * {@link UdpDataHandler} after the {@link sas.systems.imflux.network.DataPacketReceiver} returned.
+      * 
+      * @return zero-copy instance of UdpDataPacketDecoder
+      */
+     public static UdpDataPacketDecoder getZeroCopyInstance() {
+         return InstanceHolder.ZERO_COPY_INSTANCE;
+     }
      
     // MessageToMessageDecoder ------------------------------------------------------------------------------------------------
     /**
@@ -74,7 +90,7 @@ public class UdpDataPacketDecoder extends MessageToMessageDecoder<DatagramPacket
 		final SocketAddress recipient = msg.recipient();
 		
         try {
-            final DataPacket dataPacket = DataPacket.decode(content);
+            final DataPacket dataPacket = this.zeroCopy ? DataPacket.decodePooled(content) : DataPacket.decode(content);
             final AddressedEnvelope<DataPacket, SocketAddress> newMsg = 
     				new DefaultAddressedEnvelope<>(
     						dataPacket, recipient, sender);
@@ -95,6 +111,7 @@ public class UdpDataPacketDecoder extends MessageToMessageDecoder<DatagramPacket
     	 * Private constructor for hiding the implicit default one.
     	 */
     	private InstanceHolder() {}
-        private static final UdpDataPacketDecoder INSTANCE = new UdpDataPacketDecoder();
+        private static final UdpDataPacketDecoder INSTANCE = new UdpDataPacketDecoder(false);
+        private static final UdpDataPacketDecoder ZERO_COPY_INSTANCE = new UdpDataPacketDecoder(true);
     }
 }
\ No newline at end of file
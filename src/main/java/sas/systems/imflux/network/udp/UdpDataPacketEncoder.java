@@ -17,7 +17,6 @@
 package sas.systems.imflux.network.udp;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.AddressedEnvelope;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler.Sharable;
@@ -60,10 +59,25 @@ public class UdpDataPacketEncoder extends MessageToMessageEncoder<AddressedEnvel
     }
 
     // MessageToMessageEncoder ------------------------------------------------------------------------------------------------
+    /**
+     * Only {@link AddressedEnvelope}s containing a {@link DataPacket} are encoded, already encoded envelopes (e.g. 
+     * containing a {@link ByteBuf}) are passed through.
+     * 
+     * @param msg the outbound message
+     * @return {@code true} if the message should be encoded by this encoder
+     */
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        return super.acceptOutboundMessage(msg) && (((AddressedEnvelope<?, ?>) msg).content() instanceof DataPacket);
+    }
+
     /**
      * Encodes a {@link DataPacket} wrapped into an {@link AddressedEnvelope} in a {@link ByteBuf} also wrapped into an 
      * {@link AddressedEnvelope}. If the {@link DataPacket}'s content is not empty it is added, otherwise an empty ByteBuf 
      * is added to the AddressedEnvelope.
+     * <p/>
+     * The header is written into a buffer of the channel's allocator and the payload is attached to it without 
+     * copying (see {@link DataPacket#encode(io.netty.buffer.ByteBufAllocator, int)}).
      * 
      * @param ctx The context of the ChannelHandler
      * @param msg the message which should be encoded
@@ -76,12 +90,7 @@ public class UdpDataPacketEncoder extends MessageToMessageEncoder<AddressedEnvel
 		final SocketAddress recipient = msg.recipient();
 		final SocketAddress sender = ctx.channel().localAddress();
 		
-		final ByteBuf buffer;
-		if (dataPacket.getDataSize() == 0) {
-			buffer = Unpooled.EMPTY_BUFFER;
-        } else {
-        	buffer = dataPacket.encode();
-        }
+		final ByteBuf buffer = dataPacket.encode(ctx.alloc(), 0);
         
 		final AddressedEnvelope<ByteBuf, SocketAddress> newMsg = 
 				new DefaultAddressedEnvelope<>(buffer, recipient, sender);
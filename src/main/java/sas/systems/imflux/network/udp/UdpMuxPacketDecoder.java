@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.network.udp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import sas.systems.imflux.packet.rtcp.CompoundControlPacket;
+
+import java.util.List;
+
+/**
+ * A class (singleton) for demultiplexing RTP and RTCP packets received on the same port (rtcp-mux, RFC 5761).
+ * {@link DatagramPacket}s containing RTCP packets are decoded to {@link CompoundControlPacket}s like the
+ * {@link UdpControlPacketDecoder} does, all other datagrams are passed to the next handler untouched and are decoded
+ * by the data pipeline.<br/>
+ * It has to be placed in front of the {@link UdpDataFilterHandler} and the {@link UdpDataPacketDecoder} of a
+ * {@link ChannelPipeline}.
+ *
+ * @see UdpControlPacketDecoder
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+@Sharable
+public class UdpMuxPacketDecoder extends MessageToMessageDecoder<DatagramPacket> {
+
+	// constants ------------------------------------------------------------------------------------------------------
+	private static final int MIN_CONTROL_PAYLOAD_TYPE = 192;
+	private static final int MAX_CONTROL_PAYLOAD_TYPE = 223;
+
+	// constructor ----------------------------------------------------------------------------------------------------
+	private UdpMuxPacketDecoder() {
+	}
+
+	// public static methods ------------------------------------------------------------------------------------------
+    /**
+     *
+     * @return instance of UdpMuxPacketDecoder
+     */
+    public static UdpMuxPacketDecoder getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Checks the second byte of the packet, which holds the marker bit and the payload type for RTP and the packet
+     * type for RTCP. RTCP packet types lie in the range 192 to 223, which is not used by RTP payload types together
+     * with the marker bit (see RFC 5761, section 4).
+     *
+     * @param buffer the received datagram, it's reader index is not modified
+     * @return {@code true} if the datagram contains RTCP packets, {@code false} otherwise
+     */
+    public static boolean isControlPacket(ByteBuf buffer) {
+    	if (buffer.readableBytes() < 2) {
+    		return false;
+    	}
+    	final short type = buffer.getUnsignedByte(buffer.readerIndex() + 1);
+    	return (type >= MIN_CONTROL_PAYLOAD_TYPE) && (type <= MAX_CONTROL_PAYLOAD_TYPE);
+    }
+
+    // MessageToMessageDecoder ----------------------------------------------------------------------------------------
+    /**
+     * Only RTCP datagrams are handled by this decoder, all other messages are forwarded to the next handler.
+     */
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+    	return super.acceptInboundMessage(msg) && isControlPacket(((DatagramPacket) msg).content());
+    }
+
+    /**
+     * Decodes a {@link DatagramPacket} to a {@link CompoundControlPacket} wrapped into an
+     * {@link io.netty.channel.AddressedEnvelope}.
+     *
+     * @param ctx The context of the ChannelHandler
+     * @param msg the message which should be decoded
+     * @param out a list where all messages are written to
+     */
+	@Override
+	protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) throws Exception {
+		UdpControlPacketDecoder.getInstance().decode(ctx, msg, out);
+	}
+
+	// private classes ------------------------------------------------------------------------------------------------
+    /**
+     * Factory class for the {@link UdpMuxPacketDecoder}.
+     *
+     * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+     */
+    private static final class InstanceHolder {
+    	/**
+    	 * Private constructor for hiding the implicit default one.
+    	 */
+        private InstanceHolder() {}
+        private static final UdpMuxPacketDecoder INSTANCE = new UdpMuxPacketDecoder();
+    }
+}
@@ -17,9 +17,16 @@
 package sas.systems.imflux.packet;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.Recycler;
+import io.netty.util.ReferenceCountUtil;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -50,10 +57,29 @@ import java.util.List;
  * |                        header extension                       |
  * |                             ....                              |
  * </pre>
+ * A {@code DataPacket} is reference counted and owns one reference to its payload {@link ByteBuf}. Releasing the last 
+ * reference to the packet releases the payload as well. Payloads set as byte-array or decoded in copy mode are plain 
+ * heap memory, which will not be freed by releasing the packet, so they stay usable afterwards.
+ * <p/>
+ * Instances obtained from {@link #newPooledInstance()} or {@link #decodePooled(ByteBuf)} are recycled as soon as their
+ * last reference is released and must not be used afterwards.
+ * 
  * @author <a href="http://bruno.biasedbit.com/">Bruno de Carvalho</a>
  * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
  */
-public class DataPacket {
+public class DataPacket extends AbstractReferenceCounted {
+
+    // constants ------------------------------------------------------------------------------------------------------
+    /**
+     * The CSRC count is a 4 bit field.
+     */
+    public static final int MAX_CONTRIBUTING_SOURCES = 15;
+    private static final Recycler<DataPacket> RECYCLER = new Recycler<DataPacket>() {
+        @Override
+        protected DataPacket newObject(Handle<DataPacket> handle) {
+            return new DataPacket(handle);
+        }
+    };
 
     // internal vars --------------------------------------------------------------------------------------------------
     private RtpVersion version;		// only version 2 is supported!
@@ -66,16 +92,41 @@ public class DataPacket {
     private short extensionHeaderData;
     private byte[] extensionData;
 
-    private List<Long> contributingSourceIds;
+    private long[] contributingSourceIds;
+    private int contributingSourcesCount;
 
     private ByteBuf data;
 
+    private final Recycler.Handle<DataPacket> handle;
+
     // constructors ---------------------------------------------------------------------------------------------------
     public DataPacket() {
+        this(null);
+    }
+
+    /**
+     * Creates a new packet which is recycled with the {@code handle} when it is deallocated.
+     * 
+     * @param handle recycler handle or {@code null} for an unpooled packet
+     */
+    private DataPacket(Recycler.Handle<DataPacket> handle) {
         this.version = RtpVersion.V2;
+        this.handle = handle;
     }
 
     // public static methods ------------------------------------------------------------------------------------------
+    /**
+     * Returns an empty {@code DataPacket} from a thread-local pool. The packet is returned to the pool when its last 
+     * reference is released, so it must not be touched after {@link #release()} returned {@code true}.
+     * 
+     * @return an empty pooled packet with a reference count of 1
+     */
+    public static DataPacket newPooledInstance() {
+        DataPacket packet = RECYCLER.get();
+        packet.setRefCnt(1);
+        return packet;
+    }
+
     /**
      * Decodes a {@code DataPacket}.
      * 
@@ -87,20 +138,68 @@ public class DataPacket {
     }
 
     /**
-     * Decodes a {@code DataPacket}.
+     * Decodes a {@code DataPacket}. The payload is copied out of the {@code buffer}.
      * 
      * @param buffer as a ByteBuf
      * @return the DataPacket object
      * @throws IndexOutOfBoundsException
      */
     public static DataPacket decode(ByteBuf buffer) throws IndexOutOfBoundsException {
+        return decode(buffer, false);
+    }
+
+    /**
+     * Decodes a {@code DataPacket}. 
+     * <p/>
+     * If {@code retainPayload} is set, the payload is not copied: the packet's data is a retained slice of the 
+     * {@code buffer} (zero-copy). The packet then holds its own reference to the underlying memory and must be 
+     * released by its owner with {@link #release()}. Otherwise the payload is copied into unreleasable heap memory.
+     * 
+     * @param buffer as a ByteBuf
+     * @param retainPayload {@code true} to keep the payload as a retained slice of the {@code buffer}, {@code false} 
+     *        to copy it
+     * @return the DataPacket object
+     * @throws IndexOutOfBoundsException
+     */
+    public static DataPacket decode(ByteBuf buffer, boolean retainPayload) throws IndexOutOfBoundsException {
+        return decode(new DataPacket(), buffer, retainPayload);
+    }
+
+    /**
+     * Decodes a pooled {@code DataPacket} (see {@link #newPooledInstance()}) keeping the payload as a retained slice 
+     * of the {@code buffer}. Releasing the packet releases the payload and recycles the packet.
+     * 
+     * @param buffer as a ByteBuf
+     * @return the pooled DataPacket object
+     * @throws IndexOutOfBoundsException
+     */
+    public static DataPacket decodePooled(ByteBuf buffer) throws IndexOutOfBoundsException {
+        DataPacket packet = newPooledInstance();
+        try {
+            return decode(packet, buffer, true);
+        } catch (RuntimeException e) {
+            packet.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the {@code buffer} into the fields of an empty {@code packet}.
+     * 
+     * @param packet the empty packet
+     * @param buffer as a ByteBuf
+     * @param retainPayload {@code true} to keep the payload as a retained slice of the {@code buffer}
+     * @return the {@code packet}
+     * @throws IndexOutOfBoundsException
+     */
+    private static DataPacket decode(DataPacket packet, ByteBuf buffer, boolean retainPayload) 
+            throws IndexOutOfBoundsException {
         // TODO: shorten this method
         if (buffer.readableBytes() < 12) {
             throw new IllegalArgumentException("A RTP packet must be at least 12 octets long");
         }
 
         // Version, Padding, eXtension, CSRC Count
-        DataPacket packet = new DataPacket();
         byte b = buffer.readByte();
         packet.version = RtpVersion.fromByte(b);
         boolean padding = (b & 0x20) > 0; // mask 0010 0000
@@ -116,36 +215,37 @@ public class DataPacket {
         packet.timestamp = buffer.readUnsignedInt();
         packet.ssrc = buffer.readUnsignedInt();
 
-        // Read extension headers & data
+        // Read CCRC's
+        packet.ensureContributingSourcesCapacity(contributingSourcesCount);
+        for (int i = 0; i < contributingSourcesCount; i++) {
+            packet.contributingSourceIds[i] = buffer.readUnsignedInt();
+        }
+        packet.contributingSourcesCount = contributingSourcesCount;
+
+        // Read extension headers & data (follow the CSRC list, see RFC 3550 section 5.3.1)
         if (extension) {
             packet.extensionHeaderData = buffer.readShort();
             packet.extensionData = new byte[buffer.readUnsignedShort() * 4];
             buffer.readBytes(packet.extensionData);
         }
 
-        // Read CCRC's
-        if (contributingSourcesCount > 0) {
-            packet.contributingSourceIds = new ArrayList<Long>(contributingSourcesCount);
-            for (int i = 0; i < contributingSourcesCount; i++) {
-                long contributingSource = buffer.readUnsignedInt();
-                packet.contributingSourceIds.add(contributingSource);
-            }
+        int dataLength = buffer.readableBytes();
+        if (padding) {
+            // Padding bit was set, so last byte contains the number of padding octets that should be discarded.
+            short lastByte = buffer.getUnsignedByte(buffer.readerIndex() + buffer.readableBytes() - 1);
+            dataLength -= lastByte;
         }
 
-        if (!padding) {
-            // No padding used, assume remaining data is the packet
-            byte[] remainingBytes = new byte[buffer.readableBytes()];
-            buffer.readBytes(remainingBytes);
-            packet.setData(remainingBytes);
+        if (retainPayload) {
+            packet.data = buffer.readRetainedSlice(dataLength);
         } else {
-            // Padding bit was set, so last byte contains the number of padding octets that should be discarded.
-            short lastByte = buffer.getUnsignedByte(buffer.readerIndex() + buffer.readableBytes() - 1);
-            byte[] dataBytes = new byte[buffer.readableBytes() - lastByte];
+            byte[] dataBytes = new byte[dataLength];
             buffer.readBytes(dataBytes);
-            packet.setData(dataBytes);
-            // Discard rest of buffer.
-            buffer.skipBytes(buffer.readableBytes());
+            // copied payloads are plain heap memory and outlive the packet's reference count
+            packet.data = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(dataBytes));
         }
+        // Discard rest of buffer (padding).
+        buffer.skipBytes(buffer.readableBytes());
 
         return packet;
     }
@@ -158,82 +258,53 @@ public class DataPacket {
      * @return a {@link ByteBuf} containing the bytes
      */
     public static ByteBuf encode(int fixedBlockSize, DataPacket packet) {
-        // TODO: shorten this method
-        int size = 12; // Fixed width
-        if (packet.hasExtension()) {
-            size += 4 + packet.getExtensionDataSize();
-        }
-        size += packet.getContributingSourcesCount() * 4;
-        size += packet.getDataSize();
-
-        // If packet was configured to have padding (fixed block size), calculate padding and add it.
-        int padding = 0;
-        if (fixedBlockSize > 0) {
-            // If padding modulus is > 0 then the padding is equal to:
-            // (global size of the compound RTCP packet) mod (block size)
-            // Block size alignment might be necessary for some encryption algorithms
-            // RFC section 6.4.1
-            padding = fixedBlockSize - (size % fixedBlockSize);
-            if (padding == fixedBlockSize) {
-                padding = 0;
-            }
-        }
-        size += padding;
+        int size = packet.getHeaderSize() + packet.getDataSize();
+        int padding = calculatePadding(size, fixedBlockSize);
 
-        ByteBuf buffer = Unpooled.buffer(size);
-
-        // Version, Padding, eXtension, CSRC Count
-        byte b = packet.getVersion().getByte();
-        if (padding > 0) {
-            b |= 0x20; // 0010 0000
-        }
-        if (packet.hasExtension()) {
-            b |= 0x10; // 0001 0000
-        }
-        b |= packet.getContributingSourcesCount();
-        buffer.writeByte(b);
+        ByteBuf buffer = Unpooled.buffer(size + padding);
+        writeHeader(buffer, padding > 0, packet);
 
-        // Marker, Payload Type
-        b = (byte) packet.getPayloadType();
-        if (packet.hasMarker()) {
-            b |= 0x80; // 1000 0000
+        // Write RTP data
+        if (packet.data != null) {
+            buffer.writeBytes(packet.data, packet.data.readerIndex(), packet.data.readableBytes());
         }
-        buffer.writeByte(b);
 
-        buffer.writeShort(packet.sequenceNumber);
-        buffer.writeInt((int) packet.timestamp);
-        buffer.writeInt((int) packet.ssrc);
-
-        // Write extension headers & data
-        if (packet.hasExtension()) {
-            buffer.writeShort(packet.extensionHeaderData);
-            buffer.writeShort(packet.extensionData.length / 4);
-            buffer.writeBytes(packet.extensionData);
-        }
+        writePadding(buffer, padding);
+        return buffer;
+    }
 
-        // Write CCRC's
-        if (packet.getContributingSourcesCount() > 0) {
-            for (Long contributingSourceId : packet.getContributingSourceIds()) {
-                buffer.writeInt(contributingSourceId.intValue());
-            }
+    /**
+     * Encodes the specified DataPacket without copying its payload. The header (and padding) is written into buffers 
+     * taken from the {@code allocator} and the payload is attached as a retained slice, all together composed into 
+     * one {@link CompositeByteBuf}. The returned buffer must be released by the caller (e.g. by writing it to a 
+     * {@link io.netty.channel.Channel}); the packet keeps its own reference to the payload.
+     * 
+     * @param allocator the allocator to take the header buffer from, usually the one of the channel
+     * @param fixedBlockSize set this param, if the packet should have a fixed block size (have a padding)
+     * @param packet the DataPacket to be encoded
+     * @return a {@link ByteBuf} containing the bytes
+     */
+    public static ByteBuf encode(ByteBufAllocator allocator, int fixedBlockSize, DataPacket packet) {
+        int headerSize = packet.getHeaderSize();
+        int dataSize = packet.getDataSize();
+        int padding = calculatePadding(headerSize + dataSize, fixedBlockSize);
+
+        ByteBuf header = allocator.ioBuffer(headerSize);
+        writeHeader(header, padding > 0, packet);
+        if ((dataSize == 0) && (padding == 0)) {
+            return header;
         }
 
-        // Write RTP data
-        if (packet.data != null) {
-            buffer.writeBytes(packet.data.array());
+        CompositeByteBuf buffer = allocator.compositeBuffer(3);
+        buffer.addComponent(true, header);
+        if (dataSize > 0) {
+            buffer.addComponent(true, packet.data.retainedSlice());
         }
-
         if (padding > 0) {
-            // Final bytes: padding
-            for (int i = 0; i < (padding - 1); i++) {
-                buffer.writeByte(0x00);
-            }
-
-            // Final byte: the amount of padding bytes that should be discarded.
-            // Unless something's wrong, it will be a multiple of 4.
-            buffer.writeByte(padding);
+            ByteBuf trailer = allocator.ioBuffer(padding);
+            writePadding(trailer, padding);
+            buffer.addComponent(true, trailer);
         }
-
         return buffer;
     }
 
@@ -248,6 +319,18 @@ public class DataPacket {
         return encode(fixedBlockSize, this);
     }
 
+    /**
+     * Encodes this DataPacket with buffers taken from the {@code allocator}, attaching the payload without copying it.
+     * 
+     * @param allocator the allocator to take the header buffer from
+     * @param fixedBlockSize set this param, if the packet should have a fixed block size (have a padding)
+     * @return a {@link ByteBuf} containing the bytes
+     * @see #encode(ByteBufAllocator, int, DataPacket)
+     */
+    public ByteBuf encode(ByteBufAllocator allocator, int fixedBlockSize) {
+        return encode(allocator, fixedBlockSize, this);
+    }
+
     /**
      * Encodes this DataPacket. Assume that no fixed block size should be used.
      * 
@@ -257,12 +340,33 @@ public class DataPacket {
         return encode(0, this);
     }
 
+    /**
+     * Appends a CSRC to this packet.
+     * 
+     * @param contributingSourceId the CSRC
+     * @throws IllegalArgumentException if the packet already contains 15 CSRCs
+     */
     public void addContributingSourceId(long contributingSourceId) {
-        if (this.contributingSourceIds == null) {
-            this.contributingSourceIds = new ArrayList<Long>();
+        if (this.contributingSourcesCount == MAX_CONTRIBUTING_SOURCES) {
+            throw new IllegalArgumentException("A RTP packet cannot contain more than " + MAX_CONTRIBUTING_SOURCES + 
+                                               " CSRCs");
         }
+        this.ensureContributingSourcesCapacity(this.contributingSourcesCount + 1);
+        this.contributingSourceIds[this.contributingSourcesCount++] = contributingSourceId;
+    }
 
-        this.contributingSourceIds.add(contributingSourceId);
+    /**
+     * Returns the CSRC at position {@code index} without boxing it.
+     * 
+     * @param index position in the CSRC list, must be smaller than {@link #getContributingSourcesCount()}
+     * @return the CSRC
+     */
+    public long getContributingSourceId(int index) {
+        if ((index < 0) || (index >= this.contributingSourcesCount)) {
+            throw new IndexOutOfBoundsException("CSRC index " + index + " out of range [0;" + 
+                                                this.contributingSourcesCount + ")");
+        }
+        return this.contributingSourceIds[index];
     }
 
     public int getDataSize() {
@@ -270,7 +374,18 @@ public class DataPacket {
             return 0;
         }
 
-        return this.data.capacity();
+        return this.data.readableBytes();
+    }
+
+    /**
+     * @return the size of the fixed header including extension header and CSRCs in bytes
+     */
+    public int getHeaderSize() {
+        int size = 12; // Fixed width
+        if (this.hasExtension()) {
+            size += 4 + this.getExtensionDataSize();
+        }
+        return size + this.getContributingSourcesCount() * 4;
     }
 
     public int getExtensionDataSize() {
@@ -282,11 +397,7 @@ public class DataPacket {
     }
 
     public int getContributingSourcesCount() {
-        if (this.contributingSourceIds == null) {
-            return 0;
-        }
-
-        return this.contributingSourceIds.size();
+        return this.contributingSourcesCount;
     }
 
     public void setExtensionHeader(short extensionHeaderData, byte[] extensionData) {
@@ -379,28 +490,216 @@ public class DataPacket {
         return extensionData;
     }
 
+    /**
+     * Compatibility view of the CSRCs, prefer {@link #getContributingSourceId(int)} and 
+     * {@link #getContributingSourcesCount()} which do not box the values.
+     * 
+     * @return an unmodifiable view of the CSRCs or {@code null} if this packet has none
+     */
     public List<Long> getContributingSourceIds() {
-        return contributingSourceIds;
+        if (this.contributingSourcesCount == 0) {
+            return null;
+        }
+
+        return new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return getContributingSourceId(index);
+            }
+
+            @Override
+            public int size() {
+                return contributingSourcesCount;
+            }
+        };
     }
 
+    /**
+     * Replaces the CSRCs of this packet by copying the {@code contributingSourceIds}.
+     * 
+     * @param contributingSourceIds the new CSRCs or {@code null} to remove all
+     */
     public void setContributingSourceIds(List<Long> contributingSourceIds) {
-        this.contributingSourceIds = contributingSourceIds;
+        this.contributingSourcesCount = 0;
+        if (contributingSourceIds == null) {
+            return;
+        }
+        for (Long contributingSourceId : contributingSourceIds) {
+            this.addContributingSourceId(contributingSourceId);
+        }
     }
 
     public ByteBuf getData() {
         return data;
     }
 
+    /**
+     * Sets the payload of this packet. The packet takes over the ownership of one reference to {@code data}, which is 
+     * released together with the packet. The reference to the previous payload is released.
+     * 
+     * @param data the payload
+     */
     public void setData(ByteBuf data) {
+        if (this.data != data) {
+            ReferenceCountUtil.release(this.data);
+        }
         this.data = data;
     }
 
+    /**
+     * Returns the payload as byte-array. The backing array is returned directly if it exactly matches the payload,
+     * otherwise (slices, direct or composite buffers) the payload is copied.
+     * 
+     * @return the payload bytes
+     */
     public byte[] getDataAsArray() {
-        return this.data.array();
+        if (this.data.hasArray() && this.data.arrayOffset() == 0 && this.data.readerIndex() == 0 &&
+            this.data.array().length == this.data.readableBytes()) {
+            return this.data.array();
+        }
+        return ByteBufUtil.getBytes(this.data);
     }
 
+    /**
+     * Sets the payload of this packet. The array is not freed by releasing the packet, the reference to the previous 
+     * payload is released.
+     * 
+     * @param data the payload
+     */
     public void setData(byte[] data) {
-        this.data = Unpooled.wrappedBuffer(data);
+        this.setData(Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(data)));
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * Makes sure the CSRC array can hold {@code count} entries, the array is kept when a pooled packet is recycled.
+     * 
+     * @param count number of CSRCs
+     */
+    private void ensureContributingSourcesCapacity(int count) {
+        if (count == 0) {
+            return;
+        }
+        if (this.contributingSourceIds == null) {
+            this.contributingSourceIds = new long[Math.max(count, 4)];
+        } else if (this.contributingSourceIds.length < count) {
+            int capacity = Math.min(this.contributingSourceIds.length * 2, MAX_CONTRIBUTING_SOURCES);
+            this.contributingSourceIds = Arrays.copyOf(this.contributingSourceIds, Math.max(count, capacity));
+        }
+    }
+
+    /**
+     * If padding modulus is > 0 then the padding is equal to: (global size of the compound RTCP packet) mod (block 
+     * size). Block size alignment might be necessary for some encryption algorithms (RFC section 6.4.1).
+     * 
+     * @param size size of the packet without padding
+     * @param fixedBlockSize the block size or 0 for no padding
+     * @return the number of padding bytes
+     */
+    private static int calculatePadding(int size, int fixedBlockSize) {
+        if (fixedBlockSize <= 0) {
+            return 0;
+        }
+        int padding = fixedBlockSize - (size % fixedBlockSize);
+        if (padding == fixedBlockSize) {
+            return 0;
+        }
+        return padding;
+    }
+
+    private static void writeHeader(ByteBuf buffer, boolean padding, DataPacket packet) {
+        // Version, Padding, eXtension, CSRC Count
+        byte b = packet.getVersion().getByte();
+        if (padding) {
+            b |= 0x20; // 0010 0000
+        }
+        if (packet.hasExtension()) {
+            b |= 0x10; // 0001 0000
+        }
+        b |= packet.getContributingSourcesCount();
+        buffer.writeByte(b);
+
+        // Marker, Payload Type
+        b = (byte) packet.getPayloadType();
+        if (packet.hasMarker()) {
+            b |= 0x80; // 1000 0000
+        }
+        buffer.writeByte(b);
+
+        buffer.writeShort(packet.sequenceNumber);
+        buffer.writeInt((int) packet.timestamp);
+        buffer.writeInt((int) packet.ssrc);
+
+        // Write CCRC's
+        for (int i = 0; i < packet.contributingSourcesCount; i++) {
+            buffer.writeInt((int) packet.contributingSourceIds[i]);
+        }
+
+        // Write extension headers & data
+        if (packet.hasExtension()) {
+            buffer.writeShort(packet.extensionHeaderData);
+            buffer.writeShort(packet.extensionData.length / 4);
+            buffer.writeBytes(packet.extensionData);
+        }
+    }
+
+    private static void writePadding(ByteBuf buffer, int padding) {
+        if (padding > 0) {
+            // Final bytes: padding
+            buffer.writeZero(padding - 1);
+
+            // Final byte: the amount of padding bytes that should be discarded.
+            // Unless something's wrong, it will be a multiple of 4.
+            buffer.writeByte(padding);
+        }
+    }
+
+    // ReferenceCounted -----------------------------------------------------------------------------------------------
+    @Override
+    public DataPacket retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public DataPacket retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public DataPacket touch() {
+        return this.touch(null);
+    }
+
+    @Override
+    public DataPacket touch(Object hint) {
+        if (this.data != null) {
+            this.data.touch(hint);
+        }
+        return this;
+    }
+
+    /**
+     * Releases the payload when the last reference to this packet was released and recycles pooled packets.
+     */
+    @Override
+    protected void deallocate() {
+        ReferenceCountUtil.release(this.data);
+        if (this.handle == null) {
+            return;
+        }
+
+        this.marker = false;
+        this.payloadType = 0;
+        this.sequenceNumber = 0;
+        this.timestamp = 0;
+        this.ssrc = 0;
+        this.extensionHeaderData = 0;
+        this.extensionData = null;
+        this.contributingSourcesCount = 0;
+        this.data = null;
+        this.handle.recycle(this);
     }
 
     // low level overrides --------------------------------------------------------------------------------------------
@@ -414,7 +713,7 @@ public class DataPacket {
                 ", SN=" + this.sequenceNumber +
                 ", TS=" + this.timestamp +
                 ", SSRC=" + this.ssrc +
-                ", CSRCs=" + this.contributingSourceIds +
+                ", CSRCs=" + this.getContributingSourceIds() +
                 ", data=" + this.getDataSize() + " bytes}";
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.packet;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Flyweight view on the fixed header of an encoded RTP packet (see {@link DataPacket} for the layout). All fields are
+ * read lazily and directly from the wrapped {@link ByteBuf} without copying anything or moving its reader index, so 
+ * a packet can be inspected (and maybe discarded) before a {@link DataPacket} is materialized from it.
+ * <p/>
+ * An instance can be reused for any number of buffers by calling {@link #wrap(ByteBuf)}. It does not retain the 
+ * buffer and is not thread-safe, so it should be owned by a single channel or thread.
+ * 
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public final class DataPacketView {
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private ByteBuf buffer;
+    private int offset;
+
+    // public methods -------------------------------------------------------------------------------------------------
+    /**
+     * Points this view to the RTP packet starting at the reader index of the {@code buffer}.
+     * 
+     * @param buffer the encoded packet
+     * @return this view
+     */
+    public DataPacketView wrap(ByteBuf buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.readerIndex();
+        return this;
+    }
+
+    /**
+     * Detaches this view from the currently wrapped buffer.
+     */
+    public void clear() {
+        this.buffer = null;
+        this.offset = 0;
+    }
+
+    /**
+     * Checks whether the wrapped buffer is long enough to contain the full header (including CSRCs and extension 
+     * header) and if the version is supported.
+     * 
+     * @return {@code true} if the header fields can be read safely
+     */
+    public boolean isValid() {
+        if ((this.buffer == null) || (this.getReadableBytes() < 12)) {
+            return false;
+        }
+        if (this.getVersion() != RtpVersion.V2) {
+            return false;
+        }
+        // the extension header must be present before its length can be read
+        final int fixedSize = 12 + this.getContributingSourcesCount() * 4 + (this.hasExtension() ? 4 : 0);
+        return (this.getReadableBytes() >= fixedSize) && (this.getReadableBytes() >= this.getHeaderSize());
+    }
+
+    /**
+     * @return the encoded version or {@code null} if the version bits are invalid
+     */
+    public RtpVersion getVersion() {
+        switch (this.buffer.getUnsignedByte(this.offset) & 0xc0) {
+            case 0x80:
+                return RtpVersion.V2;
+            case 0x40:
+                return RtpVersion.V1;
+            case 0x00:
+                return RtpVersion.V0;
+            default:
+                return null;
+        }
+    }
+
+    public boolean hasPadding() {
+        return (this.buffer.getByte(this.offset) & 0x20) > 0; // mask 0010 0000
+    }
+
+    public boolean hasExtension() {
+        return (this.buffer.getByte(this.offset) & 0x10) > 0; // mask 0001 0000
+    }
+
+    public int getContributingSourcesCount() {
+        return this.buffer.getByte(this.offset) & 0x0f; // mask 0000 1111
+    }
+
+    public boolean hasMarker() {
+        return (this.buffer.getByte(this.offset + 1) & 0x80) > 0; // mask 1000 0000
+    }
+
+    public int getPayloadType() {
+        return this.buffer.getByte(this.offset + 1) & 0x7f; // mask 0111 1111
+    }
+
+    public int getSequenceNumber() {
+        return this.buffer.getUnsignedShort(this.offset + 2);
+    }
+
+    public long getTimestamp() {
+        return this.buffer.getUnsignedInt(this.offset + 4);
+    }
+
+    public long getSsrc() {
+        return this.buffer.getUnsignedInt(this.offset + 8);
+    }
+
+    /**
+     * Reads the CSRC at position {@code index}.
+     * 
+     * @param index position in the CSRC list, must be smaller than {@link #getContributingSourcesCount()}
+     * @return the contributing source id
+     */
+    public long getContributingSourceId(int index) {
+        if ((index < 0) || (index >= this.getContributingSourcesCount())) {
+            throw new IndexOutOfBoundsException("CSRC index " + index + " out of range");
+        }
+        return this.buffer.getUnsignedInt(this.offset + 12 + index * 4);
+    }
+
+    /**
+     * @return the size of the header including CSRCs and extension header in bytes
+     * @throws IndexOutOfBoundsException if the extension header is not within the wrapped packet
+     */
+    public int getHeaderSize() {
+        int size = 12 + this.getContributingSourcesCount() * 4;
+        if (this.hasExtension()) {
+            if (this.getReadableBytes() < (size + 4)) {
+                throw new IndexOutOfBoundsException("Extension header exceeds the packet of " 
+                                                    + this.getReadableBytes() + " bytes");
+            }
+            // extension length is given in 32bit words and follows the profile defined 16bit field
+            size += 4 + this.buffer.getUnsignedShort(this.offset + size + 2) * 4;
+        }
+        return size;
+    }
+
+    /**
+     * Decodes the wrapped packet into a {@link DataPacket}. The wrapped buffer is not modified.
+     * 
+     * @param retainPayload {@code true} to keep the payload as retained slice (see 
+     *        {@link DataPacket#decode(ByteBuf, boolean)})
+     * @return the decoded packet
+     */
+    public DataPacket toDataPacket(boolean retainPayload) {
+        return DataPacket.decode(this.buffer.duplicate().readerIndex(this.offset), retainPayload);
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * @return the number of bytes of the wrapped packet, independent of the capacity of the buffer
+     */
+    private int getReadableBytes() {
+        return this.buffer.writerIndex() - this.offset;
+    }
+
+    // low level overrides --------------------------------------------------------------------------------------------
+    @Override
+    public String toString() {
+        if (this.buffer == null) {
+            return "DataPacketView{empty}";
+        }
+        return "DataPacketView{PT=" + this.getPayloadType() +
+                ", SN=" + this.getSequenceNumber() +
+                ", TS=" + this.getTimestamp() +
+                ", SSRC=" + this.getSsrc() + "}";
+    }
+}
@@ -61,6 +61,7 @@ public class CompoundControlPacket {
 
     // internal vars --------------------------------------------------------------------------------------------------
     private final List<ControlPacket> controlPackets;
+    private int encodedSize;
 
     // constructors ---------------------------------------------------------------------------------------------------
     public CompoundControlPacket(ControlPacket... controlPackets) {
@@ -87,6 +88,17 @@ public class CompoundControlPacket {
         return this.controlPackets;
     }
 
+    /**
+     * @return the size of the received packet in octets, 0 if the packet was not decoded
+     */
+    public int getEncodedSize() {
+        return this.encodedSize;
+    }
+
+    public void setEncodedSize(int encodedSize) {
+        this.encodedSize = encodedSize;
+    }
+
     // low level overrides --------------------------------------------------------------------------------------------
     @Override
     public String toString() {
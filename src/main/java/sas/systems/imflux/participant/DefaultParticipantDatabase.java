@@ -20,20 +20,34 @@ import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
 import sas.systems.imflux.logging.Logger;
 import sas.systems.imflux.packet.DataPacket;
 import sas.systems.imflux.packet.rtcp.SdesChunk;
 import sas.systems.imflux.packet.rtcp.SdesChunkItem;
+import sas.systems.imflux.util.ConcurrentSsrcMap;
 import sas.systems.imflux.util.TimeUtils;
 
 /**
  * Default implementation of a {@link ParticipantDatabase}. It can hold multiple participants and implement all methods
  * of the interface.
+ * <br/>
+ * Members are removed {@code timeoutAfterByeAndNoPacketsReceived} seconds after their BYE or after 
+ * {@code timeoutAfterNoPacketsReceived} seconds without any packet. If the database was created with a {@link Timer},
+ * each member has its own timeout on it: receiving a packet only updates the reception instant of the participant,
+ * an expired timeout checks the instant and is scheduled again if the participant was active in the meantime. So the
+ * costs of the expiry grow with the number of expiring participants instead of the size of the database and 
+ * {@link #cleanup()} does nothing. Without a timer {@link #cleanup()} checks all members.
  * 
  * @author <a href="http://bruno.biasedbit.com/">Bruno de Carvalho</a>
  * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
@@ -44,10 +58,12 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
     private static final Logger LOG = Logger.getLogger(DefaultParticipantDatabase.class);
     private static final int TIMEOUT_AFTER_NO_PACKETS_RECEIVED = 60;
     private static final int TIMEOUT_AFTER_BYE_AND_NO_PACKETS_RECEIVED = 5;
+    private static final RtpParticipant[] NO_RECEIVERS = new RtpParticipant[0];
 
     // configuration --------------------------------------------------------------------------------------------------
     private final String id;
     private final ParticipantEventListener listener;
+    private final Timer timer;
     private int timeoutAfterNoPacketsReceived;
     private int timeoutAfterByeAndNoPacketsReceived;
 
@@ -56,26 +72,71 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
      * List of unicast receivers. This is a list of explicitly added participants, by the applications using this lib.
      * They might get linked to.
      */
-    private final Collection<RtpParticipant> receivers;
+    private final List<RtpParticipant> receivers;
+    /**
+     * Immutable snapshot of the receivers which have their destinations set and did not leave the session. It is
+     * republished on every change of the receivers, so sending iterates over it without locking.
+     */
+    private volatile RtpParticipant[] activeReceivers;
+    /**
+     * List of existing members, indexed by their SSRC. Lookups do not need the lock, it is only taken for 
+     * modifications of the map.
+     */
+    private final ConcurrentSsrcMap<RtpParticipant> members;
+    /**
+     * Indexes of the receivers by data destination, control destination and CNAME.
+     */
+    private final ParticipantIndex<SocketAddress> receiversByDataDestination;
+    private final ParticipantIndex<SocketAddress> receiversByControlDestination;
+    private final ParticipantIndex<String> receiversByCname;
+    /**
+     * Indexes of the members by data destination and CNAME.
+     */
+    private final ParticipantIndex<SocketAddress> membersByDataDestination;
+    private final ParticipantIndex<String> membersByCname;
+    /**
+     * Pending expiry of each member, only used with a timer.
+     */
+    private final Map<RtpParticipant, ParticipantExpiry> expiries;
+    private boolean closed;
     /**
-     * List of existing members.
+     * Guards the receivers, all indexes, the expiries and all modifications of the members.
      */
-    private final Map<Long, RtpParticipant> members;
     private final ReentrantReadWriteLock lock;
 
     // constructors ---------------------------------------------------------------------------------------------------
     /**
-     * Creates a new database instance.
+     * Creates a new database instance, which has to be cleaned up periodically by calling {@link #cleanup()}.
      * 
      * @param id name/id of this database
      * @param eventListener 
      */
     public DefaultParticipantDatabase(String id, ParticipantEventListener eventListener) {
+        this(id, eventListener, null);
+    }
+
+    /**
+     * Creates a new database instance.
+     * 
+     * @param id name/id of this database
+     * @param eventListener 
+     * @param timer timer for the expiry of the members, may be {@code null}
+     */
+    public DefaultParticipantDatabase(String id, ParticipantEventListener eventListener, Timer timer) {
         this.id = id;
         this.listener = eventListener;
+        this.timer = timer;
 
         this.receivers = new ArrayList<>();
-        this.members = new HashMap<>();
+        this.activeReceivers = NO_RECEIVERS;
+        this.members = new ConcurrentSsrcMap<>();
+        this.receiversByDataDestination = new ParticipantIndex<>();
+        this.receiversByControlDestination = new ParticipantIndex<>();
+        this.receiversByCname = new ParticipantIndex<>();
+        this.membersByDataDestination = new ParticipantIndex<>();
+        this.membersByCname = new ParticipantIndex<>();
+        this.expiries = new IdentityHashMap<>();
+        this.closed = false;
 
         this.lock = new ReentrantReadWriteLock();
 
@@ -96,22 +157,23 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
 
     @Override
     public Map<Long, RtpParticipant> getMembers() {
-        return Collections.unmodifiableMap(this.members);
+        return this.members.asMap();
     }
 
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Iterates over a snapshot of the active receivers without locking, so the operation neither blocks nor is blocked 
+     * by changes of the receivers. Receivers which sent a BYE are skipped.
+     */
     @Override
     public void doWithReceivers(ParticipantOperation operation) {
-        this.lock.readLock().lock();
-        try {
-            for (RtpParticipant receiver : this.receivers) {
-                try {
-                    operation.doWithParticipant(receiver);
-                } catch (Exception e) {
-                    LOG.error("Failed to perform operation {} on receiver {}.", e, operation, receiver);
-                }
+        for (RtpParticipant receiver : this.activeReceivers) {
+            try {
+                operation.doWithParticipant(receiver);
+            } catch (Exception e) {
+                LOG.error("Failed to perform operation {} on receiver {}.", e, operation, receiver);
             }
-        } finally {
-            this.lock.readLock().unlock();
         }
     }
 
@@ -139,22 +201,15 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
 
         this.lock.writeLock().lock();
         try {      	
-            // Iterate through the members, trying to find a match for this participant through the RTP ports or CNAME.
-            boolean isMember = false;
-            for (RtpParticipant member : this.members.values()) {
-                boolean sameDestinationAddresses =
-                        member.getDataDestination().equals(remoteParticipant.getDataDestination()) &&
-                        member.getControlDestination().equals(remoteParticipant.getControlDestination());
-                boolean sameCname = member.getInfo().getCname().equals(remoteParticipant.getInfo().getCname());
-                if (sameDestinationAddresses || sameCname) {
-                    // Instead of adding the newly provided participant, reuse the member
-                    this.receivers.add(member);
-                    isMember = true;
-                    break;
-                }
+            // Try to find a match for this participant through the RTP ports or CNAME.
+            RtpParticipant member = this.findMemberWith(remoteParticipant);
+            if (member != null) {
+                // Instead of adding the newly provided participant, reuse the member
+                this.addToReceivers(member);
+                return true;
             }
 
-            return isMember || this.receivers.add(remoteParticipant);
+            return this.addToReceivers(remoteParticipant);
         } finally {
             this.lock.writeLock().unlock();
         }
@@ -164,7 +219,7 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
     public boolean removeReceiver(RtpParticipant remoteParticipant) {
         this.lock.writeLock().lock();
         try {
-            return this.receivers.remove(remoteParticipant);
+            return this.removeFromReceivers(remoteParticipant);
         } finally {
             this.lock.writeLock().unlock();
         }
@@ -172,24 +227,31 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
 
     @Override
     public RtpParticipant getParticipant(long ssrc) {
-        this.lock.readLock().lock();
-        try {
-            return this.members.get(ssrc);
-        } finally {
-            this.lock.readLock().unlock();
-        }
+        return this.members.get(ssrc);
     }
 
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Known participants are returned without locking, only the creation of a new participant is synchronized.
+     */
     @Override
     public RtpParticipant getOrCreateParticipantFromDataPacket(SocketAddress origin, DataPacket packet) {
+        RtpParticipant existing = this.members.get(packet.getSsrc());
+        if (existing != null) {
+            return existing;
+        }
+
         this.lock.writeLock().lock();
         try {
+            // another thread may have created the participant in the meantime
             RtpParticipant participant = this.members.get(packet.getSsrc());
             if (participant == null) {
                 // Iterate through the receivers, trying to find a match for this participant through the RTP ports.
                 RtpParticipant receiver = findReceiverWith(origin);
                 if(receiver != null) {
-                	// Will be added to the members list.
+                	// Will be added to the members list, replacing its previous SSRC if it is already a member.
+                    this.members.remove(receiver.getSsrc(), receiver);
                     receiver.getInfo().setSsrc(packet.getSsrc());
                     participant = receiver;
                     participant.setLastDataOrigin(origin);
@@ -200,7 +262,7 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
                     this.listener.participantCreatedFromDataPacket(participant);
                 }
                 
-                this.members.put(packet.getSsrc(), participant);
+                this.addToMembers(packet.getSsrc(), participant);
             }
 
             return participant;
@@ -209,15 +271,27 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Known participants are returned without locking, only the creation of a new participant is synchronized.
+     */
     @Override
     public RtpParticipant getOrCreateParticipantFromSdesChunk(SocketAddress origin, SdesChunk chunk) {
+        RtpParticipant existing = this.members.get(chunk.getSsrc());
+        if (existing != null) {
+            return existing;
+        }
+
         this.lock.writeLock().lock();
         try {
+            // another thread may have created the participant in the meantime
             RtpParticipant participant = this.members.get(chunk.getSsrc());
             if (participant == null) {
             	RtpParticipant receiver = findReceiverWith(origin, chunk.getItemValue(SdesChunkItem.Type.CNAME));
             	if(receiver != null) {
-            		// Will be added to the members list.
+            		// Will be added to the members list, replacing its previous SSRC if it is already a member.
+                    this.members.remove(receiver.getSsrc(), receiver);
                     receiver.getInfo().setSsrc(chunk.getSsrc());
                     participant = receiver;
                     participant.setLastControlOrigin(origin);
@@ -230,7 +304,7 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
                     this.listener.participantCreatedFromSdesChunk(participant);
             	}
 
-                this.members.put(chunk.getSsrc(), participant);
+                this.addToMembers(chunk.getSsrc(), participant);
             }
 
             return participant;
@@ -239,6 +313,48 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Updates the indexes of the participant.
+     */
+    @Override
+    public void participantUpdated(RtpParticipant participant) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.receiversByDataDestination.contains(participant)) {
+                this.indexReceiver(participant);
+            }
+            if (this.membersByDataDestination.contains(participant)) {
+                this.indexMember(participant);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Shortens the timeout of the participant and stops sending to it.
+     */
+    @Override
+    public void participantLeft(RtpParticipant participant) {
+        this.lock.writeLock().lock();
+        try {
+            final ParticipantExpiry expiry = this.expiries.get(participant);
+            if (expiry != null) {
+                expiry.cancel();
+                expiry.schedule(this.timeoutAfterByeAndNoPacketsReceived * 1000L);
+            }
+            if (this.receiversByDataDestination.contains(participant)) {
+                this.publishActiveReceivers();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
     @Override
     public int getReceiverCount() {
         return this.receivers.size();
@@ -249,83 +365,233 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
         return this.members.size();
     }
 
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Does nothing if the members expire by their own timeouts.
+     */
     @Override
     public void cleanup() {
+        if (this.timer != null) {
+            return;
+        }
+
         this.lock.writeLock().lock();
         long now = TimeUtils.now();
         try {
             Iterator<RtpParticipant> iterator = this.members.values().iterator();
             while (iterator.hasNext()) {
-            	this.checkAndRemoveParticipant(iterator, now);
+            	RtpParticipant participant = iterator.next();
+            	if (this.expiryOf(participant, 0) <= now) {
+            		iterator.remove();
+            		this.removeExpiredMember(participant);
+            	}
             }
         } finally {
             this.lock.writeLock().unlock();
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Cancels the timeouts of all members.
+     */
+    @Override
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            this.closed = true;
+            for (ParticipantExpiry expiry : this.expiries.values()) {
+                expiry.cancel();
+            }
+            this.expiries.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
     
+    // package-private static methods ---------------------------------------------------------------------------------
+    /**
+     * Computes the instant a member expires: {@code timeoutAfterBye} seconds after its BYE and last packet or 
+     * {@code timeoutAfterNoPackets} seconds after its last packet.
+     * 
+     * @param participant
+     * @param since instant the participant was added to the members, {@code 0} if unknown
+     * @param timeoutAfterBye in seconds
+     * @param timeoutAfterNoPackets in seconds
+     * @return the expiry instant or {@link Long#MAX_VALUE} if it never received a packet and {@code since} is unknown
+     */
+    static long expiryOf(RtpParticipant participant, long since, int timeoutAfterBye, int timeoutAfterNoPackets) {
+        final long lastReception = Math.max(participant.getLastReceptionInstant(), since);
+        if (participant.receivedBye()) {
+            return Math.max(lastReception, participant.getByeReceptionInstant()) + (timeoutAfterBye * 1000L);
+        }
+        if (lastReception == 0) {
+            return Long.MAX_VALUE;
+        }
+        return lastReception + (timeoutAfterNoPackets * 1000L);
+    }
+
     // private helpers ------------------------------------------------------------------------------------------------
+    private long expiryOf(RtpParticipant participant, long since) {
+        return expiryOf(participant, since, this.timeoutAfterByeAndNoPacketsReceived, 
+                this.timeoutAfterNoPacketsReceived);
+    }
+
     /**
-     * Checks the participant bye-flag and the last reception instant for removing it from the database. If the
-     * participant is a receiver it is also removed from the receiver-map.
+     * Removes an expired participant, which was already removed from the members map, from the indexes. A participant
+     * which sent a BYE is also removed from the receivers. Must be called while holding the write lock.
      * 
-     * @param iterator of the participant map
-     * @param now current instant in long
+     * @param participant
      */
-    private void checkAndRemoveParticipant(Iterator<RtpParticipant> iterator, long now) {
-    	RtpParticipant participant = iterator.next();
-        int timeout = this.timeoutAfterByeAndNoPacketsReceived * 1000;
-        boolean participantExpired = TimeUtils.hasExpired(now, participant.getLastReceptionInstant(), timeout);
-        
-        if (participant.receivedBye() && participantExpired) {
+    private void removeExpiredMember(RtpParticipant participant) {
+        this.membersByDataDestination.remove(participant);
+        this.membersByCname.remove(participant);
+        if (participant.receivedBye()) {
             LOG.trace("Removed {} from session with id '{}' after reception of BYE and {}s of inactivity.",
                       participant, this.id, this.timeoutAfterByeAndNoPacketsReceived);
-            iterator.remove();
             if (participant.isReceiver()) {
-                this.receivers.remove(participant);
+                this.removeFromReceivers(participant);
             }
-            this.listener.participantDeleted(participant);
+        } else {
+            LOG.trace("Removed {} from session with id '{}' after {}s of inactivity.",
+                      participant, this.id, this.timeoutAfterNoPacketsReceived);
+        }
+        this.listener.participantDeleted(participant);
+    }
+
+    /**
+     * Called by the timer when the timeout of a member elapsed.
+     * 
+     * @param expiry
+     * @param timeout
+     */
+    private void expire(ParticipantExpiry expiry, Timeout timeout) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed || (this.expiries.get(expiry.participant) != expiry) || (expiry.timeout != timeout)) {
+                // replaced by another timeout
+                return;
+            }
+
+            final long remaining = this.expiryOf(expiry.participant, expiry.since) - TimeUtils.now();
+            if (remaining > 0) {
+                // the participant was active in the meantime
+                expiry.schedule(remaining);
+                return;
+            }
+
+            this.expiries.remove(expiry.participant);
+            if (this.members.remove(expiry.ssrc, expiry.participant)) {
+                this.removeExpiredMember(expiry.participant);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
         }
     }
     
+    private boolean addToReceivers(RtpParticipant receiver) {
+        this.indexReceiver(receiver);
+        this.receivers.add(receiver);
+        this.publishActiveReceivers();
+        return true;
+    }
+
+    private boolean removeFromReceivers(RtpParticipant receiver) {
+        final int index = this.receivers.indexOf(receiver);
+        if (index < 0) {
+            return false;
+        }
+        // remove the instance the list contains, it may be just equal to the given one
+        final RtpParticipant removed = this.receivers.remove(index);
+        this.publishActiveReceivers();
+        for (RtpParticipant remaining : this.receivers) {
+            if (remaining == removed) {
+                return true;
+            }
+        }
+        this.receiversByDataDestination.remove(removed);
+        this.receiversByControlDestination.remove(removed);
+        this.receiversByCname.remove(removed);
+        return true;
+    }
+
+    /**
+     * Must be called while holding the write lock after each change of the receivers.
+     */
+    private void publishActiveReceivers() {
+        final List<RtpParticipant> active = new ArrayList<>(this.receivers.size());
+        for (RtpParticipant receiver : this.receivers) {
+            if (receiver.isReceiver() && !receiver.receivedBye()) {
+                active.add(receiver);
+            }
+        }
+        this.activeReceivers = active.isEmpty() ? NO_RECEIVERS : active.toArray(new RtpParticipant[active.size()]);
+    }
+
+    private void indexReceiver(RtpParticipant receiver) {
+        this.receiversByDataDestination.put(receiver.getDataDestination(), receiver);
+        this.receiversByControlDestination.put(receiver.getControlDestination(), receiver);
+        this.receiversByCname.put(receiver.getInfo().getCname(), receiver);
+    }
+
+    private void addToMembers(long ssrc, RtpParticipant member) {
+        this.members.put(ssrc, member);
+        this.indexMember(member);
+        if ((this.timer != null) && !this.closed) {
+            final ParticipantExpiry expiry = new ParticipantExpiry(ssrc, member, TimeUtils.now());
+            final ParticipantExpiry previous = this.expiries.put(member, expiry);
+            if (previous != null) {
+                previous.cancel();
+            }
+            expiry.schedule(this.timeoutAfterNoPacketsReceived * 1000L);
+        }
+    }
+
+    private void indexMember(RtpParticipant member) {
+        this.membersByDataDestination.put(member.getDataDestination(), member);
+        this.membersByCname.put(member.getInfo().getCname(), member);
+    }
+
+    /**
+     * Looks up a member with the same RTP and RTCP destination addresses or the same CNAME as the given participant.
+     * 
+     * @param participant
+     * @return the member if found, {@code null} otherwise
+     */
+    private RtpParticipant findMemberWith(RtpParticipant participant) {
+        for (RtpParticipant member : this.membersByDataDestination.get(participant.getDataDestination())) {
+            if (member.getControlDestination().equals(participant.getControlDestination())) {
+                return member;
+            }
+        }
+        return this.membersByCname.first(participant.getInfo().getCname());
+    }
+
     /**
-     * Searches the receivers and compares the {@code address} with their data destination.
-     * If they are equal the receiver is returned.
+     * Looks up the receiver with the {@code address} as data destination.
      * 
      * @param address
      * @return the receiver if found, {@code null} otherwise
      */
     private RtpParticipant findReceiverWith(SocketAddress address) {
-    	for (RtpParticipant receiver : this.receivers) {
-            if (receiver.getDataDestination().equals(address)) {
-            	return receiver;
-            }
-    	}
-    	return null;
+        return this.receiversByDataDestination.first(address);
     }
     
     /**
-     * Iterate through the receivers, trying to find a match for this participant through the RTCP ports or 
-     * CNAME.
+     * Looks up a receiver with the {@code address} as control destination or, if there is none, with the same CNAME.
      * 
      * @param address
      * @param cName
      * @return the receiver if found, {@code null} otherwise
      */
     private RtpParticipant findReceiverWith(SocketAddress address, String cName) {
-        for (RtpParticipant receiver : this.receivers) {
-            // Verify if CNAME is the same
-            boolean equalCname = false;
-            if ((cName != null) && cName.equals(receiver.getInfo().getCname())) {
-                equalCname = true;
-            }
-
-            // If either CNAME matches or control destination matches source, then there's a match in the
-            // receivers list.
-            if (receiver.getControlDestination().equals(address) || equalCname) {
-                return receiver;
-            }
+        final RtpParticipant receiver = this.receiversByControlDestination.first(address);
+        if (receiver != null) {
+            return receiver;
         }
-        return null;
+        return this.receiversByCname.first(cName);
     }
 
     // getters & setters ----------------------------------------------------------------------------------------------
@@ -344,4 +610,37 @@ public class DefaultParticipantDatabase implements ParticipantDatabase {
     public void setTimeoutAfterByeAndNoPacketsReceived(int timeoutAfterByeAndNoPacketsReceived) {
         this.timeoutAfterByeAndNoPacketsReceived = timeoutAfterByeAndNoPacketsReceived;
     }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    /**
+     * Timeout of a single member. All fields are guarded by the lock of the database.
+     */
+    private final class ParticipantExpiry implements TimerTask {
+
+        private final long ssrc;
+        private final RtpParticipant participant;
+        private final long since;
+        private Timeout timeout;
+
+        ParticipantExpiry(long ssrc, RtpParticipant participant, long since) {
+            this.ssrc = ssrc;
+            this.participant = participant;
+            this.since = since;
+        }
+
+        void schedule(long delay) {
+            this.timeout = timer.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        void cancel() {
+            if (this.timeout != null) {
+                this.timeout.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            expire(this, timeout);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.participant;
+
+/**
+ * Tracks the 16 bit sequence numbers of a source as described in RFC 3550, appendix A.1: it extends them by the
+ * number of wrap arounds (cycles), validates new sources by a number of sequential packets (probation) and detects
+ * sources which restarted their sequence without telling. Each update classifies the packet, so the caller can decide
+ * whether to count and deliver it.
+ * <br/>
+ * Must only be used by the thread receiving the data packets of the source.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ * @see <a href="https://tools.ietf.org/html/rfc3550#appendix-A.1">RFC 3550 appendix A.1</a>
+ */
+public class ExtendedSequenceTracker {
+
+    // constants ------------------------------------------------------------------------------------------------------
+    public static final int RTP_SEQ_MOD = 1 << 16;
+    public static final int MAX_DROPOUT = 3000;
+    public static final int MAX_MISORDER = 100;
+    public static final int MIN_SEQUENTIAL = 2;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private boolean initialized;
+    private int maxSeq;
+    private long cycles;
+    private int baseSeq;
+    private int badSeq;
+    private int probation;
+
+    // public static methods ------------------------------------------------------------------------------------------
+    /**
+     * Compares two 16 bit sequence numbers, taking wrap arounds into account.
+     *
+     * @param sequenceNumber sequence number of a received packet
+     * @param lastSequenceNumber last sequence number of the source in sequence, negative if none
+     * @return {@code true} if the packet is a duplicate or was reordered within {@value #MAX_MISORDER} packets
+     */
+    public static boolean isReordered(int sequenceNumber, int lastSequenceNumber) {
+        if (lastSequenceNumber < 0) {
+            return false;
+        }
+        final int delta = (sequenceNumber - lastSequenceNumber) & 0xffff;
+        return (delta == 0) || (delta > (RTP_SEQ_MOD - MAX_MISORDER));
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    /**
+     * Updates the tracker with the sequence number of a received packet.
+     *
+     * @param sequenceNumber the 16 bit sequence number
+     * @return the classification of the packet
+     */
+    public Result update(int sequenceNumber) {
+        final int seq = sequenceNumber & 0xffff;
+        if (!this.initialized) {
+            this.initialized = true;
+            this.initSequence(seq);
+            this.maxSeq = (seq - 1) & 0xffff;
+            this.probation = MIN_SEQUENTIAL;
+        }
+        final int delta = (seq - this.maxSeq) & 0xffff;
+
+        // Source is not valid until MIN_SEQUENTIAL packets with sequential sequence numbers have been received.
+        if (this.probation > 0) {
+            if (seq == ((this.maxSeq + 1) & 0xffff)) {
+                this.probation--;
+                this.maxSeq = seq;
+                if (this.probation == 0) {
+                    this.initSequence(seq);
+                    return Result.RESTARTED;
+                }
+            } else {
+                this.probation = MIN_SEQUENTIAL - 1;
+                this.maxSeq = seq;
+            }
+            return Result.PROBATION;
+        }
+
+        if ((delta > 0) && (delta < MAX_DROPOUT)) {
+            // in order, with permissible gap
+            if (seq < this.maxSeq) {
+                // sequence number wrapped, count another 64K cycle
+                this.cycles += RTP_SEQ_MOD;
+            }
+            this.maxSeq = seq;
+            return Result.IN_ORDER;
+        }
+        if ((delta >= MAX_DROPOUT) && (delta <= (RTP_SEQ_MOD - MAX_MISORDER))) {
+            // the sequence number made a very large jump
+            if (seq != this.badSeq) {
+                this.badSeq = (seq + 1) & 0xffff;
+                return Result.INVALID;
+            }
+            // Two sequential packets -- assume that the other side restarted without telling us.
+            this.initSequence(seq);
+            return Result.RESTARTED;
+        }
+        // duplicate or reordered packet
+        return Result.REORDERED;
+    }
+
+    // getters & setters ----------------------------------------------------------------------------------------------
+    /**
+     * @return the highest sequence number received, extended by the number of wrap arounds
+     */
+    public long getExtendedHighestSequenceNumber() {
+        return this.cycles + this.maxSeq;
+    }
+
+    /**
+     * @return the sequence number the current sequence started with
+     */
+    public int getBaseSequenceNumber() {
+        return this.baseSeq;
+    }
+
+    /**
+     * @return {@code true} if the source passed the probation
+     */
+    public boolean isValid() {
+        return this.initialized && (this.probation == 0);
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private void initSequence(int seq) {
+        this.baseSeq = seq;
+        this.maxSeq = seq;
+        this.badSeq = RTP_SEQ_MOD + 1;
+        this.cycles = 0;
+    }
+
+    // public classes -------------------------------------------------------------------------------------------------
+    /**
+     * Classification of a received packet.
+     */
+    public enum Result {
+        /** the packet is the new highest sequence number */
+        IN_ORDER,
+        /** the packet starts a new sequence, after the probation or because the source restarted */
+        RESTARTED,
+        /** duplicate or reordered packet, older than the highest sequence number */
+        REORDERED,
+        /** the source is not validated yet */
+        PROBATION,
+        /** the packet made a very large jump, it is only accepted if the next packet continues it */
+        INVALID
+    }
+}
@@ -49,7 +49,7 @@ public interface ParticipantDatabase {
     Map<Long, RtpParticipant> getMembers();
 
     /**
-     * Performs the specified operation on all receivers.
+     * Performs the specified operation on all receivers. Implementations may skip receivers which left the session.
      */
     void doWithReceivers(ParticipantOperation operation);
 
@@ -96,6 +96,22 @@ public interface ParticipantDatabase {
      */
     RtpParticipant getOrCreateParticipantFromSdesChunk(SocketAddress origin, SdesChunk chunk);
 
+    /**
+     * Informs the database that the addresses or the description (e.g. the CNAME) of a participant were changed,
+     * so it can update its indexes.
+     * 
+     * @param participant the modified participant
+     */
+    void participantUpdated(RtpParticipant participant);
+
+    /**
+     * Informs the database that a BYE packet was received from a participant, so it can be removed after a short 
+     * timeout.
+     * 
+     * @param participant the leaving participant
+     */
+    void participantLeft(RtpParticipant participant);
+
     int getReceiverCount();
 
     int getParticipantCount();
@@ -104,4 +120,9 @@ public interface ParticipantDatabase {
      * Remove inactive and obsolete members.
      */
     void cleanup();
+
+    /**
+     * Releases all resources of the database, e.g. pending timeouts. Called when the session is terminated.
+     */
+    void close();
 }
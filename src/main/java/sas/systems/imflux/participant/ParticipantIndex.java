@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.participant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index of participants by one of their attributes. The attributes of a participant may change while it is
+ * indexed, so the index remembers the key each participant was stored with. Several participants may share a key,
+ * they are kept in the order they were added.
+ * <br/>
+ * Not thread-safe, the databases guard their indexes by their locks.
+ * 
+ * @param <K> type of the attribute
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+final class ParticipantIndex<K> {
+
+    private final Map<K, List<RtpParticipant>> participantsByKey = new HashMap<>();
+    private final Map<RtpParticipant, K> keysByParticipant = new IdentityHashMap<>();
+
+    /**
+     * Adds the participant or moves it to a new key. {@code null} keys are not indexed.
+     */
+    void put(K key, RtpParticipant participant) {
+        this.remove(participant);
+        if (key == null) {
+            return;
+        }
+        List<RtpParticipant> participants = this.participantsByKey.get(key);
+        if (participants == null) {
+            participants = new ArrayList<>(1);
+            this.participantsByKey.put(key, participants);
+        }
+        participants.add(participant);
+        this.keysByParticipant.put(participant, key);
+    }
+
+    void remove(RtpParticipant participant) {
+        final K key = this.keysByParticipant.remove(participant);
+        if (key == null) {
+            return;
+        }
+        final List<RtpParticipant> participants = this.participantsByKey.get(key);
+        participants.remove(participant);
+        if (participants.isEmpty()) {
+            this.participantsByKey.remove(key);
+        }
+    }
+
+    boolean contains(RtpParticipant participant) {
+        return this.keysByParticipant.containsKey(participant);
+    }
+
+    List<RtpParticipant> get(K key) {
+        final List<RtpParticipant> participants = this.participantsByKey.get(key);
+        return (participants == null) ? Collections.<RtpParticipant>emptyList() : participants;
+    }
+
+    RtpParticipant first(K key) {
+        final List<RtpParticipant> participants = this.participantsByKey.get(key);
+        return (participants == null) ? null : participants.get(0);
+    }
+}
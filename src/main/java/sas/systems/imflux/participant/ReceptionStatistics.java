@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.participant;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.rtcp.ReceptionReport;
+
+/**
+ * Reception statistics of a single source as described in RFC 3550:
+ * <ul>
+ * 	<li>extended highest sequence number, including the validation of new sources (appendix A.1, see
+ * 	{@link ExtendedSequenceTracker})</li>
+ * 	<li>cumulative number and fraction of lost packets (appendix A.3)</li>
+ * 	<li>interarrival jitter (appendix A.8)</li>
+ * 	<li>last sender report and the delay since its reception</li>
+ * </ul>
+ * The statistics are updated by the thread receiving the data packets of the source, without locking and without
+ * creating objects. The values needed for reports are published in an {@link AtomicLongArray} guarded by a version
+ * (a sequence lock), so a report built on another thread sees the state after a whole packet. Reports must only be
+ * built by one thread, as each report starts a new interval for the fraction lost.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ * @see <a href="https://tools.ietf.org/html/rfc3550#appendix-A.1">RFC 3550 appendix A.1</a>
+ */
+public class ReceptionStatistics {
+
+    // constants ------------------------------------------------------------------------------------------------------
+    private static final long MAX_CUMULATIVE_LOST = 0x7fffff;
+
+    // indexes of the published values
+    private static final int VERSION = 0;
+    private static final int EXTENDED_MAX = 1;
+    private static final int BASE_SEQ = 2;
+    private static final int RECEIVED = 3;
+    private static final int BYTES = 4;
+    private static final int JITTER = 5;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    // written by the receiving thread only
+    private final ExtendedSequenceTracker sequence;
+    private long received;
+    private long bytes;
+    private long firstArrival;
+    private long transit;
+    private long jitter;
+    private long version;
+    private final AtomicLongArray published;
+
+    // used by the reporting thread only
+    private long expectedPrior;
+    private long receivedPrior;
+    private long versionPrior;
+
+    // written on reception of sender reports, guarded by this
+    private boolean receivedSenderReport;
+    private long lastSenderReport;
+    private long lastSenderReportArrival;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    public ReceptionStatistics() {
+        this.sequence = new ExtendedSequenceTracker();
+        this.published = new AtomicLongArray(JITTER + 1);
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    /**
+     * Updates the statistics with a received data packet. Must only be called by the thread receiving the data
+     * packets of the source.
+     *
+     * @param packet the received packet
+     * @param arrivalNanos arrival time of the packet as given by {@link System#nanoTime()}
+     * @param clockRate clock rate of the RTP timestamps
+     * @return the classification of the packet by its sequence number
+     */
+    public ExtendedSequenceTracker.Result packetReceived(DataPacket packet, long arrivalNanos, int clockRate) {
+        final boolean first = (this.version == 0);
+        if (first) {
+            this.firstArrival = arrivalNanos;
+        }
+
+        final ExtendedSequenceTracker.Result result = this.sequence.update(packet.getSequenceNumber());
+        switch (result) {
+            case RESTARTED:
+                this.received = 0;
+                // fall through
+            case IN_ORDER:
+            case REORDERED:
+                this.received++;
+                this.bytes += packet.getDataSize();
+                break;
+            default:
+                // not counted until the source is valid
+                break;
+        }
+        this.updateJitter(first, packet.getTimestamp(), arrivalNanos, clockRate);
+        this.publish();
+        return result;
+    }
+
+    /**
+     * Remembers the last sender report of the source for the LSR and DLSR fields of the reports.
+     *
+     * @param ntpTimestamp NTP timestamp of the sender report
+     * @param arrivalNanos arrival time of the sender report as given by {@link System#nanoTime()}
+     */
+    public synchronized void senderReportReceived(long ntpTimestamp, long arrivalNanos) {
+        // middle 32 bits of the NTP timestamp
+        this.receivedSenderReport = true;
+        this.lastSenderReport = (ntpTimestamp >>> 16) & 0xffffffffL;
+        this.lastSenderReportArrival = arrivalNanos;
+    }
+
+    /**
+     * Fills the statistics into a report block and starts a new reporting interval. Must only be called by one
+     * thread.
+     *
+     * @param block the block to fill, its SSRC is not modified
+     * @param nowNanos current time as given by {@link System#nanoTime()}
+     */
+    public void updateReceptionReport(ReceptionReport block, long nowNanos) {
+        long version;
+        long extendedMax;
+        long baseSeq;
+        long received;
+        long jitter;
+        for (;;) {
+            version = this.published.get(VERSION);
+            extendedMax = this.published.get(EXTENDED_MAX);
+            baseSeq = this.published.get(BASE_SEQ);
+            received = this.published.get(RECEIVED);
+            jitter = this.published.get(JITTER);
+            if (((version & 1) == 0) && (this.published.get(VERSION) == version)) {
+                break;
+            }
+            Thread.yield();
+        }
+
+        // RFC 3550, appendix A.3
+        final long expected = (received == 0) ? 0 : ((extendedMax - baseSeq) + 1);
+        final long lost = expected - received;
+        final long expectedInterval = expected - this.expectedPrior;
+        final long receivedInterval = received - this.receivedPrior;
+        final long lostInterval = expectedInterval - receivedInterval;
+        this.expectedPrior = expected;
+        this.receivedPrior = received;
+        this.versionPrior = version;
+
+        block.setExtendedHighestSequenceNumberReceived(extendedMax & 0xffffffffL);
+        // negative values (duplicates) cannot be encoded by the report block
+        block.setCumulativeNumberOfPacketsLost((int) Math.max(0, Math.min(lost, MAX_CUMULATIVE_LOST)));
+        if ((expectedInterval <= 0) || (lostInterval <= 0)) {
+            block.setFractionLost((short) 0);
+        } else {
+            block.setFractionLost((short) Math.min((lostInterval << 8) / expectedInterval, 0xff));
+        }
+        block.setInterArrivalJitter((jitter >> 4) & 0xffffffffL);
+
+        synchronized (this) {
+            if (!this.receivedSenderReport) {
+                block.setLastSenderReport(0);
+                block.setDelaySinceLastSenderReport(0);
+            } else {
+                // in units of 1/65536 seconds
+                final long delay = ((nowNanos - this.lastSenderReportArrival) << 16) / 1000000000L;
+                block.setLastSenderReport(this.lastSenderReport);
+                block.setDelaySinceLastSenderReport(Math.max(0, Math.min(delay, 0xffffffffL)));
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if at least one packet passed the validation of the source
+     */
+    public boolean hasReceivedPackets() {
+        return this.published.get(RECEIVED) > 0;
+    }
+
+    /**
+     * Must only be called by the thread building the reports.
+     *
+     * @return {@code true} if at least one packet passed the validation of the source and packets were received since
+     * the last call of {@link #updateReceptionReport(ReceptionReport, long)}
+     */
+    public boolean hasReceivedPacketsSinceReport() {
+        return this.hasReceivedPackets() && (this.published.get(VERSION) != this.versionPrior);
+    }
+
+    // getters & setters ----------------------------------------------------------------------------------------------
+    public long getReceivedPackets() {
+        return this.published.get(RECEIVED);
+    }
+
+    public long getReceivedBytes() {
+        return this.published.get(BYTES);
+    }
+
+    public long getExtendedHighestSequenceNumber() {
+        return this.published.get(EXTENDED_MAX);
+    }
+
+    /**
+     * @return the interarrival jitter in RTP timestamp units
+     */
+    public long getJitter() {
+        return this.published.get(JITTER) >> 4;
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * RFC 3550, appendix A.8.
+     */
+    private void updateJitter(boolean first, long timestamp, long arrivalNanos, int clockRate) {
+        // arrival time in RTP timestamp units, relative to the first packet to avoid overflows
+        final long arrival = ((arrivalNanos - this.firstArrival) / 1000L) * clockRate / 1000000L;
+        final long transit = arrival - timestamp;
+        if (first) {
+            this.transit = transit;
+            return;
+        }
+        // timestamps wrap at 32 bits
+        final long d = Math.abs((int) (transit - this.transit));
+        this.transit = transit;
+        // jitter is scaled by 16
+        this.jitter += d - ((this.jitter + 8) >> 4);
+    }
+
+    /**
+     * Publishes the current values, guarded by an odd version while they are written.
+     */
+    private void publish() {
+        this.published.lazySet(VERSION, ++this.version);
+        this.published.lazySet(EXTENDED_MAX, this.sequence.getExtendedHighestSequenceNumber());
+        this.published.lazySet(BASE_SEQ, this.sequence.getBaseSequenceNumber());
+        this.published.lazySet(RECEIVED, this.received);
+        this.published.lazySet(BYTES, this.bytes);
+        this.published.lazySet(JITTER, this.jitter);
+        this.published.lazySet(VERSION, ++this.version);
+    }
+}
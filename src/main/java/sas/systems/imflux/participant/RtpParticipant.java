@@ -20,7 +20,7 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import sas.systems.imflux.packet.DataPacket;
 import sas.systems.imflux.packet.rtcp.SdesChunk;
@@ -34,6 +34,11 @@ import sas.systems.imflux.util.TimeUtils;
  * 	<li>Information about last received packet.</li>
  * </ul>
  * Provides helper methods to create {@link RtpParticipant}-objects deduced from received packets.
+ * <br/>
+ * The receive state is updated for every packet without locking. The state of the data packets (last sequence number
+ * and origin) has a single writer, the thread receiving the data packets of the session, and is published to other 
+ * threads by the ordered write of the reception instant in {@link #dataPacketReceived(SocketAddress, int)}. Readers on
+ * other threads have to read the reception instant first to see the matching state.
  * 
  * @author <a href="http://bruno.biasedbit.com/">Bruno de Carvalho</a>
  * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
@@ -44,6 +49,8 @@ public class RtpParticipant {
 	// TODO: not used?
     private static final int VALID_PACKETS_UNTIL_VALID_PARTICIPANT = 3;
     private static final String INVALID_PORT_NUMBER = "Invalid port number; use range [0;65536]";
+    private static final AtomicLongFieldUpdater<RtpParticipant> LAST_RECEPTION_INSTANT =
+            AtomicLongFieldUpdater.newUpdater(RtpParticipant.class, "lastReceptionInstant");
 
     // configuration --------------------------------------------------------------------------------------------------
     private final RtpParticipantInfo info;
@@ -51,16 +58,16 @@ public class RtpParticipant {
     // internal vars --------------------------------------------------------------------------------------------------
     private SocketAddress dataDestination;
     private SocketAddress controlDestination;
+    // written by the receiving thread only, published by lastReceptionInstant
     private SocketAddress lastDataOrigin;
-    private SocketAddress lastControlOrigin;
-    private long lastReceptionInstant;
-    private long byeReceptionInstant;
     private int lastSequenceNumber;
-    private boolean receivedSdes;
+    private long lastDataReceptionInstant;
+    private volatile SocketAddress lastControlOrigin;
+    private volatile long lastReceptionInstant;
+    private volatile long byeReceptionInstant;
+    private volatile boolean receivedSdes;
 
-    // why are these atomic but the other members not??
-    private final AtomicLong receivedByteCounter; // TODO: check usage
-    private final AtomicLong receivedPacketCounter; // TODO: check usage
+    private final ReceptionStatistics receptionStatistics;
     private final AtomicInteger validPacketCounter; //TODO
 
     // constructors ---------------------------------------------------------------------------------------------------
@@ -75,8 +82,7 @@ public class RtpParticipant {
         this.lastReceptionInstant = 0;
         this.byeReceptionInstant = 0;
 
-        this.receivedByteCounter = new AtomicLong();
-        this.receivedPacketCounter = new AtomicLong();
+        this.receptionStatistics = new ReceptionStatistics();
         this.validPacketCounter = new AtomicInteger();
     }
 
@@ -186,16 +192,37 @@ public class RtpParticipant {
     }
 
 
-    public synchronized void byeReceived() {
+    public void byeReceived() {
         this.byeReceptionInstant = TimeUtils.now();
     }
 
-    public synchronized void receivedSdes() {
+    public void receivedSdes() {
         this.receivedSdes = true;
     }
 
-    public synchronized void packetReceived() {
-        this.lastReceptionInstant = TimeUtils.now();
+    /**
+     * Updates the instant of the last reception, called for each packet received from this participant. The instant 
+     * is written with release semantics only (no full fence), if packets are received on several threads the last 
+     * write wins.
+     */
+    public void packetReceived() {
+        LAST_RECEPTION_INSTANT.lazySet(this, TimeUtils.now());
+    }
+
+    /**
+     * Records the reception of a data packet: updates the last sequence number, data origin and data reception
+     * instant and publishes them by the reception instant. Must only be called by the thread receiving the data
+     * packets of the session.
+     * 
+     * @param origin address the packet was received from
+     * @param sequenceNumber sequence number of the packet
+     */
+    public void dataPacketReceived(SocketAddress origin, int sequenceNumber) {
+        final long now = TimeUtils.now();
+        this.lastSequenceNumber = sequenceNumber;
+        this.lastDataOrigin = origin;
+        this.lastDataReceptionInstant = now;
+        LAST_RECEPTION_INSTANT.lazySet(this, now);
     }
 
     /**
@@ -219,15 +246,33 @@ public class RtpParticipant {
         return lastReceptionInstant;
     }
 
+    /**
+     * @return the instant of the last data packet received in sequence, 0 if none
+     */
+    public long getLastDataReceptionInstant() {
+        this.acquireReceiveState();
+        return lastDataReceptionInstant;
+    }
+
     public long getByeReceptionInstant() {
         return byeReceptionInstant;
     }
 
+    /**
+     * @return the 16 bit sequence number of the last packet delivered in sequence, -1 if none
+     */
     public int getLastSequenceNumber() {
+        this.acquireReceiveState();
         return lastSequenceNumber;
     }
 
-    public synchronized void setLastSequenceNumber(int lastSequenceNumber) {
+    /**
+     * Must only be called by the thread receiving the data packets, see 
+     * {@link #dataPacketReceived(SocketAddress, int)}.
+     * 
+     * @param lastSequenceNumber
+     */
+    public void setLastSequenceNumber(int lastSequenceNumber) {
         this.lastSequenceNumber = lastSequenceNumber;
     }
 
@@ -235,12 +280,19 @@ public class RtpParticipant {
         return this.byeReceptionInstant > 0;
     }
 
+    /**
+     * @return the reception statistics of the data packets of this participant, updated by the session
+     */
+    public ReceptionStatistics getReceptionStatistics() {
+        return this.receptionStatistics;
+    }
+
     public long getReceivedPackets() {
-        return this.receivedPacketCounter.get();
+        return this.receptionStatistics.getReceivedPackets();
     }
 
     public long getReceivedBytes() {
-        return this.receivedByteCounter.get();
+        return this.receptionStatistics.getReceivedBytes();
     }
 
     public boolean hasReceivedSdes() {
@@ -270,10 +322,17 @@ public class RtpParticipant {
     }
 
     public SocketAddress getLastDataOrigin() {
+        this.acquireReceiveState();
         return lastDataOrigin;
     }
 
-    public synchronized void setLastDataOrigin(SocketAddress lastDataOrigin) {
+    /**
+     * Must only be called by the thread receiving the data packets, see 
+     * {@link #dataPacketReceived(SocketAddress, int)}.
+     * 
+     * @param lastDataOrigin
+     */
+    public void setLastDataOrigin(SocketAddress lastDataOrigin) {
         this.lastDataOrigin = lastDataOrigin;
     }
 
@@ -281,10 +340,18 @@ public class RtpParticipant {
         return lastControlOrigin;
     }
 
-    public synchronized void setLastControlOrigin(SocketAddress lastControlOrigin) {
+    public void setLastControlOrigin(SocketAddress lastControlOrigin) {
         this.lastControlOrigin = lastControlOrigin;
     }
 
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * Reads the reception instant, so the following reads see the receive state it published.
+     */
+    private long acquireReceiveState() {
+        return this.lastReceptionInstant;
+    }
+
     // low level overrides --------------------------------------------------------------------------------------------
     @Override
     public boolean equals(Object o) {
@@ -55,6 +55,8 @@ public class RtpParticipantInfo {
     private String note;
     private String privPrefix;
     private String priv;
+    // incremented on each modification, so encoded descriptions can be cached
+    private volatile int modifications;
 
     // constructors ---------------------------------------------------------------------------------------------------
     /**
@@ -106,6 +108,7 @@ public class RtpParticipantInfo {
         boolean modified = false;
         if (this.ssrc != chunk.getSsrc()) {
             this.ssrc = chunk.getSsrc();
+            this.modifications++;
             modified = true;
         }
         if (chunk.getItems().isEmpty()) {
@@ -194,6 +197,7 @@ public class RtpParticipantInfo {
         }
 
         this.ssrc = ssrc;
+        this.modifications++;
     }
 
     public String getCname() {
@@ -202,6 +206,7 @@ public class RtpParticipantInfo {
 
     public void setCname(String cname) {
         this.cname = cname;
+        this.modifications++;
     }
 
     public String getName() {
@@ -210,6 +215,7 @@ public class RtpParticipantInfo {
 
     public void setName(String name) {
         this.name = name;
+        this.modifications++;
     }
 
     public String getEmail() {
@@ -218,6 +224,7 @@ public class RtpParticipantInfo {
 
     public void setEmail(String email) {
         this.email = email;
+        this.modifications++;
     }
 
     public String getPhone() {
@@ -226,6 +233,7 @@ public class RtpParticipantInfo {
 
     public void setPhone(String phone) {
         this.phone = phone;
+        this.modifications++;
     }
 
     public String getLocation() {
@@ -234,6 +242,7 @@ public class RtpParticipantInfo {
 
     public void setLocation(String location) {
         this.location = location;
+        this.modifications++;
     }
 
     public String getTool() {
@@ -242,6 +251,7 @@ public class RtpParticipantInfo {
 
     public void setTool(String tool) {
         this.tool = tool;
+        this.modifications++;
     }
 
     public String getNote() {
@@ -250,6 +260,7 @@ public class RtpParticipantInfo {
 
     public void setNote(String note) {
         this.note = note;
+        this.modifications++;
     }
 
     public String getPrivPrefix() {
@@ -263,6 +274,14 @@ public class RtpParticipantInfo {
     public void setPriv(String prefix, String priv) {
         this.privPrefix = prefix;
         this.priv = priv;
+        this.modifications++;
+    }
+
+    /**
+     * @return a counter which changes whenever the SSRC or one of the description items is modified
+     */
+    public int getModificationCount() {
+        return this.modifications;
     }
 
     // low level overrides --------------------------------------------------------------------------------------------
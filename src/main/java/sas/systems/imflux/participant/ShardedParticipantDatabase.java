@@ -0,0 +1,785 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.participant;
+
+import java.net.SocketAddress;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sas.systems.imflux.logging.Logger;
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.rtcp.SdesChunk;
+import sas.systems.imflux.packet.rtcp.SdesChunkItem;
+import sas.systems.imflux.util.ConcurrentSsrcMap;
+import sas.systems.imflux.util.TimeUtils;
+
+/**
+ * Implementation of a {@link ParticipantDatabase} for sessions with many thousands of members. The members are split
+ * into shards by the hash of their SSRC, each shard has its own map, indexes and lock. So the creation and the expiry
+ * of members in different shards do not contend and lookups of known members never lock at all.
+ * <br/>
+ * The explicitly added receivers do not have an SSRC until they are associated with a member, so they are kept in a
+ * single registry like in the {@link DefaultParticipantDatabase}. Sending iterates over a snapshot of the active
+ * receivers without locking.
+ * <br/>
+ * If the database is created with a {@link ForkJoinPool}, {@link #cleanup()} checks the shards in parallel and
+ * {@link #doWithParticipants(ParticipantOperation)} and {@link #doWithReceivers(ParticipantOperation)} split large
+ * traversals into parallel tasks. The operations then have to be thread-safe. Without a pool everything runs on the
+ * calling thread.
+ * <br/>
+ * To use it in a session, override {@code AbstractRtpSession#createDatabase()}, e.g. of a
+ * {@code MultiParticipantSession}:
+ * <pre>
+ * protected ParticipantDatabase createDatabase() {
+ *     return new ShardedParticipantDatabase(this.id, this, 64, pool);
+ * }
+ * </pre>
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class ShardedParticipantDatabase implements ParticipantDatabase {
+
+    // constants ------------------------------------------------------------------------------------------------------
+    private static final Logger LOG = Logger.getLogger(ShardedParticipantDatabase.class);
+    private static final int TIMEOUT_AFTER_NO_PACKETS_RECEIVED = 60;
+    private static final int TIMEOUT_AFTER_BYE_AND_NO_PACKETS_RECEIVED = 5;
+    private static final int SHARD_COUNT = 16;
+    private static final int MAX_SHARD_COUNT = 1024;
+    /**
+     * Number of receivers a single parallel task sends to.
+     */
+    private static final int RECEIVERS_PER_TASK = 256;
+    private static final RtpParticipant[] NO_RECEIVERS = new RtpParticipant[0];
+
+    // configuration --------------------------------------------------------------------------------------------------
+    private final String id;
+    private final ParticipantEventListener listener;
+    private final ForkJoinPool pool;
+    private volatile int timeoutAfterNoPacketsReceived;
+    private volatile int timeoutAfterByeAndNoPacketsReceived;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private final Shard[] shards;
+    private final int shardMask;
+    /**
+     * Explicitly added receivers and their indexes, guarded by the {@code receiversLock}. A shard's lock may be taken
+     * before the {@code receiversLock}, never the other way round.
+     */
+    private final List<RtpParticipant> receivers;
+    private final ParticipantIndex<SocketAddress> receiversByDataDestination;
+    private final ParticipantIndex<SocketAddress> receiversByControlDestination;
+    private final ParticipantIndex<String> receiversByCname;
+    private final ReentrantReadWriteLock receiversLock;
+    /**
+     * Immutable snapshot of the receivers which have their destinations set and did not leave the session.
+     */
+    private volatile RtpParticipant[] activeReceivers;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    /**
+     * Creates a new database with 16 shards, which runs all operations on the calling thread.
+     *
+     * @param id name/id of this database
+     * @param eventListener
+     */
+    public ShardedParticipantDatabase(String id, ParticipantEventListener eventListener) {
+        this(id, eventListener, SHARD_COUNT, null);
+    }
+
+    /**
+     * Creates a new database.
+     *
+     * @param id name/id of this database
+     * @param eventListener
+     * @param shardCount number of shards, rounded up to the next power of two (at most 1024)
+     * @param pool pool to run traversals and the cleanup in parallel, may be {@code null}
+     */
+    public ShardedParticipantDatabase(String id, ParticipantEventListener eventListener, int shardCount,
+            ForkJoinPool pool) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.id = id;
+        this.listener = eventListener;
+        this.pool = pool;
+
+        int count = 1;
+        while ((count < shardCount) && (count < MAX_SHARD_COUNT)) {
+            count <<= 1;
+        }
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard(i);
+        }
+        this.shardMask = count - 1;
+
+        this.receivers = new ArrayList<>();
+        this.receiversByDataDestination = new ParticipantIndex<>();
+        this.receiversByControlDestination = new ParticipantIndex<>();
+        this.receiversByCname = new ParticipantIndex<>();
+        this.receiversLock = new ReentrantReadWriteLock();
+        this.activeReceivers = NO_RECEIVERS;
+
+        this.timeoutAfterNoPacketsReceived = TIMEOUT_AFTER_NO_PACKETS_RECEIVED;
+        this.timeoutAfterByeAndNoPacketsReceived = TIMEOUT_AFTER_BYE_AND_NO_PACKETS_RECEIVED;
+    }
+
+    // ParticipantDatabase --------------------------------------------------------------------------------------------
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public Collection<RtpParticipant> getReceivers() {
+        this.receiversLock.readLock().lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(this.receivers));
+        } finally {
+            this.receiversLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Returns a read-only view over all shards.
+     */
+    @Override
+    public Map<Long, RtpParticipant> getMembers() {
+        return new MembersView();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Iterates over a snapshot of the active receivers without locking. Receivers which sent a BYE are skipped.
+     */
+    @Override
+    public void doWithReceivers(final ParticipantOperation operation) {
+        final RtpParticipant[] receivers = this.activeReceivers;
+        this.forEachRange(receivers.length, RECEIVERS_PER_TASK, new RangeOperation() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        operation.doWithParticipant(receivers[i]);
+                    } catch (Exception e) {
+                        LOG.error("Failed to perform operation {} on receiver {}.", e, operation, receivers[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * The shards are traversed in parallel if the database has a pool.
+     */
+    @Override
+    public void doWithParticipants(final ParticipantOperation operation) {
+        this.forEachRange(this.shards.length, 1, new RangeOperation() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    for (RtpParticipant member : shards[i].members.values()) {
+                        try {
+                            operation.doWithParticipant(member);
+                        } catch (Exception e) {
+                            LOG.error("Failed to perform operation {} on member {}.", e, operation, member);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean addReceiver(RtpParticipant remoteParticipant) {
+        if (!remoteParticipant.isReceiver()) {
+            return false;
+        }
+
+        // Try to find a match for this participant through the RTP ports or CNAME. The shards are not locked while
+        // the receivers are modified, so a member created in the meantime is associated by its next lookup.
+        final RtpParticipant member = this.findMemberWith(remoteParticipant);
+        this.receiversLock.writeLock().lock();
+        try {
+            // Instead of adding the newly provided participant, reuse the member
+            this.addToReceivers((member != null) ? member : remoteParticipant);
+            return true;
+        } finally {
+            this.receiversLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeReceiver(RtpParticipant remoteParticipant) {
+        this.receiversLock.writeLock().lock();
+        try {
+            return this.removeFromReceivers(remoteParticipant);
+        } finally {
+            this.receiversLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public RtpParticipant getParticipant(long ssrc) {
+        return this.shardOf(ssrc).members.get(ssrc);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Known participants are returned without locking, only the shard of the SSRC is locked to create a new one. If
+     * a receiver which is already a member gets the new SSRC, the shard of its previous SSRC is locked as well.
+     */
+    @Override
+    public RtpParticipant getOrCreateParticipantFromDataPacket(SocketAddress origin, DataPacket packet) {
+        final Shard shard = this.shardOf(packet.getSsrc());
+        RtpParticipant existing = shard.members.get(packet.getSsrc());
+        if (existing != null) {
+            return existing;
+        }
+
+        while (true) {
+            // a receiver which is already a member is moved from the shard of its previous SSRC
+            final RtpParticipant receiver = this.findReceiverWith(origin);
+            final Shard previous = (receiver != null) ? this.shardOf(receiver.getSsrc()) : shard;
+            lock(shard, previous);
+            try {
+                // another thread may have created the participant in the meantime
+                RtpParticipant participant = shard.members.get(packet.getSsrc());
+                if (participant != null) {
+                    return participant;
+                }
+                if (receiver != null) {
+                    if (this.shardOf(receiver.getSsrc()) != previous) {
+                        // the receiver changed its SSRC in the meantime
+                        continue;
+                    }
+                    // Will be added to the members list.
+                    previous.remove(receiver.getSsrc(), receiver);
+                    receiver.getInfo().setSsrc(packet.getSsrc());
+                    participant = receiver;
+                    participant.setLastDataOrigin(origin);
+                } else {
+                    // Will be added to the members list but will NOT be a receiver.
+                    participant = RtpParticipant.createFromUnexpectedDataPacket(origin, packet);
+                    // notify listeners
+                    this.listener.participantCreatedFromDataPacket(participant);
+                }
+
+                shard.add(packet.getSsrc(), participant);
+                return participant;
+            } finally {
+                unlock(shard, previous);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Known participants are returned without locking, only the shard of the SSRC is locked to create a new one. If
+     * a receiver which is already a member gets the new SSRC, the shard of its previous SSRC is locked as well.
+     */
+    @Override
+    public RtpParticipant getOrCreateParticipantFromSdesChunk(SocketAddress origin, SdesChunk chunk) {
+        final Shard shard = this.shardOf(chunk.getSsrc());
+        RtpParticipant existing = shard.members.get(chunk.getSsrc());
+        if (existing != null) {
+            return existing;
+        }
+
+        while (true) {
+            // a receiver which is already a member is moved from the shard of its previous SSRC
+            final RtpParticipant receiver = this.findReceiverWith(origin, chunk.getItemValue(SdesChunkItem.Type.CNAME));
+            final Shard previous = (receiver != null) ? this.shardOf(receiver.getSsrc()) : shard;
+            lock(shard, previous);
+            try {
+                // another thread may have created the participant in the meantime
+                RtpParticipant participant = shard.members.get(chunk.getSsrc());
+                if (participant != null) {
+                    return participant;
+                }
+                if (receiver != null) {
+                    if (this.shardOf(receiver.getSsrc()) != previous) {
+                        // the receiver changed its SSRC in the meantime
+                        continue;
+                    }
+                    // Will be added to the members list.
+                    previous.remove(receiver.getSsrc(), receiver);
+                    receiver.getInfo().setSsrc(chunk.getSsrc());
+                    participant = receiver;
+                    participant.setLastControlOrigin(origin);
+                    participant.receivedSdes();
+                    participant.getInfo().updateFromSdesChunk(chunk);
+                } else {
+                    // Will be added to the members list but will NOT be a receiver.
+                    participant = RtpParticipant.createFromSdesChunk(origin, chunk);
+                    // notify listeners
+                    this.listener.participantCreatedFromSdesChunk(participant);
+                }
+
+                shard.add(chunk.getSsrc(), participant);
+                return participant;
+            } finally {
+                unlock(shard, previous);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Updates the indexes of the participant.
+     */
+    @Override
+    public void participantUpdated(RtpParticipant participant) {
+        final Shard shard = this.shardOf(participant.getSsrc());
+        shard.lock.lock();
+        try {
+            if (shard.membersByDataDestination.contains(participant)) {
+                shard.index(participant);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+
+        this.receiversLock.writeLock().lock();
+        try {
+            if (this.receiversByDataDestination.contains(participant)) {
+                this.indexReceiver(participant);
+            }
+        } finally {
+            this.receiversLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Stops sending to the participant, it is removed by the next {@link #cleanup()} after the timeout.
+     */
+    @Override
+    public void participantLeft(RtpParticipant participant) {
+        this.receiversLock.writeLock().lock();
+        try {
+            if (this.receiversByDataDestination.contains(participant)) {
+                this.publishActiveReceivers();
+            }
+        } finally {
+            this.receiversLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int getReceiverCount() {
+        this.receiversLock.readLock().lock();
+        try {
+            return this.receivers.size();
+        } finally {
+            this.receiversLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getParticipantCount() {
+        int count = 0;
+        for (Shard shard : this.shards) {
+            count += shard.members.size();
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Checks the shards in parallel if the database has a pool, each shard is locked only while it is checked.
+     */
+    @Override
+    public void cleanup() {
+        final long now = TimeUtils.now();
+        this.forEachRange(this.shards.length, 1, new RangeOperation() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    cleanup(shards[i], now);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        // Nothing to do here, the members expire by cleanup().
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private Shard shardOf(long ssrc) {
+        final int hash = (int) (ssrc ^ (ssrc >>> 32)) * 0x9e3779b9;
+        return this.shards[(hash >>> 16) & this.shardMask];
+    }
+
+    /**
+     * Locks both shards in the order of their indexes, so two threads never wait for each other.
+     */
+    private static void lock(Shard first, Shard second) {
+        if (first == second) {
+            first.lock.lock();
+        } else if (first.index < second.index) {
+            first.lock.lock();
+            second.lock.lock();
+        } else {
+            second.lock.lock();
+            first.lock.lock();
+        }
+    }
+
+    private static void unlock(Shard first, Shard second) {
+        if (first != second) {
+            second.lock.unlock();
+        }
+        first.lock.unlock();
+    }
+
+    /**
+     * Runs the operation on the whole range {@code [0, count)}, split into parallel tasks of at most
+     * {@code granularity} elements if the database has a pool.
+     */
+    private void forEachRange(int count, int granularity, RangeOperation operation) {
+        if ((this.pool == null) || (count <= granularity)) {
+            operation.run(0, count);
+        } else {
+            this.pool.invoke(new RangeAction(operation, 0, count, granularity));
+        }
+    }
+
+    private void cleanup(Shard shard, long now) {
+        final int timeoutAfterBye = this.timeoutAfterByeAndNoPacketsReceived;
+        final int timeoutAfterNoPackets = this.timeoutAfterNoPacketsReceived;
+        shard.lock.lock();
+        try {
+            Iterator<RtpParticipant> iterator = shard.members.values().iterator();
+            while (iterator.hasNext()) {
+                RtpParticipant participant = iterator.next();
+                if (DefaultParticipantDatabase.expiryOf(participant, 0, timeoutAfterBye, timeoutAfterNoPackets) > now) {
+                    continue;
+                }
+
+                iterator.remove();
+                shard.unindex(participant);
+                if (participant.receivedBye()) {
+                    LOG.trace("Removed {} from session with id '{}' after reception of BYE and {}s of inactivity.",
+                              participant, this.id, timeoutAfterBye);
+                    if (participant.isReceiver()) {
+                        this.removeReceiver(participant);
+                    }
+                } else {
+                    LOG.trace("Removed {} from session with id '{}' after {}s of inactivity.",
+                              participant, this.id, timeoutAfterNoPackets);
+                }
+                this.listener.participantDeleted(participant);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Looks up a member with the same RTP and RTCP destination addresses or the same CNAME as the given participant
+     * in all shards.
+     *
+     * @param participant
+     * @return the member if found, {@code null} otherwise
+     */
+    private RtpParticipant findMemberWith(RtpParticipant participant) {
+        RtpParticipant byCname = null;
+        for (Shard shard : this.shards) {
+            shard.lock.lock();
+            try {
+                for (RtpParticipant member : shard.membersByDataDestination.get(participant.getDataDestination())) {
+                    if (member.getControlDestination().equals(participant.getControlDestination())) {
+                        return member;
+                    }
+                }
+                if (byCname == null) {
+                    byCname = shard.membersByCname.first(participant.getInfo().getCname());
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return byCname;
+    }
+
+    /**
+     * Looks up the receiver with the {@code address} as data destination.
+     *
+     * @param address
+     * @return the receiver if found, {@code null} otherwise
+     */
+    private RtpParticipant findReceiverWith(SocketAddress address) {
+        this.receiversLock.readLock().lock();
+        try {
+            return this.receiversByDataDestination.first(address);
+        } finally {
+            this.receiversLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up a receiver with the {@code address} as control destination or, if there is none, with the same CNAME.
+     *
+     * @param address
+     * @param cName
+     * @return the receiver if found, {@code null} otherwise
+     */
+    private RtpParticipant findReceiverWith(SocketAddress address, String cName) {
+        this.receiversLock.readLock().lock();
+        try {
+            final RtpParticipant receiver = this.receiversByControlDestination.first(address);
+            if (receiver != null) {
+                return receiver;
+            }
+            return this.receiversByCname.first(cName);
+        } finally {
+            this.receiversLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the write lock of the receivers.
+     */
+    private void addToReceivers(RtpParticipant receiver) {
+        this.indexReceiver(receiver);
+        this.receivers.add(receiver);
+        this.publishActiveReceivers();
+    }
+
+    /**
+     * Must be called while holding the write lock of the receivers.
+     */
+    private boolean removeFromReceivers(RtpParticipant receiver) {
+        final int index = this.receivers.indexOf(receiver);
+        if (index < 0) {
+            return false;
+        }
+        // remove the instance the list contains, it may be just equal to the given one
+        final RtpParticipant removed = this.receivers.remove(index);
+        this.publishActiveReceivers();
+        for (RtpParticipant remaining : this.receivers) {
+            if (remaining == removed) {
+                return true;
+            }
+        }
+        this.receiversByDataDestination.remove(removed);
+        this.receiversByControlDestination.remove(removed);
+        this.receiversByCname.remove(removed);
+        return true;
+    }
+
+    private void indexReceiver(RtpParticipant receiver) {
+        this.receiversByDataDestination.put(receiver.getDataDestination(), receiver);
+        this.receiversByControlDestination.put(receiver.getControlDestination(), receiver);
+        this.receiversByCname.put(receiver.getInfo().getCname(), receiver);
+    }
+
+    /**
+     * Must be called while holding the write lock of the receivers after each change of the receivers.
+     */
+    private void publishActiveReceivers() {
+        final List<RtpParticipant> active = new ArrayList<>(this.receivers.size());
+        for (RtpParticipant receiver : this.receivers) {
+            if (receiver.isReceiver() && !receiver.receivedBye()) {
+                active.add(receiver);
+            }
+        }
+        this.activeReceivers = active.isEmpty() ? NO_RECEIVERS : active.toArray(new RtpParticipant[active.size()]);
+    }
+
+    // getters & setters ----------------------------------------------------------------------------------------------
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    public int getTimeoutAfterNoPacketsReceived() {
+        return timeoutAfterNoPacketsReceived;
+    }
+
+    public void setTimeoutAfterNoPacketsReceived(int timeoutAfterNoPacketsReceived) {
+        this.timeoutAfterNoPacketsReceived = timeoutAfterNoPacketsReceived;
+    }
+
+    public int getTimeoutAfterByeAndNoPacketsReceived() {
+        return timeoutAfterByeAndNoPacketsReceived;
+    }
+
+    public void setTimeoutAfterByeAndNoPacketsReceived(int timeoutAfterByeAndNoPacketsReceived) {
+        this.timeoutAfterByeAndNoPacketsReceived = timeoutAfterByeAndNoPacketsReceived;
+    }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    /**
+     * Members with the same SSRC hash. Lookups in the map do not need the lock, it is only taken for modifications
+     * of the map and for the indexes.
+     */
+    private static final class Shard {
+
+        private final int index;
+        private final ConcurrentSsrcMap<RtpParticipant> members = new ConcurrentSsrcMap<>();
+        private final ParticipantIndex<SocketAddress> membersByDataDestination = new ParticipantIndex<>();
+        private final ParticipantIndex<String> membersByCname = new ParticipantIndex<>();
+        private final ReentrantLock lock = new ReentrantLock();
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        void add(long ssrc, RtpParticipant member) {
+            this.members.put(ssrc, member);
+            this.index(member);
+        }
+
+        void remove(long ssrc, RtpParticipant member) {
+            if (this.members.remove(ssrc, member)) {
+                this.unindex(member);
+            }
+        }
+
+        void index(RtpParticipant member) {
+            this.membersByDataDestination.put(member.getDataDestination(), member);
+            this.membersByCname.put(member.getInfo().getCname(), member);
+        }
+
+        void unindex(RtpParticipant member) {
+            this.membersByDataDestination.remove(member);
+            this.membersByCname.remove(member);
+        }
+    }
+
+    private interface RangeOperation {
+
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits a range in halves until it is small enough to be run as one task.
+     */
+    private static final class RangeAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeOperation operation;
+        private final int from;
+        private final int to;
+        private final int granularity;
+
+        RangeAction(RangeOperation operation, int from, int to, int granularity) {
+            this.operation = operation;
+            this.from = from;
+            this.to = to;
+            this.granularity = granularity;
+        }
+
+        @Override
+        protected void compute() {
+            if ((this.to - this.from) <= this.granularity) {
+                this.operation.run(this.from, this.to);
+                return;
+            }
+            final int middle = (this.from + this.to) >>> 1;
+            invokeAll(new RangeAction(this.operation, this.from, middle, this.granularity),
+                      new RangeAction(this.operation, middle, this.to, this.granularity));
+        }
+    }
+
+    /**
+     * Read-only view of the members of all shards.
+     */
+    private final class MembersView extends AbstractMap<Long, RtpParticipant> {
+
+        @Override
+        public RtpParticipant get(Object key) {
+            return (key instanceof Long) ? getParticipant((Long) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return getParticipantCount();
+        }
+
+        @Override
+        public Set<Entry<Long, RtpParticipant>> entrySet() {
+            return new AbstractSet<Entry<Long, RtpParticipant>>() {
+                @Override
+                public Iterator<Entry<Long, RtpParticipant>> iterator() {
+                    return new Iterator<Entry<Long, RtpParticipant>>() {
+                        private int shard = 0;
+                        private Iterator<Entry<Long, RtpParticipant>> current =
+                                shards[0].members.asMap().entrySet().iterator();
+
+                        @Override
+                        public boolean hasNext() {
+                            while (!this.current.hasNext() && (this.shard < shardMask)) {
+                                this.current = shards[++this.shard].members.asMap().entrySet().iterator();
+                            }
+                            return this.current.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Long, RtpParticipant> next() {
+                            if (!this.hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            return this.current.next();
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("Read-only view");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return getParticipantCount();
+                }
+            };
+        }
+    }
+}
@@ -125,6 +125,16 @@ public class SingleParticipantDatabase implements ParticipantDatabase {
         return null;
     }
 
+    @Override
+    public void participantUpdated(RtpParticipant participant) {
+        // nothing to do here
+    }
+
+    @Override
+    public void participantLeft(RtpParticipant participant) {
+        // nothing to do here
+    }
+
     @Override
     public int getReceiverCount() {
         return 1;
@@ -140,6 +150,11 @@ public class SingleParticipantDatabase implements ParticipantDatabase {
         // Nothing to do here.
     }
 
+    @Override
+    public void close() {
+        // Nothing to do here.
+    }
+
     // getters & setters ----------------------------------------------------------------------------------------------
     public void setParticipant(RtpParticipant remoteParticipant) {
         this.participant = remoteParticipant;
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+
+/**
+ * Resources which can be shared by a large number of sessions living in the same process:
+ * <ul>
+ * 	<li>a bounded group of event loops,</li>
+ * 	<li>one {@link HashedWheelTimer} for all periodic session tasks and</li>
+ * 	<li>one {@link ByteBufAllocator} for all channels.</li>
+ * </ul>
+ * Without a runtime every session creates its own event loop group and timer thread. Sessions created with a runtime
+ * are pinned to one of its event loops (see {@link #nextEventLoop(String)}), so the data and control channel of a
+ * session are always served by the same thread. Terminating such a session closes its channels only, the shared
+ * resources keep running until {@link #shutdown()} is called.
+ * <br/>
+ * Shared runtimes use NIO transports or, if requested and available on this platform, native epoll transports. The
+ * {@code useNio} property of the sessions is ignored.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class SessionRuntime {
+
+	// configuration defaults -----------------------------------------------------------------------------------------
+    private static final int EVENT_LOOPS = Runtime.getRuntime().availableProcessors();
+    private static final long TIMER_TICK_DURATION = 100;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private final boolean epoll;
+    private final EventLoopGroup eventLoopGroup;
+    private final EventLoop[] eventLoops;
+    private final HashedWheelTimer timer;
+    private final ByteBufAllocator allocator;
+    private final AtomicBoolean running;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    /**
+     * Creates a runtime with one event loop per available processor.
+     *
+     * @see #SessionRuntime(int)
+     */
+    public SessionRuntime() {
+    	this(EVENT_LOOPS);
+    }
+
+    /**
+     * Creates a new NIO runtime.
+     *
+     * @param eventLoops number of event loop threads shared by all sessions of this runtime
+     * @see #SessionRuntime(int, boolean)
+     */
+    public SessionRuntime(int eventLoops) {
+    	this(eventLoops, false);
+    }
+
+    /**
+     * Creates a new runtime and starts its timer.
+     *
+     * @param eventLoops number of event loop threads shared by all sessions of this runtime
+     * @param useEpoll use the native epoll transport, falls back to NIO if epoll is not available on this platform
+     */
+    public SessionRuntime(int eventLoops, boolean useEpoll) {
+    	if (eventLoops <= 0) {
+    		throw new IllegalArgumentException("At least one event loop is required");
+    	}
+
+    	this.epoll = useEpoll && Epoll.isAvailable();
+    	final DefaultThreadFactory threadFactory = new DefaultThreadFactory("imflux-session-loop", true);
+    	if (this.epoll) {
+    		this.eventLoopGroup = new EpollEventLoopGroup(eventLoops, threadFactory);
+    	} else {
+    		this.eventLoopGroup = new NioEventLoopGroup(eventLoops, threadFactory);
+    	}
+    	// collect the loops once to be able to pick them by affinity instead of round robin
+    	final List<EventLoop> loops = new ArrayList<>(eventLoops);
+    	for (EventExecutor executor : this.eventLoopGroup) {
+    		loops.add((EventLoop) executor);
+    	}
+    	this.eventLoops = loops.toArray(new EventLoop[loops.size()]);
+
+    	this.timer = new HashedWheelTimer(new DefaultThreadFactory("imflux-session-timer", true),
+    			TIMER_TICK_DURATION, TimeUnit.MILLISECONDS);
+    	this.timer.start();
+    	this.allocator = PooledByteBufAllocator.DEFAULT;
+    	this.running = new AtomicBoolean(true);
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    /**
+     * Returns the event loop a session with the given id is assigned to. The same id is always mapped to the same
+     * event loop, so all channels of a session share one thread.
+     *
+     * @param sessionId the id of the session
+     * @return an event loop of this runtime
+     */
+    public EventLoop nextEventLoop(String sessionId) {
+    	if (sessionId == null) {
+    		return this.eventLoopGroup.next();
+    	}
+    	return this.eventLoops[indexOf(sessionId)];
+    }
+
+    /**
+     * Returns the event loops used by a session which binds several sockets to the same port (SO_REUSEPORT). The
+     * first loop is always the one returned by {@link #nextEventLoop(String)}, the others follow it, so no loop is
+     * returned twice as long as {@code count} does not exceed {@link #getEventLoopCount()}.
+     *
+     * @param sessionId the id of the session
+     * @param count number of event loops needed
+     * @return {@code count} event loops of this runtime
+     */
+    public EventLoop[] nextEventLoops(String sessionId, int count) {
+    	final int first = (sessionId == null) ? 0 : indexOf(sessionId);
+    	final EventLoop[] loops = new EventLoop[count];
+    	for (int i = 0; i < count; i++) {
+    		loops[i] = this.eventLoops[(first + i) % this.eventLoops.length];
+    	}
+    	return loops;
+    }
+
+    /**
+     * Creates a new, unregistered TCP client channel matching the transport of this runtime.
+     *
+     * @return a new {@link SocketChannel}
+     */
+    public SocketChannel newSocketChannel() {
+    	return this.epoll ? new EpollSocketChannel() : new NioSocketChannel();
+    }
+
+    /**
+     * Shuts down the event loops and the timer and waits for the event loops to terminate. Sessions still using this
+     * runtime should be terminated beforehand.
+     */
+    public void shutdown() {
+    	if (!this.running.getAndSet(false)) {
+    		return;
+    	}
+    	this.timer.stop();
+    	this.eventLoopGroup.shutdownGracefully();
+    	this.eventLoopGroup.terminationFuture().syncUninterruptibly();
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private int indexOf(String sessionId) {
+    	// spread the bits of the hash code, ids often differ only in their last characters
+    	int hash = sessionId.hashCode();
+    	hash ^= (hash >>> 16);
+    	hash *= 0x85ebca6b;
+    	hash ^= (hash >>> 13);
+    	return (hash & 0x7fffffff) % this.eventLoops.length;
+    }
+
+    // getters & setters ----------------------------------------------------------------------------------------------
+    public boolean isRunning() {
+    	return this.running.get();
+    }
+
+    /**
+     * @return {@code true} if this runtime uses the native epoll transport, {@code false} if it uses NIO
+     */
+    public boolean isEpoll() {
+    	return this.epoll;
+    }
+
+    public Class<? extends DatagramChannel> getDatagramChannelType() {
+    	return this.epoll ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+
+    public Class<? extends ServerSocketChannel> getServerChannelType() {
+    	return this.epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public EventLoopGroup getEventLoopGroup() {
+    	return this.eventLoopGroup;
+    }
+
+    public int getEventLoopCount() {
+    	return this.eventLoops.length;
+    }
+
+    public HashedWheelTimer getTimer() {
+    	return this.timer;
+    }
+
+    public ByteBufAllocator getAllocator() {
+    	return this.allocator;
+    }
+}
@@ -15,17 +15,23 @@
  */
 package sas.systems.imflux.session.rtp;
 
-import java.math.BigInteger;
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.AddressedEnvelope;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -33,22 +39,32 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.oio.OioEventLoopGroup;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.channel.socket.oio.OioDatagramChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timeout;
 import io.netty.util.TimerTask;
 import sas.systems.imflux.logging.Logger;
+import sas.systems.imflux.network.DataPacketFilter;
 import sas.systems.imflux.network.udp.UdpControlHandler;
 import sas.systems.imflux.network.udp.UdpControlPacketDecoder;
 import sas.systems.imflux.network.udp.UdpControlPacketEncoder;
+import sas.systems.imflux.network.udp.UdpDataFilterHandler;
 import sas.systems.imflux.network.udp.UdpDataHandler;
 import sas.systems.imflux.network.udp.UdpDataPacketDecoder;
 import sas.systems.imflux.network.udp.UdpDataPacketEncoder;
+import sas.systems.imflux.network.udp.UdpMuxPacketDecoder;
 import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.DataPacketView;
 import sas.systems.imflux.packet.rtcp.AbstractReportPacket;
 import sas.systems.imflux.packet.rtcp.AppDataPacket;
 import sas.systems.imflux.packet.rtcp.ByePacket;
@@ -60,10 +76,14 @@ import sas.systems.imflux.packet.rtcp.SdesChunk;
 import sas.systems.imflux.packet.rtcp.SdesChunkItems;
 import sas.systems.imflux.packet.rtcp.SenderReportPacket;
 import sas.systems.imflux.packet.rtcp.SourceDescriptionPacket;
+import sas.systems.imflux.participant.ExtendedSequenceTracker;
 import sas.systems.imflux.participant.ParticipantDatabase;
 import sas.systems.imflux.participant.ParticipantOperation;
 import sas.systems.imflux.participant.RtpParticipant;
 import sas.systems.imflux.participant.RtpParticipantInfo;
+import sas.systems.imflux.session.SessionRuntime;
+import sas.systems.imflux.util.ConcurrentSsrcMap;
+import sas.systems.imflux.util.TimeUtils;
 
 /**
  * Defines standard and common functionality for a RTCP/RTP session. A RTP session 
@@ -72,6 +92,7 @@ import sas.systems.imflux.participant.RtpParticipantInfo;
  * 	<li>{@link #dataChannel} for data exchange</li>
  * 	<li>{@link #controlChannel} for control commands</li>
  * </ul>
+ * With rtcp-mux (see {@link #setRtcpMux(boolean)}) both are the same channel.
  * <p>
  * This class has a default RTCP handling implementation, which is used by default.<br/>
  * You can deactivate this functionality with {@code setAutomatedRtcpHandling(false)}.
@@ -80,22 +101,38 @@ import sas.systems.imflux.participant.RtpParticipantInfo;
  * 
  * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
  */
-public abstract class AbstractRtpSession implements RtpSession, TimerTask {
+public abstract class AbstractRtpSession implements RtpSession, DataPacketFilter, TimerTask {
 
     // constants ------------------------------------------------------------------------------------------------------
     protected static final Logger LOG = Logger.getLogger(AbstractRtpSession.class);
     protected static final String VERSION = "imflux_0.1.1_16052016";
+    // sizes of the parts of report packets in octets
+    private static final int REPORT_HEADER_SIZE = 8;
+    private static final int SENDER_INFO_SIZE = 20;
+    private static final int REPORT_BLOCK_SIZE = 24;
+    private static final int MAX_REPORT_BLOCKS = 31;
 
     // configuration defaults -----------------------------------------------------------------------------------------
     protected static final boolean USE_NIO = true;
     protected static final boolean DISCARD_OUT_OF_ORDER = true;
     protected static final int BANDWIDTH_LIMIT = 256;
+    protected static final double RTCP_BANDWIDTH_FRACTION = 0.05;
     protected static final int SEND_BUFFER_SIZE = 1500;
     protected static final int RECEIVE_BUFFER_SIZE = 1500;
     protected static final int MAX_COLLISIONS_BEFORE_CONSIDERING_LOOP = 3;
     protected static final boolean AUTOMATED_RTCP_HANDLING = true;
     protected static final boolean TRY_TO_UPDATE_ON_EVERY_SDES = true;
     protected static final int PARTICIPANT_DATABASE_CLEANUP = 10;
+    protected static final boolean ZERO_COPY_RECEIVE = false;
+    protected static final boolean USE_EPOLL = false;
+    protected static final boolean RTCP_MUX = false;
+    protected static final boolean CONSOLIDATE_FLUSHES = false;
+    protected static final int MAX_CONSOLIDATED_FLUSHES = 256;
+    protected static final int REUSE_PORT_SOCKETS = Runtime.getRuntime().availableProcessors();
+    protected static final int JITTER_BUFFER_CAPACITY = 0;
+    protected static final int MIN_PLAYOUT_DELAY = 10;
+    protected static final int MAX_PLAYOUT_DELAY = 200;
+    protected static final int MTU = 1500;
 
     // configuration --------------------------------------------------------------------------------------------------
     protected final String id;
@@ -110,6 +147,16 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
     protected boolean automatedRtcpHandling;
     protected boolean tryToUpdateOnEverySdes;
     protected int participantDatabaseCleanup;
+    protected boolean zeroCopyReceive;
+    protected boolean useEpoll;
+    protected int reusePortSockets;
+    protected boolean rtcpMux;
+    protected boolean consolidateFlushes;
+    protected int clockRate;
+    protected int jitterBufferCapacity;
+    protected int minPlayoutDelay;
+    protected int maxPlayoutDelay;
+    protected int mtu;
 
     // internal vars --------------------------------------------------------------------------------------------------
     protected final AtomicBoolean running;
@@ -121,17 +168,34 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
     protected EventLoopGroup workerGroup;
     protected Channel dataChannel;
     protected Channel controlChannel;
+    protected final List<Channel> reusePortChannels;
+    RtpSessionBundle bundle;
     protected final AtomicInteger sequence;
     protected final AtomicBoolean sentOrReceivedPackets;
     protected final AtomicInteger collisions;
     protected final AtomicLong sentByteCounter;
     protected final AtomicLong sentPacketCounter;
-    protected int periodicRtcpSendInterval;
+    protected volatile long lastSentTimestamp;
+    protected RtcpTransmissionInterval rtcpInterval;
+    protected volatile Timeout rtcpTimeout;
+    // used by the RTCP timer only
+    protected long previousReportInstant;
+    protected long lastReportInstant;
+    protected long sentPacketsAtPreviousReport;
+    protected long sentPacketsAtLastReport;
+    protected long lastReportedSsrc;
     protected final boolean internalTimer;
+    protected final SessionRuntime runtime;
+    protected final ConcurrentSsrcMap<JitterBuffer> jitterBuffers;
+    // encoded SDES packet of the local participant, guarded by sdesLock
+    private final Object sdesLock;
+    private ByteBuf encodedSdes;
+    private long encodedSdesSsrc;
+    private int encodedSdesModifications;
 
     // constructors ---------------------------------------------------------------------------------------------------
     public AbstractRtpSession(String id, int payloadType, RtpParticipant local) {
-        this(id, payloadType, local, null/*, null*/);
+        this(id, payloadType, local, (HashedWheelTimer) null/*, null*/);
     }
     
     /**
@@ -142,6 +206,24 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
      * @param timer timer for periodic RTCP report sending, if the timer is shared across the application
      */
     public AbstractRtpSession(String id, int payloadType, RtpParticipant local, HashedWheelTimer timer) {
+        this(id, payloadType, local, timer, null);
+    }
+
+    /**
+     * Creates a session which uses the event loops, the timer and the allocator of a shared {@link SessionRuntime}.
+     * Terminating the session does not stop the runtime.
+     * 
+     * @param id
+     * @param payloadType 
+     * @param local information about the local participant
+     * @param runtime shared resources of the application
+     */
+    public AbstractRtpSession(String id, int payloadType, RtpParticipant local, SessionRuntime runtime) {
+        this(id, payloadType, local, runtime.getTimer(), runtime);
+    }
+
+    private AbstractRtpSession(String id, int payloadType, RtpParticipant local, HashedWheelTimer timer,
+                               SessionRuntime runtime) {
 		if ((payloadType < 0) || (payloadType > 127)) {
 			throw new IllegalArgumentException("PayloadTypes must be in range [0;127]");
 		}   		
@@ -153,7 +235,7 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         this.id = id;
         this.payloadType = payloadType;
         this.localParticipant = local;
-        this.participantDatabase = this.createDatabase();
+        this.runtime = runtime;
         if (timer == null) {
             this.timer = new HashedWheelTimer(1, TimeUnit.SECONDS);
             this.internalTimer = true;
@@ -161,12 +243,17 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
             this.timer = timer;
             this.internalTimer = false;
         }
+        // the database may use the timer
+        this.participantDatabase = this.createDatabase();
 
         this.running = new AtomicBoolean(false);
         // CopyOnWriteArrayList to make this class thread-safe
         this.dataListeners = new CopyOnWriteArrayList<>();
         this.controlListeners = new CopyOnWriteArrayList<>();
         this.eventListeners = new CopyOnWriteArrayList<>();
+        this.reusePortChannels = new ArrayList<>();
+        this.jitterBuffers = new ConcurrentSsrcMap<>();
+        this.sdesLock = new Object();
         this.sequence = new AtomicInteger(0);
         this.sentOrReceivedPackets = new AtomicBoolean(false);
         this.collisions = new AtomicInteger(0);
@@ -182,6 +269,17 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         this.automatedRtcpHandling = AUTOMATED_RTCP_HANDLING;
         this.tryToUpdateOnEverySdes = TRY_TO_UPDATE_ON_EVERY_SDES;
         this.participantDatabaseCleanup = PARTICIPANT_DATABASE_CLEANUP;
+        this.zeroCopyReceive = ZERO_COPY_RECEIVE;
+        this.useEpoll = USE_EPOLL;
+        this.reusePortSockets = REUSE_PORT_SOCKETS;
+        this.rtcpMux = RTCP_MUX;
+        this.consolidateFlushes = CONSOLIDATE_FLUSHES;
+        this.clockRate = defaultClockRateOf(payloadType);
+        this.jitterBufferCapacity = JITTER_BUFFER_CAPACITY;
+        this.minPlayoutDelay = MIN_PLAYOUT_DELAY;
+        this.maxPlayoutDelay = MAX_PLAYOUT_DELAY;
+        this.mtu = MTU;
+        this.lastReportedSsrc = -1;
     }
 
     // RtpSession -----------------------------------------------------------------------------------------------------
@@ -209,78 +307,21 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         if (this.running.get()) {
             return true;
         }
-        Class<? extends Channel> channelType;
-        
-        if(useNio) {
-            // create data channel bootstrap
-//          EventLoopGroup bossGroup = new NioEventLoopGroup(5, Executors.defaultThreadFactory()); // if we want to use others than the defaults
-	        this.workerGroup = new NioEventLoopGroup();
-	        channelType = NioDatagramChannel.class;
-        } else {
-        	this.workerGroup = new OioEventLoopGroup();
-        	channelType = OioDatagramChannel.class;
-        }
-        
-        Bootstrap dataBootstrap = new Bootstrap();
-        dataBootstrap.group(this.workerGroup)
-	        	.option(ChannelOption.SO_SNDBUF, this.sendBufferSize)
-	        	.option(ChannelOption.SO_RCVBUF, this.receiveBufferSize)
-	        	// option not set: "receiveBufferSizePredictorFactory", new FixedReceiveBufferSizePredictorFactory(this.receiveBufferSize)
-	        	.channel(channelType) // use an UDP channel implementation => forces us to use AddressedEnvelope
-	        	.handler(new ChannelInitializer<Channel>() { // is used to initialize the ChannelPipeline
-					@Override
-					protected void initChannel(Channel ch) throws Exception {
-						ChannelPipeline pipeline = ch.pipeline();
-						pipeline.addLast("decoder", UdpDataPacketDecoder.getInstance());
-						pipeline.addLast("encoder", UdpDataPacketEncoder.getInstance());
-						pipeline.addLast("handler", new UdpDataHandler(AbstractRtpSession.this));
-					}
-				});
-        
-        // create control channel bootstrap
-        Bootstrap controlBootstrap = new Bootstrap();
-        controlBootstrap.group(this.workerGroup)
-	        	.option(ChannelOption.SO_SNDBUF, this.sendBufferSize)
-	        	.option(ChannelOption.SO_RCVBUF, this.receiveBufferSize)
-	        	// option not set: "receiveBufferSizePredictorFactory", new FixedReceiveBufferSizePredictorFactory(this.receiveBufferSize)
-	        	.channel(channelType) // use an UDP channel implementation => forces us to use AddressedEnvelope
-	        	.handler(new ChannelInitializer<Channel>() { // is used to initialize the ChannelPipeline
-					@Override
-					protected void initChannel(Channel ch) throws Exception {
-						ChannelPipeline pipeline = ch.pipeline();
-						pipeline.addLast("decoder", UdpControlPacketDecoder.getInstance());
-						pipeline.addLast("encoder", UdpControlPacketEncoder.getInstance());
-						pipeline.addLast("handler", new UdpControlHandler(AbstractRtpSession.this));
-					}
-				});
-
-        // create data channel
-        SocketAddress dataAddress = this.localParticipant.getDataDestination();
-        try {
-        	ChannelFuture future = dataBootstrap.bind(dataAddress);
-        	this.dataChannel = future.sync().channel(); // wait for future to complete and retrieve channel
-        } catch (Exception e) {
-            LOG.error("Failed to bind data channel for session with id " + this.id, e);
-            shutdownEventLoopGroup();
-            return false;
-        }
-        
-        // create control channel
-        SocketAddress controlAddress = this.localParticipant.getControlDestination();
-        try {
-        	ChannelFuture future = controlBootstrap.bind(controlAddress);
-            this.controlChannel = future.sync().channel(); // wait for future to complete and retrieve channel
-
-        } catch (Exception e) {
-            LOG.error("Failed to bind control channel for session with id " + this.id, e);
-            this.dataChannel.close();
-            shutdownEventLoopGroup();
-            return false;
+        if (this.bundle != null) {
+        	// the channel is owned by the bundle, which also receives the packets and routes them to this session
+        	this.dataChannel = this.bundle.getChannel();
+        	this.controlChannel = this.dataChannel;
+        	this.workerGroup = this.dataChannel.eventLoop();
+        } else if (!this.openChannels()) {
+        	return false;
         }
 
-        LOG.debug("Data & Control channels bound for RtpSession with id {}.", this.id);
+        LOG.debug("Data & Control channels bound for RtpSession with id {} (rtcp-mux: {}).", this.id, this.rtcpMux);
         // Send first RTCP packet.
         this.joinSession(this.localParticipant.getSsrc());
+        if (this.automatedRtcpHandling) {
+            this.rtcpInterval = this.createRtcpInterval();
+        }
         this.running.set(true);
 
         // Add the participant database cleaner.
@@ -298,7 +339,8 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         
         // Add the periodic RTCP report generator.
         if (this.automatedRtcpHandling) {
-            this.timer.newTimeout(this, this.updatePeriodicRtcpSendInterval(), TimeUnit.SECONDS);
+            final long now = TimeUtils.nowNanos();
+            this.scheduleRtcp(this.rtcpInterval.start(now, this.getMemberCount()), now);
         }
 
         if (this.internalTimer) {
@@ -325,13 +367,19 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
             return false;
         }
 
-        DataPacket packet = new DataPacket();
+        // the packet does not escape this method (except for pending writes holding their own reference), so it can
+        // be taken from the pool and is recycled once it was written
+        DataPacket packet = DataPacket.newPooledInstance();
         // Other fields will be set by sendDataPacket()
         packet.setTimestamp(timestamp);
         packet.setData(data);
         packet.setMarker(marked);
 
-        return this.sendDataPacket(packet);
+        try {
+            return this.sendDataPacket(packet);
+        } finally {
+            packet.release();
+        }
     }
 
     /**
@@ -347,11 +395,69 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         }
         		
         packet.setSsrc(this.localParticipant.getSsrc());
-        packet.setSequenceNumber(this.sequence.incrementAndGet());
+        // sequence numbers are 16 bit and wrap around
+        packet.setSequenceNumber(this.sequence.incrementAndGet() & 0xffff);
+        this.lastSentTimestamp = packet.getTimestamp();
         this.internalSendData(packet);
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sendDataBatch(List<byte[]> data, long timestamp, boolean marked) {
+        if (!this.running.get()) {
+            return false;
+        }
+
+        final int size = data.size();
+        final List<DataPacket> packets = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                // Other fields will be set by sendDataPackets()
+                DataPacket packet = DataPacket.newPooledInstance();
+                packet.setTimestamp(timestamp);
+                packet.setData(data.get(i));
+                packet.setMarker(marked && (i == (size - 1)));
+                packets.add(packet);
+            }
+            return this.sendDataPackets(packets);
+        } finally {
+            for (DataPacket packet : packets) {
+                packet.release();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sendDataPackets(List<DataPacket> packets) {
+        if (!this.running.get()) {
+            return false;
+        }
+        if (packets.isEmpty()) {
+            return true;
+        }
+
+        // reserve the sequence numbers of the whole burst at once, so concurrent senders cannot interleave
+        final int firstSequenceNumber = this.sequence.getAndAdd(packets.size()) + 1;
+        final long ssrc = this.localParticipant.getSsrc();
+        for (int i = 0; i < packets.size(); i++) {
+            DataPacket packet = packets.get(i);
+            if (!(this.payloadType == packet.getPayloadType())) {
+                packet.setPayloadType(this.payloadType);
+            }
+            packet.setSsrc(ssrc);
+            packet.setSequenceNumber((firstSequenceNumber + i) & 0xffff);
+        }
+        this.lastSentTimestamp = packets.get(packets.size() - 1).getTimestamp();
+        this.internalSendData(packets);
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -468,6 +574,29 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         this.eventListeners.remove(listener);
     }
 
+    // DataPacketFilter -----------------------------------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Rejects packets while the session is not running, packets with a payload type other than the one of this 
+     * session and (if enabled) out of order packets of already known participants, unless they are reordered by the 
+     * jitter buffer. Everything else (like SSRC collisions) is left to 
+     * {@link #dataPacketReceived(SocketAddress, DataPacket)}.
+     */
+    @Override
+    public boolean acceptDataPacket(SocketAddress origin, DataPacketView header) {
+        if (!this.running.get() || (this.payloadType != header.getPayloadType())) {
+            return false;
+        }
+        if (!this.discardOutOfOrder || (this.jitterBufferCapacity > 0)) {
+            return true;
+        }
+
+        RtpParticipant participant = this.participantDatabase.getParticipant(header.getSsrc());
+        return (participant == null) || !ExtendedSequenceTracker.isReordered(header.getSequenceNumber(),
+                                                                             participant.getLastSequenceNumber());
+    }
+
     // DataPacketReceiver ---------------------------------------------------------------------------------------------
     /**
      * {@inheritDoc}
@@ -523,17 +652,34 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
             // must be discarded.
             return;
         }
+        // The statistics include duplicated and reordered packets, this thread is the only one updating them.
+        final long now = TimeUtils.nowNanos();
+        final ExtendedSequenceTracker.Result result =
+                participant.getReceptionStatistics().packetReceived(packet, now, this.clockRate);
+        final boolean inSequence = (result != ExtendedSequenceTracker.Result.REORDERED)
+                && (result != ExtendedSequenceTracker.Result.INVALID);
+
+        if (this.jitterBufferCapacity > 0) {
+            // Reordered packets are put back in sequence by the jitter buffer instead of being discarded.
+            if (inSequence) {
+                participant.dataPacketReceived(origin, packet.getSequenceNumber());
+            } else {
+                participant.packetReceived();
+            }
+            this.getOrCreateJitterBuffer(participant).offer(packet, result, now);
+            return;
+        }
 
-        // Should the packet be discarded due to out of order SN?
-        if ((participant.getLastSequenceNumber() >= packet.getSequenceNumber()) && this.discardOutOfOrder) {
+        // Should the packet be discarded due to out of order SN? The extended SN survives wrap arounds and restarts.
+        if (this.discardOutOfOrder && !inSequence) {
             LOG.trace("Discarded out of order packet from {} in session with id {} (last SN was {}, packet SN was {}).",
                       participant, this.id, participant.getLastSequenceNumber(), packet.getSequenceNumber());
+            participant.packetReceived();
             return;
         }
 
-        // Update last SN for participant.
-        participant.setLastSequenceNumber(packet.getSequenceNumber());
-        participant.setLastDataOrigin(origin);
+        // Update last SN and origin for participant, this thread is the only one receiving data packets.
+        participant.dataPacketReceived(origin, packet.getSequenceNumber());
 
         // Finally, dispatch the event to the data listeners.
         for (RtpSessionDataListener listener : this.dataListeners) {
@@ -559,6 +705,9 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
             return;
         }
 
+        if (packet.getEncodedSize() > 0) {
+            this.rtcpInterval.reportReceived(packet.getEncodedSize());
+        }
         for (ControlPacket controlPacket : packet.getControlPackets()) {
             switch (controlPacket.getType()) {
                 case SENDER_REPORT:
@@ -588,42 +737,263 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
     /**
      * {@inheritDoc}
      * <br/>
-     * Sends for each remote participant a report containing the status
-     * of this session participant. 
+     * Sends a single compound packet to all remote participants, containing the report blocks of the sources heard
+     * since the last report and the source description of this session participant. The reports are sent in the interval computed by the 
+     * {@link RtcpTransmissionInterval}, which is reconsidered each time the timer expires.
      */
     @Override
     public void run(Timeout timeout) throws Exception {
-        if (!this.running.get()) {
+        if (!this.running.get() || (timeout != this.rtcpTimeout)) {
+            // terminated or rescheduled by the reverse reconsideration
+            return;
+        }
+
+        final long now = TimeUtils.nowNanos();
+        final int members = this.getMemberCount();
+        final boolean weSent = this.getSentPackets() > this.sentPacketsAtPreviousReport;
+        final int senders = this.countSenders(this.previousReportInstant) + (weSent ? 1 : 0);
+        if (!this.rtcpInterval.reconsider(now, members, senders, weSent)) {
+            // timer reconsideration: the group grew, so the report is postponed
+            this.scheduleRtcp(this.rtcpInterval.getNextTransmission(), now);
             return;
         }
-        // send status update per remote participant
+
+        // one status update for all remote participants, encoded only once and limited to the MTU
         final long currentSsrc = this.localParticipant.getSsrc();
-        final SourceDescriptionPacket sdesPacket = buildSdesPacket(currentSsrc);
-        this.participantDatabase.doWithReceivers(new ParticipantOperation() {
-            @Override
-            public void doWithParticipant(RtpParticipant participant) throws Exception {
-                AbstractReportPacket report = buildReportPacket(currentSsrc, participant);
-                // TODO: really to all other participants?
-                // i would use:
-//                writeToControl(new CompoundControlPacket(report, sdesPacket), participant.getControlDestination());
-                internalSendControl(new CompoundControlPacket(report, sdesPacket));
-            }
-        });
+        final ByteBuf sdes = this.encodedSdesPacket(currentSsrc);
+        final int maxSize = this.mtu - RtcpTransmissionInterval.HEADER_OVERHEAD - sdes.readableBytes();
+        final ByteBuf encoded = encode(this.buildReportPackets(currentSsrc, maxSize), sdes);
+        final int size = encoded.readableBytes();
+        this.internalSendControl(encoded);
 
         if (!this.running.get()) {
             return;
         }
-        this.timer.newTimeout(this, this.updatePeriodicRtcpSendInterval(), TimeUnit.SECONDS);
+        this.previousReportInstant = this.lastReportInstant;
+        this.lastReportInstant = TimeUtils.now();
+        this.sentPacketsAtPreviousReport = this.sentPacketsAtLastReport;
+        this.sentPacketsAtLastReport = this.getSentPackets();
+        this.scheduleRtcp(this.rtcpInterval.reportSent(now, size, members, senders, weSent), now);
     }
 
     // protected helpers ----------------------------------------------------------------------------------------------
     /**
-	 * Shuts down the workerGroup and waits for its termination.
+     * Attaches this session to the channel of a bundle. Must be called before initialization. The session then uses
+     * rtcp-mux and does not bind channels on its own.
+     * 
+     * @param bundle the bundle receiving and routing the packets of this session
+     */
+    void attachToBundle(RtpSessionBundle bundle) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot attach a running session to a bundle");
+        }
+        this.bundle = bundle;
+        this.rtcpMux = true;
+    }
+
+    /**
+     * Creates the event loop group and binds the data and control channels of this session.
+     * 
+     * @return {@code true} if all channels were bound, {@code false} otherwise
+     */
+    protected boolean openChannels() {
+        Class<? extends Channel> channelType;
+        ByteBufAllocator allocator;
+        // one group per socket bound to the data and the control port
+        EventLoopGroup[] socketGroups;
+        boolean epoll = this.useEpoll && ((this.runtime != null) ? this.runtime.isEpoll() : Epoll.isAvailable());
+        if (this.useEpoll && !epoll) {
+        	LOG.debug("Native epoll transport not available for RtpSession with id {}, falling back.", this.id);
+        }
+        
+        if (this.runtime != null) {
+            // the channels are served by the event loops of the shared runtime, the first one is the session's own
+            channelType = this.runtime.getDatagramChannelType();
+            allocator = this.runtime.getAllocator();
+            socketGroups = this.runtime.nextEventLoops(this.id,
+            		epoll ? Math.min(this.reusePortSockets, this.runtime.getEventLoopCount()) : 1);
+            this.workerGroup = socketGroups[0];
+        } else if(epoll) {
+        	// one event loop per socket, each one receives a share of the datagrams sent to the port
+        	this.workerGroup = new EpollEventLoopGroup(this.reusePortSockets);
+        	channelType = EpollDatagramChannel.class;
+        	allocator = ByteBufAllocator.DEFAULT;
+        	socketGroups = new EventLoopGroup[this.reusePortSockets];
+        	for (int i = 0; i < socketGroups.length; i++) {
+        		socketGroups[i] = this.workerGroup.next();
+        	}
+        } else if(useNio) {
+            // create data channel bootstrap
+//          EventLoopGroup bossGroup = new NioEventLoopGroup(5, Executors.defaultThreadFactory()); // if we want to use others than the defaults
+	        this.workerGroup = new NioEventLoopGroup();
+	        channelType = NioDatagramChannel.class;
+	        allocator = ByteBufAllocator.DEFAULT;
+	        socketGroups = new EventLoopGroup[] { this.workerGroup };
+        } else {
+        	this.workerGroup = new OioEventLoopGroup();
+        	channelType = OioDatagramChannel.class;
+        	allocator = ByteBufAllocator.DEFAULT;
+        	socketGroups = new EventLoopGroup[] { this.workerGroup };
+        }
+        
+        Bootstrap dataBootstrap = new Bootstrap();
+        dataBootstrap.group(this.workerGroup)
+	        	.option(ChannelOption.ALLOCATOR, allocator)
+	        	.option(ChannelOption.SO_SNDBUF, this.sendBufferSize)
+	        	.option(ChannelOption.SO_RCVBUF, this.receiveBufferSize)
+	        	// option not set: "receiveBufferSizePredictorFactory", new FixedReceiveBufferSizePredictorFactory(this.receiveBufferSize)
+	        	.channel(channelType) // use an UDP channel implementation => forces us to use AddressedEnvelope
+	        	.handler(new ChannelInitializer<Channel>() { // is used to initialize the ChannelPipeline
+					@Override
+					protected void initChannel(Channel ch) throws Exception {
+						ChannelPipeline pipeline = ch.pipeline();
+						if (consolidateFlushes) {
+							pipeline.addLast("flusher", new FlushConsolidationHandler(MAX_CONSOLIDATED_FLUSHES, true));
+						}
+						if (rtcpMux) {
+							// RTCP packets are decoded here, RTP packets pass on to the filter
+							pipeline.addLast("demux", UdpMuxPacketDecoder.getInstance());
+						}
+						pipeline.addLast("filter", new UdpDataFilterHandler(AbstractRtpSession.this));
+						pipeline.addLast("decoder", zeroCopyReceive ? UdpDataPacketDecoder.getZeroCopyInstance() 
+								: UdpDataPacketDecoder.getInstance());
+						pipeline.addLast("encoder", UdpDataPacketEncoder.getInstance());
+						if (rtcpMux) {
+							pipeline.addLast("controlEncoder", UdpControlPacketEncoder.getInstance());
+						}
+						pipeline.addLast("handler", new UdpDataHandler(AbstractRtpSession.this));
+						if (rtcpMux) {
+							pipeline.addLast("controlHandler", new UdpControlHandler(AbstractRtpSession.this));
+						}
+					}
+				});
+        
+        // create control channel bootstrap
+        Bootstrap controlBootstrap = new Bootstrap();
+        controlBootstrap.group(this.workerGroup)
+	        	.option(ChannelOption.ALLOCATOR, allocator)
+	        	.option(ChannelOption.SO_SNDBUF, this.sendBufferSize)
+	        	.option(ChannelOption.SO_RCVBUF, this.receiveBufferSize)
+	        	// option not set: "receiveBufferSizePredictorFactory", new FixedReceiveBufferSizePredictorFactory(this.receiveBufferSize)
+	        	.channel(channelType) // use an UDP channel implementation => forces us to use AddressedEnvelope
+	        	.handler(new ChannelInitializer<Channel>() { // is used to initialize the ChannelPipeline
+					@Override
+					protected void initChannel(Channel ch) throws Exception {
+						ChannelPipeline pipeline = ch.pipeline();
+						if (consolidateFlushes) {
+							pipeline.addLast("flusher", new FlushConsolidationHandler(MAX_CONSOLIDATED_FLUSHES, true));
+						}
+						pipeline.addLast("decoder", UdpControlPacketDecoder.getInstance());
+						pipeline.addLast("encoder", UdpControlPacketEncoder.getInstance());
+						pipeline.addLast("handler", new UdpControlHandler(AbstractRtpSession.this));
+					}
+				});
+
+        if (socketGroups.length > 1) {
+        	dataBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        	controlBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+
+        // create data channel
+        SocketAddress dataAddress = this.localParticipant.getDataDestination();
+        try {
+        	this.dataChannel = bindChannels(dataBootstrap, dataAddress, socketGroups);
+        } catch (Exception e) {
+            LOG.error("Failed to bind data channel for session with id " + this.id, e);
+            closeReusePortChannels();
+            shutdownEventLoopGroup();
+            return false;
+        }
+        
+        // create control channel, with rtcp-mux the data channel carries the control packets as well
+        SocketAddress controlAddress = this.localParticipant.getControlDestination();
+        try {
+        	if (this.rtcpMux) {
+        		this.controlChannel = this.dataChannel;
+        	} else {
+        		this.controlChannel = bindChannels(controlBootstrap, controlAddress, socketGroups);
+        	}
+        } catch (Exception e) {
+            LOG.error("Failed to bind control channel for session with id " + this.id, e);
+            this.dataChannel.close();
+            closeReusePortChannels();
+            shutdownEventLoopGroup();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+	 * Shuts down the workerGroup and waits for its termination. The event loops of a shared {@link SessionRuntime} are
+	 * left running.
 	 */
 	protected void shutdownEventLoopGroup() {
+		if (this.bundle != null) {
+			return;
+		}
+		if (this.runtime != null) {
+			// only the channels of this session are released, wait for them unless called from their event loop
+			awaitClosed(this.dataChannel);
+			awaitClosed(this.controlChannel);
+			return;
+		}
 		this.workerGroup.shutdownGracefully();
 		this.workerGroup.terminationFuture().syncUninterruptibly();
 	}
+
+	/**
+	 * Binds one socket per given event loop group to the address. All sockets but the first one, which is returned 
+	 * and used for sending, are added to {@link #reusePortChannels}. Binding more than one socket requires the
+	 * SO_REUSEPORT option to be set on the bootstrap.
+	 * 
+	 * @param bootstrap configured bootstrap
+	 * @param address local address to bind to
+	 * @param groups the event loop group of each socket
+	 * @return the first bound channel
+	 * @throws Exception if a socket could not be bound
+	 */
+	protected Channel bindChannels(Bootstrap bootstrap, SocketAddress address, EventLoopGroup[] groups) 
+			throws Exception {
+		ChannelFuture future = bootstrap.clone(groups[0]).bind(address);
+		Channel channel = future.sync().channel(); // wait for future to complete and retrieve channel
+		// bind the other sockets to the address actually used, the requested port may have been an ephemeral one
+		SocketAddress boundAddress = channel.localAddress();
+		try {
+			for (int i = 1; i < groups.length; i++) {
+				this.reusePortChannels.add(bootstrap.clone(groups[i]).bind(boundAddress).sync().channel());
+			}
+		} catch (Exception e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+
+	/**
+	 * Closes all additional sockets bound with SO_REUSEPORT and waits for them to be closed.
+	 */
+	protected void closeReusePortChannels() {
+		for (Channel channel : this.reusePortChannels) {
+			channel.close();
+		}
+		for (Channel channel : this.reusePortChannels) {
+			awaitClosed(channel);
+		}
+		this.reusePortChannels.clear();
+	}
+
+	private static void awaitClosed(Channel channel) {
+		if ((channel != null) && !channel.eventLoop().inEventLoop()) {
+			channel.closeFuture().syncUninterruptibly();
+			// NIO releases the socket of a closed channel with the next selection of its event loop, wait for it so 
+			// the port can be bound again right away: scheduled tasks only run after the loop selected again
+			channel.eventLoop().schedule(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}, 1, TimeUnit.MILLISECONDS).syncUninterruptibly();
+		}
+	}
 	
     /**
      * <h1>automatedRtcpHandling</h1>
@@ -634,15 +1004,16 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
      * @param abstractReportPacket the report packet to handle
      */
     protected void handleReportPacket(SocketAddress origin, AbstractReportPacket abstractReportPacket) {
-        if (abstractReportPacket.getReportCount() == 0) {
-            return;
-        }
-        
         RtpParticipant context = this.participantDatabase.getParticipant(abstractReportPacket.getSenderSsrc());
         if (context == null) {
             // Ignore; RTCP-SDES or RTP packet must first be received.
             return;
         }
+        // reports without reception reports still show that the participant is alive
+        context.packetReceived();
+        if (abstractReportPacket.getReportCount() == 0) {
+            return;
+        }
 
         for (ReceptionReport receptionReport : abstractReportPacket.getReports()) {
             // Ignore all reception reports except for the one who pertains to the local participant (only data that
@@ -654,8 +1025,10 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
 
         // For sender reports, also handle the sender information.
         if (abstractReportPacket.getType().equals(ControlPacket.Type.SENDER_REPORT)) {
-//            SenderReportPacket senderReport = (SenderReportPacket) abstractReportPacket;
-            // TODO handle SenderReportPacket
+            SenderReportPacket senderReport = (SenderReportPacket) abstractReportPacket;
+            // remembered for the LSR and DLSR fields of our reports
+            context.getReceptionStatistics().senderReportReceived(senderReport.getNtpTimestamp().longValue(), 
+                    TimeUtils.nowNanos());
         }
     }
 
@@ -675,6 +1048,7 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
                 // must be discarded.
                 return;
             }
+            participant.packetReceived();
             if (!participant.hasReceivedSdes() || this.tryToUpdateOnEverySdes) {
                 updateParticipant(chunk, participant);
             }
@@ -692,6 +1066,7 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
 		participant.receivedSdes();
 		// If this participant wasn't created from an SDES packet, then update its participant's description.
 		if (participant.getInfo().updateFromSdesChunk(chunk)) {
+		    this.participantDatabase.participantUpdated(participant);
 		    for (RtpSessionEventListener listener : this.eventListeners) {
 		        listener.participantInformationUpdated(this, participant);
 		    }
@@ -705,10 +1080,13 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
      * @param packet
      */
     protected void handleByePacket(ByePacket packet) {
+        int left = 0;
         for (Long ssrc : packet.getSsrcList()) {
             RtpParticipant participant = this.participantDatabase.getParticipant(ssrc);
             if (participant != null) {
+                left++;
                 participant.byeReceived();
+                this.participantDatabase.participantLeft(participant);
                 for (RtpSessionEventListener listener : eventListeners) {
                     listener.participantLeft(this, participant);
                 }
@@ -716,6 +1094,10 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         }
         LOG.trace("Received BYE for participants with SSRCs {} in session with id '{}' (reason: '{}').",
                   packet.getSsrcList(), this.id, packet. getReasonForLeaving());
+        if (left > 0) {
+            // the participants are still members until they are removed from the database
+            this.reverseReconsideration(this.getMemberCount() - left);
+        }
     }
 
     /**
@@ -729,19 +1111,58 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
     /**
      * This method sends a {@link DataPacket} through the data channel of this session
      * to <strong>all</strong> participants.
+     * <br/>
+     * The packet is encoded only once, each destination gets a duplicate of the encoded buffer. The channel is 
+     * flushed once after the packet was written for all destinations.
+     * 
      * @param packet the {@link DataPacket}
      */
     protected void internalSendData(final DataPacket packet) {
+        final ByteBuf encoded = packet.encode(this.dataChannel.alloc(), 0);
+        // counted once, not per destination
+        this.incrementSentPackets();
+        this.incrementSentBytes(packet.getDataSize());
+        try {
+            this.participantDatabase.doWithReceivers(new ParticipantOperation() {
+                @Override
+                public void doWithParticipant(RtpParticipant participant) throws Exception {
+                    if (!participant.isReceiver() || participant.receivedBye()) {
+                        return;
+                    }
+                    try {
+                        enqueueToData(encoded.retainedDuplicate(), participant.getDataDestination());
+                    } catch (Exception e) {
+                        LOG.error("Failed to send RTP packet to participants in session with id {}.", e, id);
+                    }
+                }
+
+                @Override
+                public String toString() {
+                    return "internalSendData() for session with id " + id;
+                }
+            });
+        } finally {
+            encoded.release();
+            // one flush for all destinations
+            this.flushData();
+        }
+    }
+
+    /**
+     * This method sends several {@link DataPacket}s through the data channel of this session to 
+     * <strong>all</strong> participants. The receivers are looked up only once for the whole burst.
+     * 
+     * @param packets the {@link DataPacket}s in the order they should be sent
+     * @see #writeToData(List, List)
+     */
+    protected void internalSendData(List<DataPacket> packets) {
+        // databases may run the operation in parallel
+        final List<SocketAddress> destinations = Collections.synchronizedList(new ArrayList<SocketAddress>());
         this.participantDatabase.doWithReceivers(new ParticipantOperation() {
             @Override
             public void doWithParticipant(RtpParticipant participant) throws Exception {
-                if (!participant.isReceiver() || participant.receivedBye()) {
-                    return;
-                }
-                try {
-                    writeToData(packet, participant.getDataDestination());
-                } catch (Exception e) {
-                    LOG.error("Failed to send RTP packet to participants in session with id {}.", e, id);
+                if (participant.isReceiver() && !participant.receivedBye()) {
+                    destinations.add(participant.getDataDestination());
                 }
             }
 
@@ -750,6 +1171,7 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
                 return "internalSendData() for session with id " + id;
             }
         });
+        this.writeToData(packets, destinations);
     }
 
     /**
@@ -793,7 +1215,7 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         }
 
         try {
-            this.writeToControl(packet, participant.getControlDestination());
+            this.writeToControl(packet, this.getControlDestination(participant));
         } catch (Exception e) {
             LOG.error("Failed to send RTCP compound packet to {} in session with id {}.", e, participant, this.id);
         }
@@ -810,7 +1232,11 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
      * @param packet the {@link ControlPacket} to be sent
      */
     protected void internalSendControl(final ControlPacket packet) {
-        this.participantDatabase.doWithReceivers(new SendOperation(packet));
+        try {
+            this.participantDatabase.doWithReceivers(new SendOperation(packet));
+        } finally {
+            this.flushControl();
+        }
     }
 
     /**
@@ -820,20 +1246,152 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
      * @param packet the {@link CompoundControlPacket} to be sent
      */
     protected void internalSendControl(final CompoundControlPacket packet) {
-        this.participantDatabase.doWithReceivers(new SendOperation(packet));
+        try {
+            this.participantDatabase.doWithReceivers(new SendOperation(packet));
+        } finally {
+            this.flushControl();
+        }
     }
 
     /**
-     * Writes the packets information to the data channel
+     * This method sends an already encoded {@link CompoundControlPacket} through the control channel of this
+     * session to <strong>all</strong> participants. Each destination gets a duplicate of the buffer, the ownership of
+     * the {@code encoded} buffer is transferred to this method.
      * 
-     * @param packet
-     * @param destination
+     * @param encoded the encoded {@link CompoundControlPacket}
      */
-    protected void writeToData(DataPacket packet, SocketAddress destination) {
-    	final AddressedEnvelope<DataPacket, SocketAddress> envelope = new DefaultAddressedEnvelope<>(packet, destination);
+    protected void internalSendControl(final ByteBuf encoded) {
+        try {
+            this.participantDatabase.doWithReceivers(new ParticipantOperation() {
+                @Override
+                public void doWithParticipant(RtpParticipant participant) throws Exception {
+                    if (!participant.isReceiver() || participant.receivedBye()) {
+                        return;
+                    }
+                    try {
+                        enqueueToControl(encoded.retainedDuplicate(), getControlDestination(participant));
+                    } catch (Exception e) {
+                        LOG.error("Failed to send RTCP compound packet to participants in session with id {}.", e, 
+                                  id);
+                    }
+                }
+
+                @Override
+                public String toString() {
+                    return "internalSendControl(ByteBuf) for session with id " + id;
+                }
+            });
+        } finally {
+            encoded.release();
+            // one flush for all destinations
+            this.flushControl();
+        }
+    }
+
+    /**
+     * Writes the packets information to the data channel. The packet is retained for the write, so the caller keeps
+     * its own reference.
+     * 
+     * @param packet
+     * @param destination
+     */
+    protected void writeToData(DataPacket packet, SocketAddress destination) {
+    	final AddressedEnvelope<DataPacket, SocketAddress> envelope = 
+    			new DefaultAddressedEnvelope<>(packet.retain(), destination);
+        this.dataChannel.writeAndFlush(envelope);
+    }
+
+    /**
+     * Writes an already encoded packet to the data channel. The ownership of the {@code buffer} is transferred to the
+     * channel, use {@link ByteBuf#retainedDuplicate()} to write the same buffer to several destinations.
+     * 
+     * @param buffer the encoded packet
+     * @param destination
+     */
+    protected void writeToData(ByteBuf buffer, SocketAddress destination) {
+    	final AddressedEnvelope<ByteBuf, SocketAddress> envelope = new DefaultAddressedEnvelope<>(buffer, destination);
         this.dataChannel.writeAndFlush(envelope);
     }
 
+    /**
+     * Writes a burst of {@link DataPacket}s to several destinations. The packets are encoded by the calling thread, 
+     * so the caller may reuse them afterwards. All writes are then handed to the event loop of the data channel as a 
+     * single task, which flushes the channel once after the last packet.
+     * 
+     * @param packets the {@link DataPacket}s in the order they should be sent
+     * @param destinations 
+     */
+    protected void writeToData(List<DataPacket> packets, final List<SocketAddress> destinations) {
+        if (destinations.isEmpty()) {
+            return;
+        }
+
+        final ByteBuf[] encoded = new ByteBuf[packets.size()];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = packets.get(i).encode(this.dataChannel.alloc(), 0);
+            // counted once, not per destination
+            this.incrementSentPackets();
+            this.incrementSentBytes(packets.get(i).getDataSize());
+        }
+        final Runnable burst = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (ByteBuf buffer : encoded) {
+                        for (SocketAddress destination : destinations) {
+                            enqueueToData(buffer.retainedDuplicate(), destination);
+                        }
+                    }
+                } finally {
+                    releaseAll(encoded);
+                    flushData();
+                }
+            }
+        };
+
+        final EventLoop eventLoop = this.dataChannel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            burst.run();
+            return;
+        }
+        try {
+            eventLoop.execute(burst);
+        } catch (RejectedExecutionException e) {
+            LOG.error("Failed to send RTP packets in session with id {}.", e, this.id);
+            releaseAll(encoded);
+        }
+    }
+
+    /**
+     * Like {@link #writeToData(ByteBuf, SocketAddress)}, but does not flush the data channel. Used to send a packet 
+     * to several destinations with a single {@link #flushData()} at the end.
+     * 
+     * @param buffer the encoded packet
+     * @param destination
+     */
+    protected void enqueueToData(ByteBuf buffer, SocketAddress destination) {
+    	final AddressedEnvelope<ByteBuf, SocketAddress> envelope = new DefaultAddressedEnvelope<>(buffer, destination);
+        this.dataChannel.write(envelope);
+    }
+
+    /**
+     * Flushes all packets enqueued to the data channel.
+     */
+    protected void flushData() {
+        this.dataChannel.flush();
+    }
+
+    /**
+     * Returns the address RTCP packets for the participant are sent to. With rtcp-mux enabled this is the data 
+     * destination of the participant.
+     * 
+     * @param participant the receiver of the RTCP packets
+     * @return the control destination of the participant
+     */
+    protected SocketAddress getControlDestination(RtpParticipant participant) {
+        return this.rtcpMux ? participant.getDataDestination() : participant.getControlDestination();
+    }
+
     /**
      * Write the packets information to the control channel
      * 
@@ -857,6 +1415,48 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         this.controlChannel.writeAndFlush(envelope);
     }
 
+    /**
+     * Like {@link #writeToControl(ControlPacket, SocketAddress)}, but does not flush the control channel.
+     * 
+     * @param packet
+     * @param destination
+     */
+    protected void enqueueToControl(ControlPacket packet, SocketAddress destination) {
+    	final AddressedEnvelope<ControlPacket, SocketAddress> envelope = new DefaultAddressedEnvelope<>(packet, destination);
+        this.controlChannel.write(envelope);
+    }
+
+    /**
+     * Like {@link #writeToControl(CompoundControlPacket, SocketAddress)}, but does not flush the control channel. 
+     * Used to send a packet to several destinations with a single {@link #flushControl()} at the end.
+     * 
+     * @param packet
+     * @param destination
+     */
+    protected void enqueueToControl(CompoundControlPacket packet, SocketAddress destination) {
+    	final AddressedEnvelope<CompoundControlPacket, SocketAddress> envelope = new DefaultAddressedEnvelope<>(packet, destination);
+        this.controlChannel.write(envelope);
+    }
+
+    /**
+     * Like {@link #enqueueToControl(CompoundControlPacket, SocketAddress)}, but for an already encoded packet. The 
+     * ownership of the {@code buffer} is transferred to the channel.
+     * 
+     * @param buffer the encoded packet
+     * @param destination
+     */
+    protected void enqueueToControl(ByteBuf buffer, SocketAddress destination) {
+    	final AddressedEnvelope<ByteBuf, SocketAddress> envelope = new DefaultAddressedEnvelope<>(buffer, destination);
+        this.controlChannel.write(envelope);
+    }
+
+    /**
+     * Flushes all packets enqueued to the control channel.
+     */
+    protected void flushControl() {
+        this.controlChannel.flush();
+    }
+
     /**
      * Joins the current session with the given SSRC by sending an empty receiver
      * report packet. This only works if {@code automatedRtcpHandling} is turned on.
@@ -871,9 +1471,8 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         final ReceiverReportPacket emptyReceiverReport = new ReceiverReportPacket();
         emptyReceiverReport.setSenderSsrc(currentSsrc);
         // Send also an SDES packet in the compound RTCP packet.
-        final SourceDescriptionPacket sdesPacket = this.buildSdesPacket(currentSsrc);
-        
-        this.internalSendControl(new CompoundControlPacket(emptyReceiverReport, sdesPacket));
+        this.internalSendControl(Unpooled.wrappedBuffer(emptyReceiverReport.encode(),
+                                                        this.encodedSdesPacket(currentSsrc)));
     }
 
     /**
@@ -887,12 +1486,11 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
             return;
         }
 
-        final SourceDescriptionPacket sdesPacket = this.buildSdesPacket(currentSsrc);
         final ByePacket byePacket = new ByePacket();
         byePacket.addSsrc(currentSsrc);
         byePacket.setReasonForLeaving(motive);
 
-        this.internalSendControl(new CompoundControlPacket(sdesPacket, byePacket));
+        this.internalSendControl(Unpooled.wrappedBuffer(this.encodedSdesPacket(currentSsrc), byePacket.encode()));
     }
 
     /**
@@ -906,36 +1504,77 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
      * returned, otherwise it is a {@link SenderReportPacket}.
      */
     protected AbstractReportPacket buildReportPacket(long currentSsrc, RtpParticipant context) {
-        AbstractReportPacket packet;
-        if (this.getSentPackets() == 0) {
-            // If no packets were sent to this source, then send a receiver report.
-            packet = new ReceiverReportPacket();
-        } else {
-            // Otherwise, build a sender report.
-            SenderReportPacket senderPacket = new SenderReportPacket();
-            senderPacket.setNtpTimestamp(new BigInteger("0")); // FIXME
-            senderPacket.setRtpTimestamp(System.currentTimeMillis()); // FIXME
-            senderPacket.setSenderPacketCount(this.getSentPackets());
-            senderPacket.setSenderOctetCount(this.getSentBytes());
-            packet = senderPacket;
-        }
-        packet.setSenderSsrc(currentSsrc);
+        final AbstractReportPacket packet = this.newReportPacket(currentSsrc);
 
         // If this source sent data, then calculate the link quality to build a reception report block.
-        if (context.getReceivedPackets() > 0) {
-            ReceptionReport block = new ReceptionReport();
-            block.setSsrc(context.getInfo().getSsrc());
-            block.setDelaySinceLastSenderReport(0); // FIXME
-            block.setFractionLost((short) 0); // FIXME
-            block.setExtendedHighestSequenceNumberReceived(0); // FIXME
-            block.setInterArrivalJitter(0); // FIXME
-            block.setCumulativeNumberOfPacketsLost(0); // FIXME
-            packet.addReportBlock(block);
+        if (context.getReceptionStatistics().hasReceivedPackets()) {
+            packet.addReportBlock(buildReportBlock(context, TimeUtils.nowNanos()));
         }
 
         return packet;
     }
 
+    /**
+     * Creates the report packets for the sources this session received data from since their last report. The first
+     * packet is a {@link SenderReportPacket} or {@link ReceiverReportPacket} as described in 
+     * {@link #buildReportPacket(long, RtpParticipant)}, if there are more than 31 sources the remaining report blocks
+     * are split across additional {@link ReceiverReportPacket}s.
+     * <br/>
+     * The packets are limited to {@code maxSize} octets. If not all sources fit, they are reported round-robin in the
+     * order of their SSRCs, starting after the source reported last (RFC 3550, section 6.4).
+     * 
+     * @param currentSsrc this (local) participants SSRC
+     * @param maxSize maximum size of all report packets in octets
+     * @return the report packets in the order they must appear in the compound packet, the list may be extended
+     */
+    protected List<ControlPacket> buildReportPackets(long currentSsrc, int maxSize) {
+        // collect the sources first, the database may visit the participants in parallel
+        final List<RtpParticipant> sources = Collections.synchronizedList(new ArrayList<RtpParticipant>());
+        this.participantDatabase.doWithParticipants(new ParticipantOperation() {
+            @Override
+            public void doWithParticipant(RtpParticipant participant) throws Exception {
+                if (participant.getReceptionStatistics().hasReceivedPacketsSinceReport()) {
+                    sources.add(participant);
+                }
+            }
+        });
+        Collections.sort(sources, new Comparator<RtpParticipant>() {
+            @Override
+            public int compare(RtpParticipant p1, RtpParticipant p2) {
+                return Long.compare(p1.getSsrc(), p2.getSsrc());
+            }
+        });
+        int first = 0;
+        while ((first < sources.size()) && (sources.get(first).getSsrc() <= this.lastReportedSsrc)) {
+            first++;
+        }
+
+        final long now = TimeUtils.nowNanos();
+        final List<ControlPacket> packets = new ArrayList<>(2 + (sources.size() / MAX_REPORT_BLOCKS));
+        AbstractReportPacket packet = this.newReportPacket(currentSsrc);
+        packets.add(packet);
+        int size = REPORT_HEADER_SIZE + ((packet instanceof SenderReportPacket) ? SENDER_INFO_SIZE : 0);
+        for (int i = 0; i < sources.size(); i++) {
+            final RtpParticipant source = sources.get((first + i) % sources.size());
+            final boolean full = packet.getReportCount() == MAX_REPORT_BLOCKS;
+            final int blockSize = full ? (REPORT_HEADER_SIZE + REPORT_BLOCK_SIZE) : REPORT_BLOCK_SIZE;
+            if ((size + blockSize) > maxSize) {
+                // the remaining sources are reported in the next intervals
+                break;
+            }
+            if (full) {
+                packet = new ReceiverReportPacket();
+                packet.setSenderSsrc(currentSsrc);
+                packets.add(packet);
+            }
+            // starts a new reporting interval of the source, so only done for sources actually reported
+            packet.addReportBlock(buildReportBlock(source, now));
+            size += blockSize;
+            this.lastReportedSsrc = source.getSsrc();
+        }
+        return packets;
+    }
+
     /**
      * Extracts the source description information from {@link #localParticipant} to
      * generate a {@link SourceDescriptionPacket}. The SSRC is set manually to prevent
@@ -949,9 +1588,7 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         SdesChunk chunk = new SdesChunk(currentSsrc);
 
         RtpParticipantInfo info = this.localParticipant.getInfo();
-        if (info.getCname() == null) {
-            info.setCname("efflux/" + this.id + "@" + this.dataChannel.localAddress());
-        }
+        this.initDescription(info);
         chunk.addItem(SdesChunkItems.createCnameItem(info.getCname()));
 
         if (info.getName() != null) {
@@ -970,9 +1607,6 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
             chunk.addItem(SdesChunkItems.createLocationItem(info.getLocation()));
         }
 
-        if (info.getTool() == null) {
-            info.setTool(VERSION);
-        }
         chunk.addItem(SdesChunkItems.createToolItem(info.getTool()));
 
         if (info.getNote() != null) {
@@ -983,6 +1617,34 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         return sdesPacket;
     }
 
+    /**
+     * Returns the encoded {@link SourceDescriptionPacket} of the local participant. The packet is built by 
+     * {@link #buildSdesPacket(long)} and the encoded bytes are cached until the SSRC or the description of the local
+     * participant is modified, so sending an RTCP packet does not rebuild the description.
+     * 
+     * @param currentSsrc
+     * @return a retained duplicate of the cached buffer, which has to be released by the caller (e.g. by writing it)
+     */
+    protected ByteBuf encodedSdesPacket(long currentSsrc) {
+        final RtpParticipantInfo info = this.localParticipant.getInfo();
+        synchronized (this.sdesLock) {
+            // set the defaults first, so they do not count as a modification after the packet was built
+            this.initDescription(info);
+            final int modifications = info.getModificationCount();
+            if ((this.encodedSdes == null) || (this.encodedSdesSsrc != currentSsrc)
+                    || (this.encodedSdesModifications != modifications)) {
+                final ByteBuf encoded = this.buildSdesPacket(currentSsrc).encode();
+                if (this.encodedSdes != null) {
+                    this.encodedSdes.release();
+                }
+                this.encodedSdes = encoded;
+                this.encodedSdesSsrc = currentSsrc;
+                this.encodedSdesModifications = modifications;
+            }
+            return this.encodedSdes.retainedDuplicate();
+        }
+    }
+
     /**
      * Stops this session by stopping all timers, leaving the session and closing 
      * all closables to release all used resources.
@@ -1001,11 +1663,30 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
 
         this.dataListeners.clear();
         this.controlListeners.clear();
+        this.participantDatabase.close();
+        for (JitterBuffer buffer : this.jitterBuffers.values()) {
+            buffer.clear();
+        }
+        this.jitterBuffers.clear();
 
-        // Close data channel, send BYE RTCP packets and close control channel.
-        this.dataChannel.close();
+        // Close data channel, send BYE RTCP packets and close control channel (keep a multiplexed channel open).
+        if (this.controlChannel != this.dataChannel) {
+        	this.dataChannel.close();
+        }
         this.leaveSession(this.localParticipant.getSsrc(), "Session terminated, because: " + cause.toString());
-        this.controlChannel.close();
+        synchronized (this.sdesLock) {
+            if (this.encodedSdes != null) {
+                this.encodedSdes.release();
+                this.encodedSdes = null;
+            }
+        }
+        if (this.bundle != null) {
+        	// the channel of a bundle stays open for the other sessions
+        	this.bundle.removeSession(this);
+        } else {
+        	this.controlChannel.close();
+        	closeReusePortChannels();
+        }
 
         for (RtpSessionEventListener listener : this.eventListeners) {
             listener.sessionTerminated(this, cause);
@@ -1015,6 +1696,53 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         LOG.debug("RtpSession with id {} terminated. Cause: {}", this.id, cause);
     }
 
+    /**
+     * Returns the jitter buffer of a participant, creating it if necessary, and adapts its playout delay to four
+     * times the measured interarrival jitter, limited to [{@link #minPlayoutDelay};{@link #maxPlayoutDelay}].
+     * 
+     * @param participant
+     * @return the jitter buffer of the participant
+     */
+    protected JitterBuffer getOrCreateJitterBuffer(final RtpParticipant participant) {
+        final long ssrc = participant.getSsrc();
+        JitterBuffer buffer = this.jitterBuffers.get(ssrc);
+        if (buffer == null) {
+            buffer = new JitterBuffer(this.jitterBufferCapacity, this.minPlayoutDelay,
+                                      new JitterBuffer.PacketHandler() {
+                @Override
+                public void packetReleased(DataPacket packet) {
+                    for (RtpSessionDataListener listener : dataListeners) {
+                        listener.dataPacketReceived(AbstractRtpSession.this, participant.getInfo(), packet);
+                    }
+                }
+            }, this.dataChannel.eventLoop());
+            final JitterBuffer existing = this.jitterBuffers.putIfAbsent(ssrc, buffer);
+            if (existing != null) {
+                buffer = existing;
+            }
+        }
+
+        // the jitter is measured in RTP timestamp units
+        final long jitter = participant.getReceptionStatistics().getJitter();
+        final long target = (4 * jitter * 1000000000L) / this.clockRate;
+        final long delay = Math.max(TimeUnit.MILLISECONDS.toNanos(this.minPlayoutDelay),
+                                    Math.min(target, TimeUnit.MILLISECONDS.toNanos(this.maxPlayoutDelay)));
+        buffer.setPlayoutDelayNanos(delay);
+        return buffer;
+    }
+
+    /**
+     * Drops the held packets of a participant which left the session.
+     * 
+     * @param participant
+     */
+    protected void removeJitterBuffer(RtpParticipant participant) {
+        final JitterBuffer buffer = this.jitterBuffers.remove(participant.getSsrc());
+        if (buffer != null) {
+            buffer.clear();
+        }
+    }
+
     protected void resetSendStats() {
         this.sentByteCounter.set(0);
         this.sentPacketCounter.set(0);
@@ -1032,10 +1760,85 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         return this.sentPacketCounter.incrementAndGet();
     }
 
-    protected long updatePeriodicRtcpSendInterval() {
-        // TODO make this adaptative
-    	this.periodicRtcpSendInterval = 5;
-        return this.periodicRtcpSendInterval;
+    /**
+     * Creates the calculator of the RTCP transmission interval, using {@value #RTCP_BANDWIDTH_FRACTION} of the 
+     * {@link #bandwidthLimit} and the size of the join packet as first estimate of the average packet size.
+     * 
+     * @return a new {@link RtcpTransmissionInterval}
+     */
+    protected RtcpTransmissionInterval createRtcpInterval() {
+        final long ssrc = this.localParticipant.getSsrc();
+        final ReceiverReportPacket report = new ReceiverReportPacket();
+        report.setSenderSsrc(ssrc);
+        final ByteBuf encoded = Unpooled.wrappedBuffer(report.encode(), this.encodedSdesPacket(ssrc));
+        final int initialSize = encoded.readableBytes();
+        encoded.release();
+
+        // the bandwidth limit is given in kbit/s
+        final double rtcpBandwidth = ((this.bandwidthLimit * 1000) / 8.0) * RTCP_BANDWIDTH_FRACTION;
+        this.lastReportInstant = TimeUtils.now();
+        this.previousReportInstant = this.lastReportInstant;
+        this.sentPacketsAtLastReport = this.getSentPackets();
+        this.sentPacketsAtPreviousReport = this.sentPacketsAtLastReport;
+        return new RtcpTransmissionInterval(rtcpBandwidth, initialSize);
+    }
+
+    /**
+     * (Re-)schedules the periodic RTCP report, a pending report is cancelled.
+     * 
+     * @param transmission time of the report as given by {@link System#nanoTime()}
+     * @param now current time as given by {@link System#nanoTime()}
+     */
+    protected void scheduleRtcp(long transmission, long now) {
+        synchronized (this.rtcpInterval) {
+            if (!this.running.get()) {
+                return;
+            }
+            if (this.rtcpTimeout != null) {
+                this.rtcpTimeout.cancel();
+            }
+            this.rtcpTimeout = this.timer.newTimeout(this, Math.max(0, transmission - now), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Reverse reconsideration (RFC 3550, section 6.3.4): brings the next report forward when members left the 
+     * session.
+     * 
+     * @param members the number of members including the local participant
+     */
+    protected void reverseReconsideration(int members) {
+        if (!this.running.get() || (this.rtcpInterval == null)) {
+            return;
+        }
+        final long now = TimeUtils.nowNanos();
+        if (this.rtcpInterval.membersDecreased(now, members)) {
+            this.scheduleRtcp(this.rtcpInterval.getNextTransmission(), now);
+        }
+    }
+
+    /**
+     * @return the number of members of the session including the local participant
+     */
+    protected int getMemberCount() {
+        return this.participantDatabase.getParticipantCount() + 1;
+    }
+
+    /**
+     * @param since instant in milliseconds
+     * @return the number of members which sent data packets since the given instant
+     */
+    protected int countSenders(final long since) {
+        final AtomicInteger senders = new AtomicInteger();
+        this.participantDatabase.doWithParticipants(new ParticipantOperation() {
+            @Override
+            public void doWithParticipant(RtpParticipant participant) throws Exception {
+                if (participant.getLastDataReceptionInstant() >= since) {
+                    senders.incrementAndGet();
+                }
+            }
+        });
+        return senders.get();
     }
 
     // getters & setters ----------------------------------------------------------------------------------------------
@@ -1079,12 +1882,16 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
     }
 
     /**
+     * Sets the session bandwidth in kbit/s, {@value #RTCP_BANDWIDTH_FRACTION} of it are used for RTCP.<br/>
      * Can only be modified before initialization.
      */
     public void setBandwidthLimit(int bandwidthLimit) {
         if (this.running.get()) {
             throw new IllegalArgumentException("Cannot modify property after initialisation");
         }
+        if (bandwidthLimit <= 0) {
+            throw new IllegalArgumentException("Bandwidth limit must be positive");
+        }
         this.bandwidthLimit = bandwidthLimit;
     }
 
@@ -1166,6 +1973,97 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         return this.sentPacketCounter.get();
     }
 
+    public boolean isZeroCopyReceive() {
+        return zeroCopyReceive;
+    }
+
+    /**
+     * If enabled, the payload of received {@link DataPacket}s is not copied but kept as a slice of the received 
+     * datagram and the packets are taken from a pool. Packets passed to the {@link RtpSessionDataListener}s are then 
+     * only valid during the callback unless they are retained by the listener.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setZeroCopyReceive(boolean zeroCopyReceive) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        this.zeroCopyReceive = zeroCopyReceive;
+    }
+
+    public boolean isUseEpoll() {
+        return useEpoll;
+    }
+
+    /**
+     * If enabled and available on this platform, the native epoll transport is used instead of NIO or OIO. The data
+     * and the control port are then bound {@link #getReusePortSockets()} times with SO_REUSEPORT, each socket served
+     * by its own event loop, so the kernel spreads the receive load of the session across several threads. The 
+     * kernel selects the socket by the remote address, so the packets of one source are still received in order.
+     * Falls back to {@link #useNio()} if epoll is not available.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setUseEpoll(boolean useEpoll) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        this.useEpoll = useEpoll;
+    }
+
+    public int getReusePortSockets() {
+        return reusePortSockets;
+    }
+
+    /**
+     * Number of sockets bound to the data and the control port if the epoll transport is used. Sessions using a 
+     * shared {@link SessionRuntime} bind at most one socket per event loop of the runtime.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setReusePortSockets(int reusePortSockets) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        if (reusePortSockets <= 0) {
+            throw new IllegalArgumentException("At least one socket is required");
+        }
+        this.reusePortSockets = reusePortSockets;
+    }
+
+    public boolean isRtcpMux() {
+        return rtcpMux;
+    }
+
+    /**
+     * If enabled, RTP and RTCP packets are multiplexed on the data port as described in RFC 5761. Only the data 
+     * channel is bound, it demultiplexes the received packets by their payload type and RTCP packets are sent to the
+     * data destinations of the participants. Both ends of the session have to use rtcp-mux.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setRtcpMux(boolean rtcpMux) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        this.rtcpMux = rtcpMux;
+    }
+
+    public boolean isConsolidateFlushes() {
+        return consolidateFlushes;
+    }
+
+    /**
+     * If enabled, flushes of the channels are not executed immediately but consolidated: all packets sent from other
+     * threads within one run of the event loop are flushed together, at the latest after 
+     * {@value #MAX_CONSOLIDATED_FLUSHES} flushes. This reduces the number of system calls if a lot of packets are sent
+     * in short bursts, but may add a small delay to single packets. Sessions of a {@link RtpSessionBundle} use the
+     * setting of the bundle.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setConsolidateFlushes(boolean consolidateFlushes) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        this.consolidateFlushes = consolidateFlushes;
+    }
+
     public int getParticipantDatabaseCleanup() {
         return participantDatabaseCleanup;
     }
@@ -1180,6 +2078,187 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
         this.participantDatabaseCleanup = participantDatabaseCleanup;
     }
     
+    public int getClockRate() {
+        return clockRate;
+    }
+
+    /**
+     * Sets the clock rate of the RTP timestamps of the received packets, used to compute the interarrival jitter. 
+     * Defaults to the clock rate of static payload types (RFC 3551) and to 90000 for dynamic ones.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setClockRate(int clockRate) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        if (clockRate <= 0) {
+            throw new IllegalArgumentException("Clock rate must be positive");
+        }
+        this.clockRate = clockRate;
+    }
+
+    public int getJitterBufferCapacity() {
+        return jitterBufferCapacity;
+    }
+
+    /**
+     * Sets the number of packets the jitter buffer of each participant can hold. If positive, reordered packets are
+     * held and released in sequence to the {@link RtpSessionDataListener}s instead of being discarded, missing
+     * packets are skipped after the playout delay. Defaults to {@value #JITTER_BUFFER_CAPACITY} (disabled).<br/>
+     * Can only be modified before initialization.
+     */
+    public void setJitterBufferCapacity(int jitterBufferCapacity) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        if (jitterBufferCapacity < 0) {
+            throw new IllegalArgumentException("Jitter buffer capacity must not be negative");
+        }
+        this.jitterBufferCapacity = jitterBufferCapacity;
+    }
+
+    public int getMinPlayoutDelay() {
+        return minPlayoutDelay;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds the jitter buffer waits for missing packets.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setMinPlayoutDelay(int minPlayoutDelay) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        this.minPlayoutDelay = minPlayoutDelay;
+    }
+
+    public int getMaxPlayoutDelay() {
+        return maxPlayoutDelay;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds the jitter buffer waits for missing packets.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setMaxPlayoutDelay(int maxPlayoutDelay) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        this.maxPlayoutDelay = maxPlayoutDelay;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * Sets the maximum transmission unit of the network path in octets. The compound RTCP packets including the IP and
+     * UDP headers are limited to it, sources which do not fit are reported in the next intervals. Defaults to 
+     * {@value #MTU}.<br/>
+     * Can only be modified before initialization.
+     */
+    public void setMtu(int mtu) {
+        if (this.running.get()) {
+            throw new IllegalArgumentException("Cannot modify property after initialisation");
+        }
+        if (mtu <= RtcpTransmissionInterval.HEADER_OVERHEAD) {
+            throw new IllegalArgumentException("MTU must be larger than the IP and UDP headers");
+        }
+        this.mtu = mtu;
+    }
+
+    // private static helpers -----------------------------------------------------------------------------------------
+    /**
+     * @param payloadType
+     * @return the clock rate of a static payload type as defined in RFC 3551, 90000 for dynamic payload types
+     */
+    private static int defaultClockRateOf(int payloadType) {
+        switch (payloadType) {
+            case 6:
+                return 16000;
+            case 10:
+            case 11:
+                return 44100;
+            case 14:
+                return 90000;
+            case 16:
+                return 11025;
+            case 17:
+                return 22050;
+            default:
+                // audio payload types use 8000, video payload types 90000
+                return (payloadType < 25) ? 8000 : 90000;
+        }
+    }
+
+    /**
+     * @param currentSsrc
+     * @return a {@link SenderReportPacket} if packets were sent with this session before, otherwise a 
+     * {@link ReceiverReportPacket}; without report blocks
+     */
+    private AbstractReportPacket newReportPacket(long currentSsrc) {
+        AbstractReportPacket packet;
+        if (this.getSentPackets() == 0) {
+            // If no packets were sent to this source, then send a receiver report.
+            packet = new ReceiverReportPacket();
+        } else {
+            // Otherwise, build a sender report.
+            SenderReportPacket senderPacket = new SenderReportPacket();
+            // the RTP timestamp of the last sent packet approximates the media time of the wallclock time
+            senderPacket.setNtpTimestamp(TimeUtils.ntpTimestamp(TimeUtils.now()));
+            senderPacket.setRtpTimestamp(this.lastSentTimestamp & 0xffffffffL);
+            senderPacket.setSenderPacketCount(this.getSentPackets());
+            senderPacket.setSenderOctetCount(this.getSentBytes());
+            packet = senderPacket;
+        }
+        packet.setSenderSsrc(currentSsrc);
+        return packet;
+    }
+
+    private static ReceptionReport buildReportBlock(RtpParticipant source, long nowNanos) {
+        final ReceptionReport block = new ReceptionReport();
+        block.setSsrc(source.getInfo().getSsrc());
+        source.getReceptionStatistics().updateReceptionReport(block, nowNanos);
+        return block;
+    }
+
+    /**
+     * Sets the default CNAME and tool of the local participant if they are not set.
+     * 
+     * @param info description of the local participant
+     */
+    private void initDescription(RtpParticipantInfo info) {
+        if (info.getCname() == null) {
+            info.setCname("efflux/" + this.id + "@" + this.dataChannel.localAddress());
+        }
+        if (info.getTool() == null) {
+            info.setTool(VERSION);
+        }
+    }
+
+    /**
+     * Encodes the packets into a single compound buffer, like the {@link UdpControlPacketEncoder}, followed by the
+     * already encoded SDES packet.
+     * 
+     * @param packets
+     * @param sdes the encoded SDES packet, its ownership is transferred to the returned buffer
+     * @return the encoded compound packet
+     */
+    private static ByteBuf encode(List<ControlPacket> packets, ByteBuf sdes) {
+        final ByteBuf[] buffers = new ByteBuf[packets.size() + 1];
+        for (int i = 0; i < packets.size(); i++) {
+            buffers[i] = packets.get(i).encode();
+        }
+        buffers[packets.size()] = sdes;
+        return Unpooled.wrappedBuffer(buffers);
+    }
+
+    private static void releaseAll(ByteBuf[] buffers) {
+        for (ByteBuf buffer : buffers) {
+            buffer.release();
+        }
+    }
+
     // private classes ------------------------------------------------------------------------------------------------
     /**
      * Implementation of the {@link ParticipantOperation} interface for sending a packet to the participant.
@@ -1219,10 +2298,11 @@ public abstract class AbstractRtpSession implements RtpSession, TimerTask {
                 return;
             }
             try {
+            	// the caller flushes the control channel once for all participants
             	if(isCompound) {
-            		writeToControl(compoundPacket, participant.getControlDestination());
+            		enqueueToControl(compoundPacket, getControlDestination(participant));
             	} else {
-            		writeToControl(packet, participant.getControlDestination());
+            		enqueueToControl(packet, getControlDestination(participant));
             	}
             } catch (Exception e) {
                 LOG.error("Failed to send RTCP packet to participants in session with id {}.", e, id);
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.session.rtp;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import sas.systems.imflux.logging.Logger;
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.participant.ExtendedSequenceTracker;
+import sas.systems.imflux.util.TimeUtils;
+
+/**
+ * Reorder buffer for the {@link DataPacket}s of a single source. Packets are released in the order of their sequence
+ * numbers: a packet which continues the sequence is released immediately, packets following a gap are held until the
+ * missing packets arrive or the playout delay of the first held packet expired. Then the missing packets are skipped
+ * and considered lost, packets arriving after that are dropped as late.
+ * <br/>
+ * The packets are stored in a ring indexed by their sequence number modulo the capacity, so the memory is bounded
+ * and no objects are created per packet. Held packets are retained until they are released. The deadlines are
+ * scheduled on an executor, usually the event loop receiving the packets.
+ * <br/>
+ * The released packets are queued while the buffer is locked and passed to the {@link PacketHandler} after the lock
+ * was released, by one thread at a time and in the order they were released.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class JitterBuffer {
+
+    // constants ------------------------------------------------------------------------------------------------------
+    private static final Logger LOG = Logger.getLogger(JitterBuffer.class);
+    private static final int MAX_CAPACITY = 1 << 15;
+
+    // configuration --------------------------------------------------------------------------------------------------
+    private final PacketHandler handler;
+    private final ScheduledExecutorService executor;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    // all guarded by this
+    private final DataPacket[] packets;
+    private final long[] arrivals;
+    private final int mask;
+    private boolean started;
+    private int head;
+    private int count;
+    private boolean scheduled;
+    private long playoutDelay;
+    private long latePackets;
+    private final Queue<DataPacket> released;
+    private boolean delivering;
+    private final Runnable playout;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    /**
+     * @param capacity number of packets the buffer can hold, rounded up to the next power of two
+     * @param playoutDelay initial playout delay in milliseconds
+     * @param handler receives the released packets
+     * @param executor executor to schedule the playout deadlines
+     */
+    public JitterBuffer(int capacity, long playoutDelay, PacketHandler handler, ScheduledExecutorService executor) {
+        if ((capacity < 1) || (capacity > MAX_CAPACITY)) {
+            throw new IllegalArgumentException("Capacity must be in range [1;" + MAX_CAPACITY + "]");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.packets = new DataPacket[size];
+        this.arrivals = new long[size];
+        this.mask = size - 1;
+        this.playoutDelay = TimeUnit.MILLISECONDS.toNanos(playoutDelay);
+        this.handler = handler;
+        this.executor = executor;
+        this.released = new ArrayDeque<>();
+        this.playout = new Runnable() {
+            @Override
+            public void run() {
+                releaseExpired(TimeUtils.nowNanos());
+            }
+        };
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    /**
+     * Adds a packet to the buffer and releases all packets which are in sequence now. The packet is retained if it
+     * has to be held. Only a packet classified as {@link ExtendedSequenceTracker.Result#RESTARTED} moves the buffer
+     * back to an older sequence number, all other packets behind the released ones are dropped as late.
+     *
+     * @param packet the received packet
+     * @param result classification of the packet by the {@link ExtendedSequenceTracker} of its source
+     * @param arrivalNanos arrival time of the packet as given by {@link System#nanoTime()}
+     * @return {@code false} if the packet was dropped as late, invalid or duplicate
+     */
+    public boolean offer(DataPacket packet, ExtendedSequenceTracker.Result result, long arrivalNanos) {
+        final boolean accepted;
+        synchronized (this) {
+            accepted = this.add(packet, result, arrivalNanos);
+        }
+        this.deliverReleased();
+        return accepted;
+    }
+
+    /**
+     * Skips the missing packets of all held packets whose playout delay expired and releases them.
+     *
+     * @param nowNanos current time as given by {@link System#nanoTime()}
+     */
+    public void releaseExpired(long nowNanos) {
+        synchronized (this) {
+            this.scheduled = false;
+            while (this.count > 0) {
+                final int first = this.firstHeld();
+                if ((this.arrivals[first & this.mask] + this.playoutDelay) > nowNanos) {
+                    break;
+                }
+                this.head = first;
+                this.releaseInSequence();
+            }
+            this.scheduleDeadline(nowNanos);
+        }
+        this.deliverReleased();
+    }
+
+    /**
+     * Drops all held packets without releasing them to the handler.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < this.packets.length; i++) {
+            if (this.packets[i] != null) {
+                this.packets[i].release();
+                this.packets[i] = null;
+            }
+        }
+        this.count = 0;
+    }
+
+    // getters & setters ----------------------------------------------------------------------------------------------
+    public int getCapacity() {
+        return this.packets.length;
+    }
+
+    /**
+     * @return the number of held packets
+     */
+    public synchronized int size() {
+        return this.count;
+    }
+
+    /**
+     * @return the number of packets dropped because they arrived after their position was released
+     */
+    public synchronized long getLatePackets() {
+        return this.latePackets;
+    }
+
+    /**
+     * @return the playout delay in milliseconds
+     */
+    public synchronized long getPlayoutDelay() {
+        return TimeUnit.NANOSECONDS.toMillis(this.playoutDelay);
+    }
+
+    /**
+     * @param playoutDelay time to wait for missing packets in nanoseconds, applies to the next deadline
+     */
+    public synchronized void setPlayoutDelayNanos(long playoutDelay) {
+        this.playoutDelay = playoutDelay;
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * Adds a packet as described by {@link #offer(DataPacket, ExtendedSequenceTracker.Result, long)}. Must be called
+     * while holding the lock.
+     */
+    private boolean add(DataPacket packet, ExtendedSequenceTracker.Result result, long arrivalNanos) {
+        final int seq = packet.getSequenceNumber() & 0xffff;
+        if (!this.started) {
+            this.started = true;
+            this.head = seq;
+        }
+
+        final int distance = (short) (seq - this.head);
+        if (distance < 0) {
+            if (result != ExtendedSequenceTracker.Result.RESTARTED) {
+                // its position was already released or skipped
+                this.latePackets++;
+                return false;
+            }
+            // the source restarted its sequence
+            this.releaseAll();
+            this.head = seq;
+        } else if (distance > this.mask) {
+            if (result == ExtendedSequenceTracker.Result.INVALID) {
+                // a single jump is only accepted once the next packet continues it
+                return false;
+            }
+            // too far ahead of the head: release the held packets which would be overwritten
+            this.skipTo((seq - this.mask) & 0xffff);
+        }
+
+        final int index = seq & this.mask;
+        if (this.packets[index] != null) {
+            // duplicate
+            return false;
+        }
+        if (seq == this.head) {
+            // in sequence, no need to hold it
+            this.head = (this.head + 1) & 0xffff;
+            this.released.add(packet.retain());
+        } else {
+            this.packets[index] = packet.retain();
+            this.arrivals[index] = arrivalNanos;
+            this.count++;
+        }
+        this.releaseInSequence();
+        this.scheduleDeadline(arrivalNanos);
+        return true;
+    }
+
+    /**
+     * @return the sequence number of the first held packet, there must be one
+     */
+    private int firstHeld() {
+        int seq = this.head;
+        while (this.packets[seq & this.mask] == null) {
+            seq = (seq + 1) & 0xffff;
+        }
+        return seq;
+    }
+
+    private void releaseInSequence() {
+        DataPacket packet;
+        while ((this.count > 0) && ((packet = this.packets[this.head & this.mask]) != null)) {
+            this.packets[this.head & this.mask] = null;
+            this.count--;
+            this.head = (this.head + 1) & 0xffff;
+            this.released.add(packet);
+        }
+    }
+
+    private void releaseAll() {
+        while (this.count > 0) {
+            this.head = this.firstHeld();
+            this.releaseInSequence();
+        }
+    }
+
+    /**
+     * Moves the head to {@code seq}, releasing the held packets in between.
+     */
+    private void skipTo(int seq) {
+        while ((this.head != seq) && (this.count > 0)) {
+            final int index = this.head & this.mask;
+            final DataPacket packet = this.packets[index];
+            this.head = (this.head + 1) & 0xffff;
+            if (packet != null) {
+                this.packets[index] = null;
+                this.count--;
+                this.released.add(packet);
+            }
+        }
+        this.head = seq;
+    }
+
+    /**
+     * Passes the queued packets to the handler without holding the lock. If another thread is already doing so, it
+     * also delivers the packets queued by this one.
+     */
+    private void deliverReleased() {
+        synchronized (this) {
+            if (this.delivering || this.released.isEmpty()) {
+                return;
+            }
+            this.delivering = true;
+        }
+        while (true) {
+            final DataPacket packet;
+            synchronized (this) {
+                packet = this.released.poll();
+                if (packet == null) {
+                    this.delivering = false;
+                    return;
+                }
+            }
+            try {
+                this.handler.packetReleased(packet);
+            } catch (Exception e) {
+                LOG.error("Failed to release packet {} from jitter buffer.", e, packet);
+            } finally {
+                packet.release();
+            }
+        }
+    }
+
+    private void scheduleDeadline(long nowNanos) {
+        if (this.scheduled || (this.count == 0)) {
+            return;
+        }
+        final long deadline = this.arrivals[this.firstHeld() & this.mask] + this.playoutDelay;
+        try {
+            this.executor.schedule(this.playout, Math.max(0, deadline - nowNanos), TimeUnit.NANOSECONDS);
+            this.scheduled = true;
+        } catch (RejectedExecutionException e) {
+            // the executor is shut down, the session is terminating
+            LOG.debug("Could not schedule playout of jitter buffer, executor is shut down.");
+        }
+    }
+
+    // public interfaces ----------------------------------------------------------------------------------------------
+    /**
+     * Receives the packets released by a {@link JitterBuffer}. It is called without holding the lock of the buffer and
+     * must not keep the packet beyond the call without retaining it.
+     */
+    public interface PacketHandler {
+
+        void packetReleased(DataPacket packet);
+    }
+}
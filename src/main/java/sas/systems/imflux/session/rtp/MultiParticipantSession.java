@@ -21,6 +21,7 @@ import sas.systems.imflux.participant.DefaultParticipantDatabase;
 import sas.systems.imflux.participant.ParticipantDatabase;
 import sas.systems.imflux.participant.ParticipantEventListener;
 import sas.systems.imflux.participant.RtpParticipant;
+import sas.systems.imflux.session.SessionRuntime;
 
 /**
  * A regular RTP session, as described in RFC3550.
@@ -34,7 +35,7 @@ public class MultiParticipantSession extends AbstractRtpSession implements Parti
 
     // constructors ---------------------------------------------------------------------------------------------------
     public MultiParticipantSession(String id, int payloadType, RtpParticipant localParticipant) {
-        super(id, payloadType, localParticipant, null/*, null*/);
+        super(id, payloadType, localParticipant, (HashedWheelTimer) null/*, null*/);
     }
 
     public MultiParticipantSession(String id, int payloadType, RtpParticipant localParticipant,
@@ -42,6 +43,11 @@ public class MultiParticipantSession extends AbstractRtpSession implements Parti
         super(id, payloadType, localParticipant, timer/*, null*/);
     }
 
+    public MultiParticipantSession(String id, int payloadType, RtpParticipant localParticipant,
+                                   SessionRuntime runtime) {
+        super(id, payloadType, localParticipant, runtime);
+    }
+
 //    public MultiParticipantSession(String id, int payloadType, RtpParticipant localParticipant,
 //                                   OrderedMemoryAwareThreadPoolExecutor executor) {
 //        super(id, payloadType, localParticipant, null, executor);
@@ -56,11 +62,12 @@ public class MultiParticipantSession extends AbstractRtpSession implements Parti
     /**
      * {@inheritDoc}
      * <br/>
-     * Creates a new {@link DefaultParticipantDatabase} to manage participants in this RTP session.
+     * Creates a new {@link DefaultParticipantDatabase} to manage participants in this RTP session. Its members expire
+     * by timeouts on the timer of this session.
      */
     @Override
     protected ParticipantDatabase createDatabase() {
-        return new DefaultParticipantDatabase(this.id, this);
+        return new DefaultParticipantDatabase(this.id, this, this.timer);
     }
 
     // ParticipantEventListener ---------------------------------------------------------------------------------------
@@ -91,6 +98,8 @@ public class MultiParticipantSession extends AbstractRtpSession implements Parti
      */
     @Override
     public void participantDeleted(RtpParticipant participant) {
+        this.removeJitterBuffer(participant);
+        this.reverseReconsideration(this.getMemberCount());
     	// Forwards event to the RtpSessionEventListener
         for (RtpSessionEventListener listener : this.eventListeners) {
             listener.participantDeleted(this, participant);
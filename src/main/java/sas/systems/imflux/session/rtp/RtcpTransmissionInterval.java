@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.session.rtp;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the transmission times of the RTCP packets of a session as described in RFC 3550, section 6.3 and
+ * appendix A.7. The interval grows with the number of members, so that all members together only use the RTCP share
+ * of the session bandwidth, of which a quarter is reserved for the senders. The interval is randomized and
+ * reconsidered when the timer expires (timer reconsideration) and when members leave (reverse reconsideration).
+ * <br/>
+ * All times are given in nanoseconds as returned by {@link System#nanoTime()}. The methods are synchronized, because
+ * the timer and the threads receiving the packets update the state.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ * @see <a href="https://tools.ietf.org/html/rfc3550#section-6.3">RFC 3550 section 6.3</a>
+ */
+public class RtcpTransmissionInterval {
+
+    // constants ------------------------------------------------------------------------------------------------------
+    /** minimum interval between two reports in seconds, halved for the first report */
+    public static final double RTCP_MIN_TIME = 5.0;
+    public static final double RTCP_SENDER_BW_FRACTION = 0.25;
+    public static final double RTCP_RCVR_BW_FRACTION = 1.0 - RTCP_SENDER_BW_FRACTION;
+    /** compensates the timer reconsideration, which converges to a value below the average */
+    public static final double COMPENSATION = Math.E - 1.5;
+    /** size of the UDP and IPv4 headers, added to the size of each compound packet */
+    public static final int HEADER_OVERHEAD = 28;
+
+    // configuration --------------------------------------------------------------------------------------------------
+    private final double rtcpBandwidth;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    // all guarded by this
+    private double avgRtcpSize;
+    private boolean initial;
+    private long previousTransmission;
+    private long nextTransmission;
+    private int previousMembers;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    /**
+     * @param rtcpBandwidth bandwidth available for RTCP in octets per second
+     * @param initialSize estimated size of the first compound packet in octets, without the UDP and IP headers
+     */
+    public RtcpTransmissionInterval(double rtcpBandwidth, int initialSize) {
+        if (rtcpBandwidth <= 0) {
+            throw new IllegalArgumentException("RTCP bandwidth must be positive");
+        }
+        this.rtcpBandwidth = rtcpBandwidth;
+        this.avgRtcpSize = initialSize + HEADER_OVERHEAD;
+        this.initial = true;
+    }
+
+    // public static methods ------------------------------------------------------------------------------------------
+    /**
+     * Computes the deterministic interval between two reports (RFC 3550, appendix A.7, without the randomization).
+     *
+     * @param members number of members including the local participant
+     * @param senders number of members which sent data recently, including the local participant
+     * @param rtcpBandwidth bandwidth available for RTCP in octets per second
+     * @param weSent whether the local participant sent data recently
+     * @param avgRtcpSize average size of the compound packets in octets
+     * @param initial whether no report was sent yet
+     * @return the interval in seconds
+     */
+    public static double deterministicInterval(int members, int senders, double rtcpBandwidth, boolean weSent,
+                                               double avgRtcpSize, boolean initial) {
+        final double minTime = initial ? (RTCP_MIN_TIME / 2) : RTCP_MIN_TIME;
+
+        // Dedicate a fraction of the bandwidth to the senders unless their number is large enough that their share
+        // is more than that fraction.
+        int n = members;
+        double bandwidth = rtcpBandwidth;
+        if (senders <= (members * RTCP_SENDER_BW_FRACTION)) {
+            if (weSent) {
+                bandwidth *= RTCP_SENDER_BW_FRACTION;
+                n = senders;
+            } else {
+                bandwidth *= RTCP_RCVR_BW_FRACTION;
+                n -= senders;
+            }
+        }
+
+        return Math.max((avgRtcpSize * n) / bandwidth, minTime);
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    /**
+     * Schedules the first report.
+     *
+     * @param now current time
+     * @param members number of members including the local participant
+     * @return the time of the first report
+     */
+    public synchronized long start(long now, int members) {
+        this.previousTransmission = now;
+        this.previousMembers = members;
+        this.nextTransmission = now + this.randomInterval(members, 0, false);
+        return this.nextTransmission;
+    }
+
+    /**
+     * Timer reconsideration: recomputes the interval with the current number of members when the timer expired.
+     *
+     * @param now current time
+     * @param members number of members including the local participant
+     * @param senders number of members which sent data recently, including the local participant
+     * @param weSent whether the local participant sent data recently
+     * @return {@code true} if the report should be sent now, otherwise the timer must be rescheduled to
+     * {@link #getNextTransmission()}
+     */
+    public synchronized boolean reconsider(long now, int members, int senders, boolean weSent) {
+        this.nextTransmission = this.previousTransmission + this.randomInterval(members, senders, weSent);
+        return this.nextTransmission <= now;
+    }
+
+    /**
+     * Schedules the next report after a report was sent.
+     *
+     * @param now current time
+     * @param size size of the sent compound packet in octets, without the UDP and IP headers, 0 if no packet was sent
+     * @param members number of members including the local participant
+     * @param senders number of members which sent data recently, including the local participant
+     * @param weSent whether the local participant sent data recently
+     * @return the time of the next report
+     */
+    public synchronized long reportSent(long now, int size, int members, int senders, boolean weSent) {
+        if (size > 0) {
+            this.updateAverageSize(size);
+        }
+        this.previousTransmission = now;
+        this.initial = false;
+        this.previousMembers = members;
+        this.nextTransmission = now + this.randomInterval(members, senders, weSent);
+        return this.nextTransmission;
+    }
+
+    /**
+     * Updates the average compound packet size with a received compound packet.
+     *
+     * @param size size of the received compound packet in octets, without the UDP and IP headers
+     */
+    public synchronized void reportReceived(int size) {
+        this.updateAverageSize(size);
+    }
+
+    /**
+     * Reverse reconsideration: brings the next report forward if the number of members decreased, so the remaining
+     * members do not time out each other.
+     *
+     * @param now current time
+     * @param members number of members including the local participant
+     * @return {@code true} if the next report was brought forward and the timer must be rescheduled to
+     * {@link #getNextTransmission()}
+     */
+    public synchronized boolean membersDecreased(long now, int members) {
+        if ((members >= this.previousMembers) || (this.previousMembers == 0)) {
+            return false;
+        }
+        final double ratio = (double) members / this.previousMembers;
+        this.nextTransmission = now + (long) (ratio * Math.max(0, this.nextTransmission - now));
+        this.previousTransmission = now - (long) (ratio * Math.max(0, now - this.previousTransmission));
+        this.previousMembers = members;
+        return true;
+    }
+
+    // getters & setters ----------------------------------------------------------------------------------------------
+    public synchronized long getNextTransmission() {
+        return this.nextTransmission;
+    }
+
+    /**
+     * @return the average size of the compound packets in octets, including the UDP and IP headers
+     */
+    public synchronized double getAverageSize() {
+        return this.avgRtcpSize;
+    }
+
+    public double getRtcpBandwidth() {
+        return this.rtcpBandwidth;
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * @return the randomized and compensated interval in nanoseconds
+     */
+    private long randomInterval(int members, int senders, boolean weSent) {
+        final double interval = deterministicInterval(members, senders, this.rtcpBandwidth, weSent, this.avgRtcpSize,
+                                                      this.initial);
+        // uniformly distributed in [0.5;1.5] times the interval
+        final double randomized = interval * (ThreadLocalRandom.current().nextDouble() + 0.5) / COMPENSATION;
+        return (long) (randomized * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void updateAverageSize(int size) {
+        this.avgRtcpSize = ((size + HEADER_OVERHEAD) / 16.0) + ((15.0 / 16.0) * this.avgRtcpSize);
+    }
+}
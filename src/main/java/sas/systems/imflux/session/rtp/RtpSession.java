@@ -16,6 +16,7 @@
 
 package sas.systems.imflux.session.rtp;
 
+import java.util.List;
 import java.util.Map;
 
 import sas.systems.imflux.network.ControlPacketReceiver;
@@ -66,6 +67,28 @@ public interface RtpSession extends Session, DataPacketReceiver, ControlPacketRe
      */
     boolean sendDataPacket(DataPacket packet);
 
+    /**
+     * Sends several payloads sharing the same timestamp (e.g. all fragments of a video frame) as a burst of 
+     * {@link DataPacket}s. The packets get consecutive sequence numbers and only the last one is marked, if 
+     * requested.
+     * 
+     * @param data payloads of the packets in the order they should be sent
+     * @param timestamp timestamp of all packets
+     * @param marked mark the last packet?
+     * @return {@code true} if the data was sent and {@code false} otherwise
+     */
+    boolean sendDataBatch(List<byte[]> data, long timestamp, boolean marked);
+
+    /**
+     * Sends several {@link DataPacket}s as a burst. The packets get consecutive sequence numbers in the order of the 
+     * list.
+     * 
+     * @param packets the {@link DataPacket}s to be sent
+     * @return {@code true} if the {@link DataPacket}s were sent and {@code false} otherwise
+     * @see #sendDataPacket(DataPacket)
+     */
+    boolean sendDataPackets(List<DataPacket> packets);
+
     /**
      * Sends a {@link ControlPacket} through the control channel of this RTP session. 
      * 
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.session.rtp;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap.PrimitiveEntry;
+import sas.systems.imflux.logging.Logger;
+import sas.systems.imflux.network.udp.UdpControlPacketDecoder;
+import sas.systems.imflux.network.udp.UdpControlPacketEncoder;
+import sas.systems.imflux.network.udp.UdpDataPacketEncoder;
+import sas.systems.imflux.network.udp.UdpMuxPacketDecoder;
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.DataPacketView;
+import sas.systems.imflux.packet.rtcp.CompoundControlPacket;
+import sas.systems.imflux.participant.RtpParticipant;
+import sas.systems.imflux.session.SessionRuntime;
+
+/**
+ * A bundle of RTP sessions sharing one UDP socket. All sessions of a bundle use rtcp-mux (see RFC 5761) and send their
+ * data and control packets through the channel of the bundle. Received packets are routed to the sessions by the SSRC
+ * of their sender:
+ * <ol>
+ * 	<li>the SSRC is looked up in a table mapping SSRCs to sessions,</li>
+ * 	<li>if the SSRC is unknown, the source address of the packet is looked up in a table mapping the addresses of the
+ * 		remote participants to sessions. If a session is found this way, the SSRC is added to the SSRC table.</li>
+ * </ol>
+ * Packets which can not be routed are dropped. The SSRCs and the addresses of the remote participants known to a
+ * session are registered when it is added to the bundle, others can be registered with {@link #mapSsrc(long,
+ * AbstractRtpSession)} and {@link #mapAddress(SocketAddress, AbstractRtpSession)}.
+ * <br/>
+ * Both tables are read without locking by the event loop of the bundle and replaced by a modified copy on every
+ * change, so adding and removing sessions is expensive compared to routing packets.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class RtpSessionBundle {
+
+	// constants ------------------------------------------------------------------------------------------------------
+    private static final Logger LOG = Logger.getLogger(RtpSessionBundle.class);
+
+    // configuration defaults -----------------------------------------------------------------------------------------
+    private static final int SEND_BUFFER_SIZE = 256 * 1024;
+    private static final int RECEIVE_BUFFER_SIZE = 256 * 1024;
+    private static final boolean CONSOLIDATE_FLUSHES = false;
+    private static final int MAX_CONSOLIDATED_FLUSHES = 256;
+
+    // configuration --------------------------------------------------------------------------------------------------
+    private final String id;
+    private final SocketAddress localAddress;
+    private final SessionRuntime runtime;
+    private int sendBufferSize;
+    private int receiveBufferSize;
+    private boolean consolidateFlushes;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private final AtomicBoolean running;
+    private final Object tableLock;
+    private final Set<AbstractRtpSession> sessions;
+    private volatile LongObjectHashMap<AbstractRtpSession> ssrcTable;
+    private volatile Map<SocketAddress, AbstractRtpSession> addressTable;
+    private EventLoopGroup workerGroup;
+    private Channel channel;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    /**
+     * @see #RtpSessionBundle(String, SocketAddress, SessionRuntime)
+     * @param id
+     * @param localAddress
+     */
+    public RtpSessionBundle(String id, SocketAddress localAddress) {
+    	this(id, localAddress, null);
+    }
+
+    /**
+     * Creates a new bundle. Use {@link #init()} to bind its socket before adding sessions.
+     *
+     * @param id this bundles id
+     * @param localAddress the {@link SocketAddress} the socket of this bundle is bound to
+     * @param runtime shared resources of the application, may be {@code null}
+     */
+    public RtpSessionBundle(String id, SocketAddress localAddress, SessionRuntime runtime) {
+    	this.id = id;
+    	this.localAddress = localAddress;
+    	this.runtime = runtime;
+    	this.sendBufferSize = SEND_BUFFER_SIZE;
+    	this.receiveBufferSize = RECEIVE_BUFFER_SIZE;
+    	this.consolidateFlushes = CONSOLIDATE_FLUSHES;
+
+    	this.running = new AtomicBoolean(false);
+    	this.tableLock = new Object();
+    	this.sessions = Collections.newSetFromMap(new ConcurrentHashMap<AbstractRtpSession, Boolean>());
+    	this.ssrcTable = new LongObjectHashMap<>();
+    	this.addressTable = new HashMap<>();
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    /**
+     * Binds the socket of this bundle.
+     *
+     * @return {@code true} if the socket was bound, {@code false} otherwise
+     */
+    public synchronized boolean init() {
+    	if (this.running.get()) {
+    		return true;
+    	}
+
+    	final Class<? extends DatagramChannel> channelType;
+    	final ByteBufAllocator allocator;
+    	if (this.runtime != null) {
+    		this.workerGroup = this.runtime.nextEventLoop(this.id);
+    		channelType = this.runtime.getDatagramChannelType();
+    		allocator = this.runtime.getAllocator();
+    	} else {
+    		// one socket is always served by one thread
+    		this.workerGroup = new NioEventLoopGroup(1);
+    		channelType = NioDatagramChannel.class;
+    		allocator = ByteBufAllocator.DEFAULT;
+    	}
+
+    	final Bootstrap bootstrap = new Bootstrap();
+    	bootstrap.group(this.workerGroup)
+    			.option(ChannelOption.ALLOCATOR, allocator)
+    			.option(ChannelOption.SO_SNDBUF, this.sendBufferSize)
+    			.option(ChannelOption.SO_RCVBUF, this.receiveBufferSize)
+    			.channel(channelType)
+    			.handler(new ChannelInitializer<Channel>() {
+    				@Override
+    				protected void initChannel(Channel ch) throws Exception {
+    					ChannelPipeline pipeline = ch.pipeline();
+    					if (consolidateFlushes) {
+    						pipeline.addLast("flusher", new FlushConsolidationHandler(MAX_CONSOLIDATED_FLUSHES, true));
+    					}
+    					pipeline.addLast("router", new RoutingHandler());
+    					pipeline.addLast("encoder", UdpDataPacketEncoder.getInstance());
+    					pipeline.addLast("controlEncoder", UdpControlPacketEncoder.getInstance());
+    				}
+    			});
+
+    	try {
+    		this.channel = bootstrap.bind(this.localAddress).sync().channel();
+    	} catch (Exception e) {
+    		LOG.error("Failed to bind channel for session bundle with id " + this.id, e);
+    		shutdownEventLoopGroup();
+    		return false;
+    	}
+
+    	LOG.debug("Channel bound for RtpSessionBundle with id {}.", this.id);
+    	this.running.set(true);
+    	return true;
+    }
+
+    /**
+     * Terminates all sessions of this bundle and closes its socket.
+     */
+    public void terminate() {
+    	if (!this.running.getAndSet(false)) {
+    		return;
+    	}
+
+    	// sessions remove themselves from the bundle
+    	for (AbstractRtpSession session : new ArrayList<>(this.sessions)) {
+    		session.terminate();
+    	}
+    	synchronized (this) {
+    		this.channel.close();
+    		shutdownEventLoopGroup();
+    	}
+    	LOG.debug("RtpSessionBundle with id {} terminated.", this.id);
+    }
+
+    /**
+     * Adds a session to this bundle and initializes it. The session must not be initialized before, it sends and
+     * receives its packets through the socket of this bundle from now on. The SSRCs and addresses of the remote
+     * participants already known to the session are used to route packets to it.
+     *
+     * @param session a session which was not initialized yet
+     * @return {@code true} if the session was added and initialized, {@code false} otherwise
+     */
+    public boolean addSession(AbstractRtpSession session) {
+    	if (!this.running.get() || session.isRunning()) {
+    		return false;
+    	}
+
+    	session.attachToBundle(this);
+    	synchronized (this.tableLock) {
+    		this.sessions.add(session);
+    		final LongObjectHashMap<AbstractRtpSession> ssrcs = copySsrcTable();
+    		final Map<SocketAddress, AbstractRtpSession> addresses = new HashMap<>(this.addressTable);
+    		for (RtpParticipant participant : session.participantDatabase.getMembers().values()) {
+    			ssrcs.put(participant.getSsrc(), session);
+    		}
+    		for (RtpParticipant participant : session.participantDatabase.getReceivers()) {
+    			ssrcs.put(participant.getSsrc(), session);
+    			if (participant.getDataDestination() != null) {
+    				addresses.put(participant.getDataDestination(), session);
+    			}
+    		}
+    		this.ssrcTable = ssrcs;
+    		this.addressTable = addresses;
+    	}
+
+    	if (!session.init()) {
+    		removeSession(session);
+    		return false;
+    	}
+    	return true;
+    }
+
+    /**
+     * Routes all packets with the given SSRC to the session.
+     *
+     * @param ssrc the SSRC of a remote participant
+     * @param session a session of this bundle
+     */
+    public void mapSsrc(long ssrc, AbstractRtpSession session) {
+    	synchronized (this.tableLock) {
+    		if (!this.sessions.contains(session)) {
+    			throw new IllegalArgumentException("Session is not part of this bundle");
+    		}
+    		final LongObjectHashMap<AbstractRtpSession> ssrcs = copySsrcTable();
+    		ssrcs.put(ssrc, session);
+    		this.ssrcTable = ssrcs;
+    	}
+    }
+
+    /**
+     * Routes all packets with an unknown SSRC received from the given address to the session.
+     *
+     * @param address the address of a remote participant
+     * @param session a session of this bundle
+     */
+    public void mapAddress(SocketAddress address, AbstractRtpSession session) {
+    	synchronized (this.tableLock) {
+    		if (!this.sessions.contains(session)) {
+    			throw new IllegalArgumentException("Session is not part of this bundle");
+    		}
+    		final Map<SocketAddress, AbstractRtpSession> addresses = new HashMap<>(this.addressTable);
+    		addresses.put(address, session);
+    		this.addressTable = addresses;
+    	}
+    }
+
+    /**
+     * @param ssrc the SSRC of a remote participant
+     * @return the session packets with this SSRC are routed to or {@code null}
+     */
+    public AbstractRtpSession getSession(long ssrc) {
+    	return this.ssrcTable.get(ssrc);
+    }
+
+    // package-private methods ----------------------------------------------------------------------------------------
+    /**
+     * Removes the session and all its routing entries from this bundle. Called by the session when it terminates.
+     *
+     * @param session a session of this bundle
+     */
+    void removeSession(AbstractRtpSession session) {
+    	synchronized (this.tableLock) {
+    		if (!this.sessions.remove(session)) {
+    			return;
+    		}
+    		final LongObjectHashMap<AbstractRtpSession> ssrcs = new LongObjectHashMap<>(this.ssrcTable.size());
+    		for (PrimitiveEntry<AbstractRtpSession> entry : this.ssrcTable.entries()) {
+    			if (entry.value() != session) {
+    				ssrcs.put(entry.key(), entry.value());
+    			}
+    		}
+    		final Map<SocketAddress, AbstractRtpSession> addresses = new HashMap<>(this.addressTable);
+    		final Iterator<AbstractRtpSession> iterator = addresses.values().iterator();
+    		while (iterator.hasNext()) {
+    			if (iterator.next() == session) {
+    				iterator.remove();
+    			}
+    		}
+    		this.ssrcTable = ssrcs;
+    		this.addressTable = addresses;
+    	}
+    }
+
+    Channel getChannel() {
+    	return this.channel;
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private LongObjectHashMap<AbstractRtpSession> copySsrcTable() {
+    	final LongObjectHashMap<AbstractRtpSession> copy = new LongObjectHashMap<>(this.ssrcTable.size() + 1);
+    	copy.putAll(this.ssrcTable);
+    	return copy;
+    }
+
+    /**
+     * Looks up the session for a received packet and learns the SSRC if the session was found by the address.
+     *
+     * @param ssrc SSRC of the sender
+     * @param origin address of the sender
+     * @return the session or {@code null}
+     */
+    private AbstractRtpSession route(long ssrc, SocketAddress origin) {
+    	AbstractRtpSession session = this.ssrcTable.get(ssrc);
+    	if (session != null) {
+    		return session;
+    	}
+    	session = this.addressTable.get(origin);
+    	if (session != null) {
+    		synchronized (this.tableLock) {
+    			if (this.sessions.contains(session)) {
+    				final LongObjectHashMap<AbstractRtpSession> ssrcs = copySsrcTable();
+    				ssrcs.put(ssrc, session);
+    				this.ssrcTable = ssrcs;
+    			}
+    		}
+    	}
+    	return session;
+    }
+
+    private void shutdownEventLoopGroup() {
+    	if (this.runtime != null) {
+    		if ((this.channel != null) && !this.channel.eventLoop().inEventLoop()) {
+    			this.channel.closeFuture().syncUninterruptibly();
+    		}
+    		return;
+    	}
+    	this.workerGroup.shutdownGracefully();
+    	this.workerGroup.terminationFuture().syncUninterruptibly();
+    }
+
+    // getters & setters ----------------------------------------------------------------------------------------------
+    public String getId() {
+    	return this.id;
+    }
+
+    public boolean isRunning() {
+    	return this.running.get();
+    }
+
+    public int getSessionCount() {
+    	return this.sessions.size();
+    }
+
+    public SocketAddress getLocalAddress() {
+    	return (this.channel != null) ? this.channel.localAddress() : this.localAddress;
+    }
+
+    public int getSendBufferSize() {
+    	return sendBufferSize;
+    }
+
+    /**
+     * Can only be modified before initialization.
+     */
+    public void setSendBufferSize(int sendBufferSize) {
+    	if (this.running.get()) {
+    		throw new IllegalArgumentException("Cannot modify property after initialisation");
+    	}
+    	this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+    	return receiveBufferSize;
+    }
+
+    /**
+     * Can only be modified before initialization.
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+    	if (this.running.get()) {
+    		throw new IllegalArgumentException("Cannot modify property after initialisation");
+    	}
+    	this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public boolean isConsolidateFlushes() {
+    	return consolidateFlushes;
+    }
+
+    /**
+     * If enabled, the flushes of all sessions of this bundle sent from other threads within one run of the event loop
+     * are consolidated into a single flush of the shared socket.<br/>
+     * Can only be modified before initialization.
+     *
+     * @see AbstractRtpSession#setConsolidateFlushes(boolean)
+     */
+    public void setConsolidateFlushes(boolean consolidateFlushes) {
+    	if (this.running.get()) {
+    		throw new IllegalArgumentException("Cannot modify property after initialisation");
+    	}
+    	this.consolidateFlushes = consolidateFlushes;
+    }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    /**
+     * Reads the SSRC of each received datagram, routes it to its session and decodes it for that session. Used by the
+     * single channel of the bundle only, so the view is never shared between threads.
+     *
+     * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+     */
+    private final class RoutingHandler extends ChannelInboundHandlerAdapter {
+
+    	// internal vars ----------------------------------------------------------------------------------------------
+    	private final DataPacketView view = new DataPacketView();
+
+    	// ChannelInboundHandlerAdapter -------------------------------------------------------------------------------
+    	@Override
+    	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    		if (!(msg instanceof DatagramPacket)) {
+    			ctx.fireChannelRead(msg);
+    			return;
+    		}
+
+    		final DatagramPacket datagram = (DatagramPacket) msg;
+    		try {
+    			final ByteBuf content = datagram.content();
+    			if (UdpMuxPacketDecoder.isControlPacket(content)) {
+    				routeControlPacket(datagram.sender(), content);
+    			} else {
+    				routeDataPacket(datagram.sender(), content);
+    			}
+    		} catch (Exception e) {
+    			LOG.debug("Exception caught while routing packet in session bundle with id {}.", e, id);
+    		} finally {
+    			this.view.clear();
+    			ReferenceCountUtil.release(msg);
+    		}
+    	}
+
+    	// private helpers --------------------------------------------------------------------------------------------
+    	private void routeControlPacket(SocketAddress origin, ByteBuf content) {
+    		if (content.readableBytes() < 8) {
+    			return;
+    		}
+    		// the first packet of a compound packet always starts with the SSRC of its sender
+    		final AbstractRtpSession session = route(content.getUnsignedInt(content.readerIndex() + 4), origin);
+    		if (session == null) {
+    			LOG.debug("Dropping RTCP packet from {} with unknown SSRC in session bundle with id {}.", origin, id);
+    			return;
+    		}
+    		final CompoundControlPacket packet = UdpControlPacketDecoder.decodeCompoundPacket(content);
+    		if (packet != null) {
+    			session.controlPacketReceived(origin, packet);
+    		}
+    	}
+
+    	private void routeDataPacket(SocketAddress origin, ByteBuf content) {
+    		this.view.wrap(content);
+    		if (!this.view.isValid()) {
+    			return;
+    		}
+    		final AbstractRtpSession session = route(this.view.getSsrc(), origin);
+    		if (session == null) {
+    			LOG.debug("Dropping RTP packet from {} with unknown SSRC in session bundle with id {}.", origin, id);
+    			return;
+    		}
+    		if (!session.acceptDataPacket(origin, this.view)) {
+    			return;
+    		}
+    		final DataPacket packet = session.isZeroCopyReceive() ? DataPacket.decodePooled(content)
+    				: DataPacket.decode(content);
+    		try {
+    			session.dataPacketReceived(origin, packet);
+    		} finally {
+    			packet.release();
+    		}
+    	}
+    }
+}
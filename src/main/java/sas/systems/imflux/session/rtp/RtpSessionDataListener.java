@@ -32,6 +32,11 @@ public interface RtpSessionDataListener {
 	 * This method is called from the {@link RtpSession} when it has received an
 	 * {@link DataPacket}. You can use this method to define custom actions with this
 	 * {@link DataPacket}.
+	 * <p/>
+	 * The packet is only guaranteed to be valid until this method returns. If the session receives in zero-copy mode
+	 * (see {@link AbstractRtpSession#setZeroCopyReceive(boolean)}), the payload is a slice of the received datagram
+	 * which is given back to the transport afterwards and the packet itself is recycled. Call {@link DataPacket#retain()} to keep the packet and 
+	 * {@link DataPacket#release()} once it is not needed anymore.
 	 * 
 	 * @param session a {@link RtpSession} object to provide information about the session
 	 * @param participant origin of the packet
@@ -16,16 +16,21 @@
 
 package sas.systems.imflux.session.rtp;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.util.HashedWheelTimer;
 import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.DataPacketView;
 import sas.systems.imflux.packet.rtcp.CompoundControlPacket;
 import sas.systems.imflux.packet.rtcp.ControlPacket;
 import sas.systems.imflux.participant.ParticipantDatabase;
 import sas.systems.imflux.participant.RtpParticipant;
 import sas.systems.imflux.participant.SingleParticipantDatabase;
+import sas.systems.imflux.session.SessionRuntime;
 
 import java.net.SocketAddress;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -64,7 +69,7 @@ public class SingleParticipantSession extends AbstractRtpSession {
     // constructors ---------------------------------------------------------------------------------------------------
     public SingleParticipantSession(String id, int payloadType, RtpParticipant localParticipant,
                                     RtpParticipant remoteParticipant) {
-        this(id, payloadType, localParticipant, remoteParticipant, null/*, null*/);
+        this(id, payloadType, localParticipant, remoteParticipant, (HashedWheelTimer) null/*, null*/);
     }
 
 //    public SingleParticipantSession(String id, int payloadType, RtpParticipant localParticipant,
@@ -87,14 +92,17 @@ public class SingleParticipantSession extends AbstractRtpSession {
                                     RtpParticipant remoteParticipant, HashedWheelTimer timer/*,
                                     OrderedMemoryAwareThreadPoolExecutor executor*/) {
         super(id, payloadType, localParticipant, timer/*, executor*/);
-        if (!remoteParticipant.isReceiver()) {
-            throw new IllegalArgumentException("Remote participant must be a receiver (data & control addresses set)");
-        }
-        ((SingleParticipantDatabase) this.participantDatabase).setParticipant(remoteParticipant); // was instantiated in super()
+        this.init(remoteParticipant);
+        this.receiver = remoteParticipant;
+        this.receivedPackets = new AtomicBoolean(false);
+    }
+
+    public SingleParticipantSession(String id, int payloadType, RtpParticipant localParticipant,
+                                    RtpParticipant remoteParticipant, SessionRuntime runtime) {
+        super(id, payloadType, localParticipant, runtime);
+        this.init(remoteParticipant);
         this.receiver = remoteParticipant;
         this.receivedPackets = new AtomicBoolean(false);
-        this.sendToLastOrigin = SEND_TO_LAST_ORIGIN;
-        this.ignoreFromUnknownSsrc = IGNORE_FROM_UNKNOWN_SSRC;
     }
 
     // RtpSession -----------------------------------------------------------------------------------------------------
@@ -166,22 +174,31 @@ public class SingleParticipantSession extends AbstractRtpSession {
     @Override
     protected void internalSendData(DataPacket packet) {
         try {
-            // This assumes that the sender is sending from the same ports where its expecting to receive.
-            // Can be dangerous if the other end fully respects the RFC and supports ICE, but this is nearly the only
-            // workaround that will work if the other end doesn't support ICE and is behind a NAT.
-            SocketAddress destination;
-            if (this.sendToLastOrigin && (this.receiver.getLastDataOrigin() != null)) {
-                destination = this.receiver.getLastDataOrigin();
-            } else {
-                destination = this.receiver.getDataDestination();
-            }
-            this.writeToData(packet, destination);
+            this.writeToData(packet, this.getDataDestination());
+            this.incrementSentPackets();
+            this.incrementSentBytes(packet.getDataSize());
             this.sentOrReceivedPackets.set(true);
         } catch (Exception e) {
             LOG.error("Failed to send {} to {} in session with id {}.", e, packet, this.id, this.receiver.getInfo());
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Sends the {@link DataPacket}s to the same destination as {@link #internalSendData(DataPacket)}.
+     */
+    @Override
+    protected void internalSendData(List<DataPacket> packets) {
+        try {
+            this.writeToData(packets, Collections.singletonList(this.getDataDestination()));
+            this.sentOrReceivedPackets.set(true);
+        } catch (Exception e) {
+            LOG.error("Failed to send {} packets to {} in session with id {}.", e, packets.size(), this.id, 
+            		this.receiver.getInfo());
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <br/>
@@ -204,6 +221,40 @@ public class SingleParticipantSession extends AbstractRtpSession {
         new SendControlHelper(packet).sendControl();
     }
 
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Sends the encoded packet to the same destination as {@link #internalSendControl(CompoundControlPacket)}.
+     */
+    @Override
+    protected void internalSendControl(ByteBuf encoded) {
+        try {
+            this.enqueueToControl(encoded, this.getControlDestination());
+            this.flushControl();
+            this.sentOrReceivedPackets.set(true);
+        } catch (Exception e) {
+            LOG.error("Failed to send compound RTCP packet to {} in session with id {}.", e, this.receiver.getInfo(), 
+                      this.id);
+        }
+    }
+
+    // DataPacketFilter -----------------------------------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     * <br/>
+     * Also rejects packets from unexpected SSRCs once the SSRC of the remote participant is known and 
+     * {@code ignoreFromUnknownSsrc} is set.
+     */
+    @Override
+    public boolean acceptDataPacket(SocketAddress origin, DataPacketView header) {
+        if (this.receivedPackets.get() && this.ignoreFromUnknownSsrc && 
+            (header.getSsrc() != this.receiver.getInfo().getSsrc())) {
+            return false;
+        }
+
+        return super.acceptDataPacket(origin, header);
+    }
+
     // DataPacketReceiver ---------------------------------------------------------------------------------------------
     /**
      * {@inheritDoc}
@@ -252,6 +303,39 @@ public class SingleParticipantSession extends AbstractRtpSession {
         this.ignoreFromUnknownSsrc = ignoreFromUnknownSsrc;
     }
     
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * Initialisation shared by the constructors, called after the participant database was instantiated in super().
+     * 
+     * @param remoteParticipant
+     */
+    private void init(RtpParticipant remoteParticipant) {
+        if (!remoteParticipant.isReceiver()) {
+            throw new IllegalArgumentException("Remote participant must be a receiver (data & control addresses set)");
+        }
+        ((SingleParticipantDatabase) this.participantDatabase).setParticipant(remoteParticipant);
+        this.sendToLastOrigin = SEND_TO_LAST_ORIGIN;
+        this.ignoreFromUnknownSsrc = IGNORE_FROM_UNKNOWN_SSRC;
+    }
+
+    private SocketAddress getDataDestination() {
+        // This assumes that the sender is sending from the same ports where its expecting to receive.
+        // Can be dangerous if the other end fully respects the RFC and supports ICE, but this is nearly the only
+        // workaround that will work if the other end doesn't support ICE and is behind a NAT.
+        if (this.sendToLastOrigin && (this.receiver.getLastDataOrigin() != null)) {
+            return this.receiver.getLastDataOrigin();
+        }
+        return this.receiver.getDataDestination();
+    }
+
+    private SocketAddress getControlDestination() {
+        // Same assumption as for the data destination.
+        if (this.sendToLastOrigin && (this.receiver.getLastControlOrigin() != null)) {
+            return this.receiver.getLastControlOrigin();
+        }
+        return this.getControlDestination(this.receiver);
+    }
+
     // private helper class -------------------------------------------------------------------------------------------
     /**
      * Helper class for sending either {@link CompoundControlPacket}s or {@link ControlPacket} to the remote 
@@ -288,15 +372,7 @@ public class SingleParticipantSession extends AbstractRtpSession {
     	 */
     	public void sendControl() {
     		try {
-            	// This assumes that the sender is sending from the same ports where its expecting to receive.
-                // Can be dangerous if the other end fully respects the RFC and supports ICE, but this is nearly the only
-                // workaround that will work if the other end doesn't support ICE and is behind a NAT.
-                SocketAddress destination;
-                if (sendToLastOrigin && (receiver.getLastControlOrigin() != null)) {
-                    destination = receiver.getLastControlOrigin();
-                } else {
-                    destination = receiver.getControlDestination();
-                }
+                SocketAddress destination = getControlDestination();
                 if(isCompound) {
                 	writeToControl(compountPacket, destination);
                 } else {
@@ -25,6 +25,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
@@ -53,6 +54,7 @@ import sas.systems.imflux.logging.Logger;
 import sas.systems.imflux.network.RtspHandler;
 import sas.systems.imflux.participant.RtpParticipant;
 import sas.systems.imflux.participant.RtspParticipant;
+import sas.systems.imflux.session.SessionRuntime;
 import sas.systems.imflux.session.rtp.RtpSession;
 
 /**
@@ -99,6 +101,7 @@ public class SimpleRtspSession implements RtspSession {
 	private Channel channel;
 	private EventLoopGroup bossGroup;
 	private EventLoopGroup workerGroup;
+	private final SessionRuntime runtime;
 	private List<RtspRequestListener> requestListener;
 	private List<RtspResponseListener> responseListener;
 	private RtpParticipant localRtpParticipant;
@@ -124,7 +127,22 @@ public class SimpleRtspSession implements RtspSession {
 	 * @param loAddress a {@link SocketAddress} where this session will listen for requests
 	 */
 	public SimpleRtspSession(String id, RtpParticipant localRtpParticipantInformation, SocketAddress loAddress) {
+		this(id, localRtpParticipantInformation, loAddress, null);
+	}
+	
+	/**
+	 * Creates a new RTSP session which accepts and serves its connections with the event loops of a shared
+	 * {@link SessionRuntime}. The runtime is not shut down when this session terminates.
+	 * 
+	 * @param id this sessions id
+	 * @param localRtpParticipantInformation information about the RTP session
+	 * @param loAddress a {@link SocketAddress} where this session will listen for requests
+	 * @param runtime shared resources of the application, may be {@code null}
+	 */
+	public SimpleRtspSession(String id, RtpParticipant localRtpParticipantInformation, SocketAddress loAddress,
+			SessionRuntime runtime) {
 		this.id = id;
+		this.runtime = runtime;
 		this.localRtpParticipant = localRtpParticipantInformation;
 		this.localAddress = loAddress;
 		this.running = new AtomicBoolean(false);
@@ -162,7 +180,14 @@ public class SimpleRtspSession implements RtspSession {
 		
 		// create bootstrap
 		Class<? extends ServerChannel> channelType;
-        if(useNio) {
+		ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+        if(this.runtime != null) {
+        	// accept on the session's own loop, serve the connections with all loops of the runtime
+        	this.workerGroup = this.runtime.getEventLoopGroup();
+        	this.bossGroup = this.runtime.nextEventLoop(this.id);
+        	channelType = this.runtime.getServerChannelType();
+        	allocator = this.runtime.getAllocator();
+        } else if(useNio) {
 	        this.workerGroup = new NioEventLoopGroup();
 	        this.bossGroup = new NioEventLoopGroup();
 	        channelType = NioServerSocketChannel.class;
@@ -176,6 +201,8 @@ public class SimpleRtspSession implements RtspSession {
         bootstrap.group(this.bossGroup, this.workerGroup)
 		        .option(ChannelOption.SO_SNDBUF, this.sendBufferSize)
 		    	.option(ChannelOption.SO_RCVBUF, this.receiveBufferSize)
+		    	.option(ChannelOption.ALLOCATOR, allocator)
+		    	.childOption(ChannelOption.ALLOCATOR, allocator)
 	        	.channel(channelType)
 	        	.handler(new LoggingHandler(LogLevel.INFO))
 	        	.childHandler(new ChannelInitializer<Channel>() { // is used to initialize the ChannelPipeline
@@ -195,11 +222,7 @@ public class SimpleRtspSession implements RtspSession {
 
         } catch (Exception e) {
             LOG.error("Failed to bind RTSP channel for session with id " + this.id, e);
-            this.workerGroup.shutdownGracefully();
-            this.bossGroup.shutdownGracefully();
-            
-            this.workerGroup.terminationFuture().syncUninterruptibly();
-            this.bossGroup.terminationFuture().syncUninterruptibly();
+            shutdownEventLoopGroups();
             return false;
         }
         LOG.debug("RTSP channel bound for RtspSession with id {}.", this.id);
@@ -225,7 +248,7 @@ public class SimpleRtspSession implements RtspSession {
 		}
 		
 		// create channel and connect it to the given remote
-		final Channel ch = new NioSocketChannel();
+		final Channel ch = (this.runtime != null) ? this.runtime.newSocketChannel() : new NioSocketChannel();
 		final ChannelPipeline pipe = ch.pipeline();
 		pipe.addLast("encoder", new RtspEncoder());
 		pipe.addLast("decoder", new RtspDecoder());
@@ -431,14 +454,29 @@ public class SimpleRtspSession implements RtspSession {
         
         // close channel
         this.channel.close();
-        this.workerGroup.shutdownGracefully();
-        this.bossGroup.shutdownGracefully();
         this.participantSessions.clear();
         this.requestListener.clear();
         this.responseListener.clear();
-        // wait for termination
-        this.workerGroup.terminationFuture().syncUninterruptibly();
-        this.bossGroup.terminationFuture().syncUninterruptibly();
+        shutdownEventLoopGroups();
+    }
+    
+    /**
+     * Shuts down both thread groups and waits for their termination. The event loops of a shared 
+     * {@link SessionRuntime} are left running.
+     */
+    private void shutdownEventLoopGroups() {
+    	if(this.runtime != null) {
+    		// only the server channel of this session is released, wait for it unless called from its event loop
+    		if(this.channel != null && !this.channel.eventLoop().inEventLoop()) {
+    			this.channel.closeFuture().syncUninterruptibly();
+    		}
+    		return;
+    	}
+    	this.workerGroup.shutdownGracefully();
+    	this.bossGroup.shutdownGracefully();
+    	// wait for termination
+    	this.workerGroup.terminationFuture().syncUninterruptibly();
+    	this.bossGroup.terminationFuture().syncUninterruptibly();
     }
     
     /**
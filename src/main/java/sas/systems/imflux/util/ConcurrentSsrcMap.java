@@ -0,0 +1,417 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe variant of the {@link SsrcMap}. Reads never block: the slots are read with volatile semantics and a
+ * slot's key is always written before its value, so a reader which finds the same value before and after reading the
+ * key has seen the matching key. Writers are serialized by a lock. Growing the table builds a new one, which is
+ * published as a whole, readers still working on the old table see a consistent (but possibly outdated) state.
+ * <br/>
+ * Iterators are weakly consistent like the ones of {@link java.util.concurrent.ConcurrentHashMap}, they never throw
+ * a {@link java.util.ConcurrentModificationException}.
+ *
+ * @param <V> type of the values
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class ConcurrentSsrcMap<V> {
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private final Object writeLock;
+    private volatile Table table;
+    private volatile int size;
+    /**
+     * Slots of the current table which are not empty, including those of removed entries. Guarded by the lock.
+     */
+    private int used;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    public ConcurrentSsrcMap() {
+    	this(SsrcMap.MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of entries the map should hold without growing
+     */
+    public ConcurrentSsrcMap(int expectedSize) {
+    	this.writeLock = new Object();
+    	this.table = new Table(SsrcMap.capacityFor(expectedSize));
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    @SuppressWarnings("unchecked")
+	public V get(long key) {
+    	final Table table = this.table;
+    	int i = SsrcMap.indexOf(key, table.mask);
+    	for (;;) {
+    		// read the value first, it guards the key of the slot
+    		Object value = table.values.get(i);
+    		if (value == null) {
+    			return null;
+    		}
+    		if ((value != SsrcMap.REMOVED) && (table.keys.get(i) == key)) {
+    			// the slot may have been removed and reused for this key in between, check the value again
+    			if (table.values.get(i) == value) {
+    				return (V) value;
+    			}
+    			continue;
+    		}
+    		i = (i + 1) & table.mask;
+    	}
+    }
+
+    public boolean containsKey(long key) {
+    	return this.get(key) != null;
+    }
+
+    /**
+     * @param key
+     * @param value must not be {@code null}
+     * @return the previous value of the key or {@code null} if there was none
+     */
+    public V put(long key, V value) {
+    	synchronized (this.writeLock) {
+    		return this.put(key, value, false);
+    	}
+    }
+
+    /**
+     * @param key
+     * @param value must not be {@code null}
+     * @return the current value of the key or {@code null} if the value was added
+     */
+    public V putIfAbsent(long key, V value) {
+    	final V current = this.get(key);
+    	if (current != null) {
+    		return current;
+    	}
+    	synchronized (this.writeLock) {
+    		return this.put(key, value, true);
+    	}
+    }
+
+    /**
+     * @param key
+     * @return the removed value or {@code null} if the key was not found
+     */
+    @SuppressWarnings("unchecked")
+	public V remove(long key) {
+    	synchronized (this.writeLock) {
+    		final Table table = this.table;
+    		final int i = table.slotOf(key);
+    		if (i < 0) {
+    			return null;
+    		}
+    		final Object value = table.values.get(i);
+    		table.values.set(i, SsrcMap.REMOVED);
+    		this.size--;
+    		return (V) value;
+    	}
+    }
+
+    /**
+     * Removes the entry only if the key is mapped to the given value.
+     *
+     * @param key
+     * @param value
+     * @return {@code true} if the entry was removed
+     */
+    public boolean remove(long key, V value) {
+    	synchronized (this.writeLock) {
+    		final Table table = this.table;
+    		final int i = table.slotOf(key);
+    		if ((i < 0) || (table.values.get(i) != value)) {
+    			return false;
+    		}
+    		table.values.set(i, SsrcMap.REMOVED);
+    		this.size--;
+    		return true;
+    	}
+    }
+
+    public void clear() {
+    	synchronized (this.writeLock) {
+    		this.table = new Table(SsrcMap.MIN_CAPACITY);
+    		this.size = 0;
+    		this.used = 0;
+    	}
+    }
+
+    public int size() {
+    	return this.size;
+    }
+
+    public boolean isEmpty() {
+    	return this.size == 0;
+    }
+
+    /**
+     * @return a view of the values of this map, its iterator supports {@link Iterator#remove()}
+     */
+    public Collection<V> values() {
+    	return new AbstractCollection<V>() {
+    		@Override
+    		public Iterator<V> iterator() {
+    			return new ValueIterator();
+    		}
+
+    		@Override
+    		public int size() {
+    			return ConcurrentSsrcMap.this.size;
+    		}
+    	};
+    }
+
+    /**
+     * Creates a read-only {@link Map} view of this map, e.g. for APIs which expose the map. Lookups with {@link Long}
+     * keys are forwarded to {@link #get(long)}.
+     *
+     * @return an unmodifiable view of this map
+     */
+    public Map<Long, V> asMap() {
+    	return new AbstractMap<Long, V>() {
+    		@Override
+    		public V get(Object key) {
+    			return (key instanceof Long) ? ConcurrentSsrcMap.this.get((Long) key) : null;
+    		}
+
+    		@Override
+    		public boolean containsKey(Object key) {
+    			return this.get(key) != null;
+    		}
+
+    		@Override
+    		public int size() {
+    			return ConcurrentSsrcMap.this.size;
+    		}
+
+    		@Override
+    		public Set<Entry<Long, V>> entrySet() {
+    			return new AbstractSet<Entry<Long, V>>() {
+    				@Override
+    				public Iterator<Entry<Long, V>> iterator() {
+    					return new EntryIterator();
+    				}
+
+    				@Override
+    				public int size() {
+    					return ConcurrentSsrcMap.this.size;
+    				}
+    			};
+    		}
+    	};
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    /**
+     * Must be called while holding the lock.
+     */
+    @SuppressWarnings("unchecked")
+	private V put(long key, V value, boolean onlyIfAbsent) {
+    	if (value == null) {
+    		throw new NullPointerException("Null values are not supported");
+    	}
+
+    	final Table table = this.table;
+    	int i = SsrcMap.indexOf(key, table.mask);
+    	int removed = -1;
+    	for (;;) {
+    		Object current = table.values.get(i);
+    		if (current == null) {
+    			break;
+    		}
+    		if (current == SsrcMap.REMOVED) {
+    			if (removed < 0) {
+    				removed = i;
+    			}
+    		} else if (table.keys.get(i) == key) {
+    			if (!onlyIfAbsent) {
+    				table.values.set(i, value);
+    			}
+    			return (V) current;
+    		}
+    		i = (i + 1) & table.mask;
+    	}
+
+    	this.size++;
+    	if (removed >= 0) {
+    		table.insert(removed, key, value);
+    		return null;
+    	}
+    	table.insert(i, key, value);
+    	if (++this.used > SsrcMap.thresholdOf(table.length())) {
+    		this.rehash();
+    	}
+    	return null;
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void rehash() {
+    	final Table old = this.table;
+    	final Table table = new Table(SsrcMap.capacityFor(this.size));
+    	int used = 0;
+    	for (int i = 0; i < old.length(); i++) {
+    		Object value = old.values.get(i);
+    		if ((value == null) || (value == SsrcMap.REMOVED)) {
+    			continue;
+    		}
+    		long key = old.keys.get(i);
+    		int j = SsrcMap.indexOf(key, table.mask);
+    		while (table.values.get(j) != null) {
+    			j = (j + 1) & table.mask;
+    		}
+    		table.insert(j, key, value);
+    		used++;
+    	}
+    	this.used = used;
+    	this.table = table;
+    }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    private static final class Table {
+
+    	final AtomicLongArray keys;
+    	final AtomicReferenceArray<Object> values;
+    	final int mask;
+
+    	Table(int capacity) {
+    		this.keys = new AtomicLongArray(capacity);
+    		this.values = new AtomicReferenceArray<>(capacity);
+    		this.mask = capacity - 1;
+    	}
+
+    	int length() {
+    		return this.values.length();
+    	}
+
+    	void insert(int slot, long key, Object value) {
+    		// the key has to be visible before the value
+    		this.keys.set(slot, key);
+    		this.values.set(slot, value);
+    	}
+
+    	int slotOf(long key) {
+    		int i = SsrcMap.indexOf(key, this.mask);
+    		for (;;) {
+    			Object value = this.values.get(i);
+    			if (value == null) {
+    				return -1;
+    			}
+    			if ((value != SsrcMap.REMOVED) && (this.keys.get(i) == key)) {
+    				return i;
+    			}
+    			i = (i + 1) & this.mask;
+    		}
+    	}
+    }
+
+    /**
+     * Iterates over the slots of the table the map had when the iterator was created.
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+
+    	private final Table table = ConcurrentSsrcMap.this.table;
+    	private long nextKey;
+    	private Object nextValue;
+    	private long lastKey;
+    	private Object lastValue;
+    	private int index = -1;
+
+    	SlotIterator() {
+    		this.advance();
+    	}
+
+		@Override
+		public boolean hasNext() {
+			return this.nextValue != null;
+		}
+
+		@Override
+		public T next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.lastKey = this.nextKey;
+			this.lastValue = this.nextValue;
+			this.advance();
+			return this.element(this.lastKey, this.lastValue);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void remove() {
+			if (this.lastValue == null) {
+				throw new IllegalStateException();
+			}
+			ConcurrentSsrcMap.this.remove(this.lastKey, (V) this.lastValue);
+			this.lastValue = null;
+		}
+
+		abstract T element(long key, Object value);
+
+		private void advance() {
+			// remember key and value of the next slot, it may change before next() is called
+			this.nextValue = null;
+			while (++this.index < this.table.length()) {
+				Object value = this.table.values.get(this.index);
+				if ((value != null) && (value != SsrcMap.REMOVED)) {
+					long key = this.table.keys.get(this.index);
+					// skip slots which were reused while reading them
+					if (this.table.values.get(this.index) == value) {
+						this.nextKey = key;
+						this.nextValue = value;
+						return;
+					}
+				}
+			}
+		}
+    }
+
+    private final class ValueIterator extends SlotIterator<V> {
+    	@SuppressWarnings("unchecked")
+		@Override
+    	V element(long key, Object value) {
+    		return (V) value;
+    	}
+    }
+
+    private final class EntryIterator extends SlotIterator<Map.Entry<Long, V>> {
+    	@SuppressWarnings("unchecked")
+    	@Override
+    	Map.Entry<Long, V> element(long key, Object value) {
+    		return new AbstractMap.SimpleImmutableEntry<>(key, (V) value);
+    	}
+
+    	@Override
+    	public void remove() {
+    		throw new UnsupportedOperationException("Read-only view");
+    	}
+    }
+}
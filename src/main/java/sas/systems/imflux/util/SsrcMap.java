@@ -0,0 +1,390 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map with primitive {@code long} keys, specialized for SSRCs. It uses open addressing with linear probing, so
+ * neither the keys are boxed nor entry objects are created. {@code null} values are not allowed.<br/>
+ * Removed entries leave a marker in their slot, which is reused by the next insertion or dropped when the table is
+ * rebuilt.
+ * <br/>
+ * This class is not thread-safe, see {@link ConcurrentSsrcMap} for a variant with lock-free reads.
+ *
+ * @param <V> type of the values
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class SsrcMap<V> {
+
+	// constants ------------------------------------------------------------------------------------------------------
+    static final Object REMOVED = new Object();
+    static final int MIN_CAPACITY = 16;
+
+    // internal vars --------------------------------------------------------------------------------------------------
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    /**
+     * Slots which are not empty, including those of removed entries.
+     */
+    private int used;
+
+    // constructors ---------------------------------------------------------------------------------------------------
+    public SsrcMap() {
+    	this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of entries the map should hold without growing
+     */
+    public SsrcMap(int expectedSize) {
+    	this.allocate(capacityFor(expectedSize));
+    }
+
+    // public methods -------------------------------------------------------------------------------------------------
+    @SuppressWarnings("unchecked")
+	public V get(long key) {
+    	final long[] keys = this.keys;
+    	final Object[] values = this.values;
+    	int i = indexOf(key, this.mask);
+    	for (;;) {
+    		Object value = values[i];
+    		if (value == null) {
+    			return null;
+    		}
+    		if ((value != REMOVED) && (keys[i] == key)) {
+    			return (V) value;
+    		}
+    		i = (i + 1) & this.mask;
+    	}
+    }
+
+    public boolean containsKey(long key) {
+    	return this.get(key) != null;
+    }
+
+    /**
+     * @param key
+     * @param value must not be {@code null}
+     * @return the previous value of the key or {@code null} if there was none
+     */
+    public V put(long key, V value) {
+    	return this.put(key, value, false);
+    }
+
+    /**
+     * @param key
+     * @param value must not be {@code null}
+     * @return the current value of the key or {@code null} if the value was added
+     */
+    public V putIfAbsent(long key, V value) {
+    	return this.put(key, value, true);
+    }
+
+    /**
+     * @param key
+     * @return the removed value or {@code null} if the key was not found
+     */
+    @SuppressWarnings("unchecked")
+	public V remove(long key) {
+    	final int i = this.slotOf(key);
+    	if (i < 0) {
+    		return null;
+    	}
+    	final Object value = this.values[i];
+    	this.values[i] = REMOVED;
+    	this.size--;
+    	return (V) value;
+    }
+
+    /**
+     * Removes the entry only if the key is mapped to the given value.
+     *
+     * @param key
+     * @param value
+     * @return {@code true} if the entry was removed
+     */
+    public boolean remove(long key, V value) {
+    	final int i = this.slotOf(key);
+    	if ((i < 0) || (this.values[i] != value)) {
+    		return false;
+    	}
+    	this.values[i] = REMOVED;
+    	this.size--;
+    	return true;
+    }
+
+    public void clear() {
+    	this.allocate(MIN_CAPACITY);
+    }
+
+    public int size() {
+    	return this.size;
+    }
+
+    public boolean isEmpty() {
+    	return this.size == 0;
+    }
+
+    /**
+     * @return a view of the values of this map, its iterator supports {@link Iterator#remove()}
+     */
+    public Collection<V> values() {
+    	return new AbstractCollection<V>() {
+    		@Override
+    		public Iterator<V> iterator() {
+    			return new ValueIterator();
+    		}
+
+    		@Override
+    		public int size() {
+    			return SsrcMap.this.size;
+    		}
+    	};
+    }
+
+    /**
+     * Creates a read-only {@link Map} view of this map, e.g. for APIs which expose the map. Lookups with {@link Long}
+     * keys are forwarded to {@link #get(long)}.
+     *
+     * @return an unmodifiable view of this map
+     */
+    public Map<Long, V> asMap() {
+    	return new AbstractMap<Long, V>() {
+    		@Override
+    		public V get(Object key) {
+    			return (key instanceof Long) ? SsrcMap.this.get((Long) key) : null;
+    		}
+
+    		@Override
+    		public boolean containsKey(Object key) {
+    			return this.get(key) != null;
+    		}
+
+    		@Override
+    		public int size() {
+    			return SsrcMap.this.size;
+    		}
+
+    		@Override
+    		public Set<Entry<Long, V>> entrySet() {
+    			return new AbstractSet<Entry<Long, V>>() {
+    				@Override
+    				public Iterator<Entry<Long, V>> iterator() {
+    					return new EntryIterator();
+    				}
+
+    				@Override
+    				public int size() {
+    					return SsrcMap.this.size;
+    				}
+    			};
+    		}
+    	};
+    }
+
+    // package-private static methods ---------------------------------------------------------------------------------
+    /**
+     * Spreads the bits of the key, SSRCs are random but only use the lower 32 bits.
+     */
+    static int indexOf(long key, int mask) {
+    	final int hash = (int) (key ^ (key >>> 32)) * 0x9e3779b9;
+    	return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * @param size number of entries
+     * @return the table size for {@code size} entries, a power of two
+     */
+    static int capacityFor(int size) {
+    	int capacity = MIN_CAPACITY;
+    	while (capacity < (size * 2)) {
+    		capacity <<= 1;
+    	}
+    	return capacity;
+    }
+
+    /**
+     * Tables are rebuilt when three quarters of the slots are in use.
+     */
+    static int thresholdOf(int capacity) {
+    	return (capacity >> 1) + (capacity >> 2);
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private void allocate(int capacity) {
+    	this.keys = new long[capacity];
+    	this.values = new Object[capacity];
+    	this.mask = capacity - 1;
+    	this.size = 0;
+    	this.used = 0;
+    }
+
+    private int slotOf(long key) {
+    	int i = indexOf(key, this.mask);
+    	for (;;) {
+    		Object value = this.values[i];
+    		if (value == null) {
+    			return -1;
+    		}
+    		if ((value != REMOVED) && (this.keys[i] == key)) {
+    			return i;
+    		}
+    		i = (i + 1) & this.mask;
+    	}
+    }
+
+    @SuppressWarnings("unchecked")
+	private V put(long key, V value, boolean onlyIfAbsent) {
+    	if (value == null) {
+    		throw new NullPointerException("Null values are not supported");
+    	}
+
+    	int i = indexOf(key, this.mask);
+    	int removed = -1;
+    	for (;;) {
+    		Object current = this.values[i];
+    		if (current == null) {
+    			break;
+    		}
+    		if (current == REMOVED) {
+    			if (removed < 0) {
+    				removed = i;
+    			}
+    		} else if (this.keys[i] == key) {
+    			if (!onlyIfAbsent) {
+    				this.values[i] = value;
+    			}
+    			return (V) current;
+    		}
+    		i = (i + 1) & this.mask;
+    	}
+
+    	this.size++;
+    	if (removed >= 0) {
+    		this.keys[removed] = key;
+    		this.values[removed] = value;
+    		return null;
+    	}
+    	this.keys[i] = key;
+    	this.values[i] = value;
+    	if (++this.used > thresholdOf(this.keys.length)) {
+    		this.rehash();
+    	}
+    	return null;
+    }
+
+    private void rehash() {
+    	final long[] oldKeys = this.keys;
+    	final Object[] oldValues = this.values;
+    	this.allocate(capacityFor(this.size));
+    	for (int i = 0; i < oldValues.length; i++) {
+    		Object value = oldValues[i];
+    		if ((value == null) || (value == REMOVED)) {
+    			continue;
+    		}
+    		int j = indexOf(oldKeys[i], this.mask);
+    		while (this.values[j] != null) {
+    			j = (j + 1) & this.mask;
+    		}
+    		this.keys[j] = oldKeys[i];
+    		this.values[j] = value;
+    		this.size++;
+    		this.used++;
+    	}
+    }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    /**
+     * Iterates over the slots of the table the map had when the iterator was created.
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+
+    	private final long[] keys = SsrcMap.this.keys;
+    	private final Object[] values = SsrcMap.this.values;
+    	private int next = -1;
+    	private int last = -1;
+
+    	SlotIterator() {
+    		this.advance();
+    	}
+
+		@Override
+		public boolean hasNext() {
+			return this.next < this.values.length;
+		}
+
+		@Override
+		public T next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.last = this.next;
+			this.advance();
+			return this.element(this.keys[this.last], this.values[this.last]);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void remove() {
+			if (this.last < 0) {
+				throw new IllegalStateException();
+			}
+			SsrcMap.this.remove(this.keys[this.last], (V) this.values[this.last]);
+			this.last = -1;
+		}
+
+		abstract T element(long key, Object value);
+
+		private void advance() {
+			do {
+				this.next++;
+			} while ((this.next < this.values.length) &&
+					((this.values[this.next] == null) || (this.values[this.next] == REMOVED)));
+		}
+    }
+
+    private final class ValueIterator extends SlotIterator<V> {
+    	@SuppressWarnings("unchecked")
+		@Override
+    	V element(long key, Object value) {
+    		return (V) value;
+    	}
+    }
+
+    private final class EntryIterator extends SlotIterator<Map.Entry<Long, V>> {
+    	@SuppressWarnings("unchecked")
+    	@Override
+    	Map.Entry<Long, V> element(long key, Object value) {
+    		return new AbstractMap.SimpleImmutableEntry<>(key, (V) value);
+    	}
+
+    	@Override
+    	public void remove() {
+    		throw new UnsupportedOperationException("Read-only view");
+    	}
+    }
+}
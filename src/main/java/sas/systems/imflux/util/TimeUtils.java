@@ -16,6 +16,8 @@
 
 package sas.systems.imflux.util;
 
+import java.math.BigInteger;
+
 /**
  * Provides methods for Time operations.
  * 
@@ -24,6 +26,10 @@ package sas.systems.imflux.util;
  */
 public abstract class TimeUtils {
 
+    // constants ------------------------------------------------------------------------------------------------------
+    /** seconds from 1 January 1900 (NTP epoch) to 1 January 1970 (Unix epoch) */
+    private static final long NTP_EPOCH_OFFSET = 2208988800L;
+
     // constructors ---------------------------------------------------------------------------------------------------
     private TimeUtils() {
     }
@@ -72,4 +78,18 @@ public abstract class TimeUtils {
     public static boolean hasExpiredMillis(long now, long eventTime, long timeBuffer) {
         return (eventTime + timeBuffer) < now;
     }
+
+    /**
+     * Converts an instant to the 64 bit NTP timestamp format used by RTCP sender reports: the seconds since 
+     * 1 January 1900 in the upper 32 bits and the fraction of the second in the lower 32 bits.
+     *
+     * @param millis Instant in milliseconds, as given by {@link #now()}.
+     *
+     * @return the NTP timestamp
+     */
+    public static BigInteger ntpTimestamp(long millis) {
+        final long seconds = (millis / 1000) + NTP_EPOCH_OFFSET;
+        final long fraction = ((millis % 1000) << 32) / 1000;
+        return BigInteger.valueOf(seconds).shiftLeft(32).or(BigInteger.valueOf(fraction));
+    }
 }
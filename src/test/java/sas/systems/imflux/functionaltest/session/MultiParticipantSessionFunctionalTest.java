@@ -19,6 +19,8 @@ package sas.systems.imflux.functionaltest.session;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,6 +31,9 @@ import org.junit.After;
 import org.junit.Test;
 
 import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.rtcp.ControlPacket;
+import sas.systems.imflux.packet.rtcp.ReceiverReportPacket;
+import sas.systems.imflux.packet.rtcp.SenderReportPacket;
 import sas.systems.imflux.participant.RtpParticipant;
 import sas.systems.imflux.participant.RtpParticipantInfo;
 import sas.systems.imflux.session.rtp.MultiParticipantSession;
@@ -234,4 +239,46 @@ public class MultiParticipantSessionFunctionalTest {
             assertEquals(((N - 1)/* * 2*/), counters[i].get());
         }
     }
+
+    /**
+     * Sends packets from a session with two receivers and checks that each packet is counted once for the sender
+     * report, not once per receiver.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSentPacketsCountedOnce() throws Exception {
+        final ReportingSession session = new ReportingSession(
+                RtpParticipant.createReceiver(new RtpParticipantInfo(0), "127.0.0.1", 10000, 10001));
+        this.sessions = new MultiParticipantSession[] {session};
+        assertTrue(session.init());
+        assertTrue(session.reports().get(0) instanceof ReceiverReportPacket);
+        for (int i = 1; i <= 2; i++) {
+            assertTrue(session.addReceiver(RtpParticipant.createReceiver(new RtpParticipantInfo(i), "127.0.0.1", 
+                                                                         10000 + (i * 2), 10001 + (i * 2))));
+        }
+
+        final byte[] deadbeef = {(byte) 0xde, (byte) 0xad, (byte) 0xbe, (byte) 0xef};
+        assertTrue(session.sendData(deadbeef, 0x45, false));
+        assertTrue(session.sendDataBatch(Arrays.asList(deadbeef, deadbeef, deadbeef), 0x46, true));
+        assertEquals(4, session.getSentPackets());
+        assertEquals(16, session.getSentBytes());
+
+        final ControlPacket report = session.reports().get(0);
+        assertTrue(report instanceof SenderReportPacket);
+        assertEquals(4, ((SenderReportPacket) report).getSenderPacketCount());
+        assertEquals(16, ((SenderReportPacket) report).getSenderOctetCount());
+    }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    private static class ReportingSession extends MultiParticipantSession {
+
+        ReportingSession(RtpParticipant localParticipant) {
+            super("reportingSession", 8, localParticipant);
+        }
+
+        List<ControlPacket> reports() {
+            return this.buildReportPackets(this.localParticipant.getSsrc(), this.getMtu());
+        }
+    }
 }
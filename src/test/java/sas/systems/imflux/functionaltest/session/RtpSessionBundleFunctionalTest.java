@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.functionaltest.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.participant.RtpParticipant;
+import sas.systems.imflux.participant.RtpParticipantInfo;
+import sas.systems.imflux.session.rtp.RtpSession;
+import sas.systems.imflux.session.rtp.RtpSessionBundle;
+import sas.systems.imflux.session.rtp.RtpSessionDataListener;
+import sas.systems.imflux.session.rtp.SingleParticipantSession;
+
+/**
+ * Functional test for the class {@link RtpSessionBundle}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class RtpSessionBundleFunctionalTest {
+
+    final private int PT_H263 = 34;
+    private RtpSessionBundle bundle;
+    private SingleParticipantSession peer1;
+    private SingleParticipantSession peer2;
+
+    /**
+     * Binds the bundle and both peers, which are not bundled and use rtcp-mux.
+     */
+    @Before
+    public void setUp() {
+        this.bundle = new RtpSessionBundle("Bundle", new InetSocketAddress("127.0.0.1", 8000));
+        assertTrue(this.bundle.init());
+
+        final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6000);
+        final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(10), "127.0.0.1", 8000, 8000);
+        this.peer1 = new SingleParticipantSession("Peer1", PT_H263, local1, remote1);
+        this.peer1.setRtcpMux(true);
+        assertTrue(this.peer1.init());
+
+        final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7000);
+        final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(20), "127.0.0.1", 8000, 8000);
+        this.peer2 = new SingleParticipantSession("Peer2", PT_H263, local2, remote2);
+        this.peer2.setRtcpMux(true);
+        assertTrue(this.peer2.init());
+    }
+
+    /**
+     * Terminates the peers and the bundle with all its sessions after each test-method.
+     */
+    @After
+    public void tearDown() {
+        this.peer1.terminate();
+        this.peer2.terminate();
+        this.bundle.terminate();
+    }
+
+    /**
+     * Sends packets from both peers to two sessions sharing the port of the bundle and checks that each session only
+     * receives the packets of its own peer.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRouteBySsrc() throws Exception {
+        final AtomicInteger fromPeer1 = new AtomicInteger();
+        final AtomicInteger fromPeer2 = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        final SingleParticipantSession session1 = createBundledSession("Session1", 10, 1, 6000);
+        session1.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                if (participant.getSsrc() == 1) {
+                    fromPeer1.incrementAndGet();
+                }
+                latch.countDown();
+            }
+        });
+        final SingleParticipantSession session2 = createBundledSession("Session2", 20, 2, 7000);
+        session2.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                if (participant.getSsrc() == 2) {
+                    fromPeer2.incrementAndGet();
+                }
+                latch.countDown();
+            }
+        });
+        this.peer1.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                latch.countDown();
+            }
+        });
+        assertEquals(2, this.bundle.getSessionCount());
+
+        assertTrue(this.peer1.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(this.peer2.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(session1.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(latch.await(2000L, TimeUnit.MILLISECONDS));
+
+        assertEquals(1, fromPeer1.get());
+        assertEquals(1, fromPeer2.get());
+
+        // terminated sessions are removed from the bundle, the others keep working
+        session1.terminate();
+        assertEquals(1, this.bundle.getSessionCount());
+        assertTrue(this.bundle.isRunning());
+    }
+
+    /**
+     * Sends packets with a SSRC unknown to the bundle, which have to be routed by their source address.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRouteByAddress() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // the session expects another SSRC from the second peer
+        final SingleParticipantSession session = createBundledSession("Session", 20, 99, 7000);
+        session.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(this.peer2.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(latch.await(2000L, TimeUnit.MILLISECONDS));
+        assertSame(session, this.bundle.getSession(2));
+    }
+
+    private SingleParticipantSession createBundledSession(String id, long localSsrc, long remoteSsrc, int remotePort) {
+        final RtpParticipant local = RtpParticipant.createReceiver(new RtpParticipantInfo(localSsrc),
+        		"127.0.0.1", 8000, 8000);
+        final RtpParticipant remote = RtpParticipant.createReceiver(new RtpParticipantInfo(remoteSsrc),
+        		"127.0.0.1", remotePort, remotePort);
+        final SingleParticipantSession session = new SingleParticipantSession(id, PT_H263, local, remote);
+        assertTrue(this.bundle.addSession(session));
+        return session;
+    }
+}
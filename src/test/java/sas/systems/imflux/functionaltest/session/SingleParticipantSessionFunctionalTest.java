@@ -22,6 +22,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -30,9 +32,19 @@ import org.junit.After;
 import org.junit.Test;
 
 import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.rtcp.AbstractReportPacket;
+import sas.systems.imflux.packet.rtcp.AppDataPacket;
+import sas.systems.imflux.packet.rtcp.ByePacket;
+import sas.systems.imflux.packet.rtcp.CompoundControlPacket;
+import sas.systems.imflux.packet.rtcp.ControlPacket;
+import sas.systems.imflux.packet.rtcp.SdesChunk;
+import sas.systems.imflux.packet.rtcp.SdesChunkItems;
+import sas.systems.imflux.packet.rtcp.SourceDescriptionPacket;
 import sas.systems.imflux.participant.RtpParticipant;
 import sas.systems.imflux.participant.RtpParticipantInfo;
+import sas.systems.imflux.session.SessionRuntime;
 import sas.systems.imflux.session.rtp.RtpSession;
+import sas.systems.imflux.session.rtp.RtpSessionControlListener;
 import sas.systems.imflux.session.rtp.RtpSessionDataListener;
 import sas.systems.imflux.session.rtp.RtpSessionEventAdapter;
 import sas.systems.imflux.session.rtp.SingleParticipantSession;
@@ -109,6 +121,250 @@ public class SingleParticipantSessionFunctionalTest {
         } catch (Exception e) {
             fail("Exception caught: " + e.getClass().getSimpleName() + " - " + e.getMessage());
         }
+        assertEquals(1, this.session1.getSentPackets());
+        assertEquals(4, this.session1.getSentBytes());
+    }
+
+    /**
+     * Creates both sessions on one shared {@link SessionRuntime} and makes sure terminating one of them neither stops
+     * the runtime nor the other session.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSendAndReceiveWithSharedRuntime() throws Exception {
+        final SessionRuntime runtime = new SessionRuntime(1);
+        final CountDownLatch latch = new CountDownLatch(2);
+        final CountDownLatch latch2 = new CountDownLatch(2);
+        try {
+            final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+            final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+            this.session1 = new SingleParticipantSession("Session1", PT_H263, local1, remote1, runtime);
+            assertTrue(this.session1.init());
+            this.session1.addDataListener(new RtpSessionDataListener() {
+                @Override
+                public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                    latch.countDown();
+                }
+            });
+
+            final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+            final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+            this.session2 = new SingleParticipantSession("Session2", PT_H263, local2, remote2, runtime);
+            this.session2.setDiscardOutOfOrder(false); // the replacing session starts with the same sequence numbers
+            assertTrue(this.session2.init());
+            this.session2.addDataListener(new RtpSessionDataListener() {
+                @Override
+                public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                    latch.countDown();
+                    latch2.countDown();
+                }
+            });
+
+            assertTrue(this.session1.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+            assertTrue(this.session2.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+            assertTrue(latch.await(2000L, TimeUnit.MILLISECONDS));
+
+            // terminating a session must leave the shared resources running
+            this.session1.terminate();
+            assertTrue(runtime.isRunning());
+            assertFalse(runtime.getEventLoopGroup().isShuttingDown());
+
+            final RtpParticipant local3 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+            final RtpParticipant remote3 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+            this.session1 = new SingleParticipantSession("Session3", PT_H263, local3, remote3, runtime);
+            assertTrue(this.session1.init());
+            assertTrue(this.session1.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 2, false));
+            assertTrue(latch2.await(2000L, TimeUnit.MILLISECONDS));
+        } finally {
+            tearDown();
+            this.session1 = null;
+            this.session2 = null;
+            runtime.shutdown();
+        }
+    }
+
+    /**
+     * Creates both sessions with the native epoll transport and two sockets per port. On platforms without epoll the
+     * sessions fall back to NIO and have to work the same way.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSendAndReceiveWithEpoll() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        this.session1 = new SingleParticipantSession("Session1", PT_H263, local1, remote1);
+        this.session1.setUseEpoll(true);
+        this.session1.setReusePortSockets(2);
+        assertTrue(this.session1.init());
+        this.session1.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                latch.countDown();
+            }
+        });
+
+        final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        this.session2 = new SingleParticipantSession("Session2", PT_H263, local2, remote2);
+        this.session2.setUseEpoll(true);
+        this.session2.setReusePortSockets(2);
+        assertTrue(this.session2.init());
+        this.session2.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(this.session1.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(this.session2.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(latch.await(2000L, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Creates both sessions with rtcp-mux enabled and checks that data and control packets are both received through
+     * the data port.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSendAndReceiveWithRtcpMux() throws Exception {
+        final CountDownLatch dataLatch = new CountDownLatch(2);
+        final CountDownLatch controlLatch = new CountDownLatch(1);
+
+        // second session is initialized first to receive the RTCP packets sent by the first one when joining
+        final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        this.session2 = new SingleParticipantSession("Session2", PT_H263, local2, remote2);
+        this.session2.setRtcpMux(true);
+        this.session2.setAutomatedRtcpHandling(false);
+        assertTrue(this.session2.init());
+        this.session2.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                dataLatch.countDown();
+            }
+        });
+        this.session2.addControlListener(new RtpSessionControlListener() {
+            @Override
+            public void controlPacketReceived(RtpSession session, CompoundControlPacket packet) {
+                System.err.println("Session 2 received control packet: " + packet);
+                controlLatch.countDown();
+            }
+
+            @Override
+            public void appDataReceived(RtpSession session, AppDataPacket appDataPacket) {
+            }
+        });
+
+        final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        this.session1 = new SingleParticipantSession("Session1", PT_H263, local1, remote1);
+        this.session1.setRtcpMux(true);
+        assertTrue(this.session1.init());
+        this.session1.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                dataLatch.countDown();
+            }
+        });
+
+        assertTrue(this.session1.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(this.session2.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, 1, false));
+        assertTrue(dataLatch.await(2000L, TimeUnit.MILLISECONDS));
+        assertTrue(controlLatch.await(2000L, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Sends the fragments of a frame as a batch and checks that they arrive with consecutive sequence numbers, the 
+     * same timestamp and only the last one marked.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSendDataBatch() throws Exception {
+        final int packets = 20;
+        final CountDownLatch latch = new CountDownLatch(packets);
+        final int[] sequenceNumbers = new int[packets];
+        final long[] timestamps = new long[packets];
+        final boolean[] markers = new boolean[packets];
+        final AtomicInteger received = new AtomicInteger();
+
+        final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        this.session1 = new SingleParticipantSession("Session1", PT_H263, local1, remote1);
+        assertTrue(this.session1.init());
+
+        final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        this.session2 = new SingleParticipantSession("Session2", PT_H263, local2, remote2);
+        this.session2.setReceiveBufferSize(packets * 1500);
+        assertTrue(this.session2.init());
+        this.session2.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                // received packets may be recycled after this call, only keep their header fields
+                final int i = received.getAndIncrement();
+                sequenceNumbers[i] = packet.getSequenceNumber();
+                timestamps[i] = packet.getTimestamp();
+                markers[i] = packet.hasMarker();
+                latch.countDown();
+            }
+        });
+
+        final List<byte[]> fragments = new ArrayList<>();
+        for (int i = 0; i < packets; i++) {
+            fragments.add(new byte[]{0x45, 0x45, 0x45, (byte) i});
+        }
+        assertTrue(this.session1.sendDataBatch(fragments, 3000, true));
+        assertTrue(latch.await(2000L, TimeUnit.MILLISECONDS));
+        assertEquals(packets, this.session1.getSentPackets());
+        assertEquals(packets * 4, this.session1.getSentBytes());
+
+        for (int i = 0; i < packets; i++) {
+            assertEquals(sequenceNumbers[0] + i, sequenceNumbers[i]);
+            assertEquals(3000, timestamps[i]);
+            assertEquals(i == (packets - 1), markers[i]);
+        }
+    }
+
+    /**
+     * Sends a burst of packets from a session with consolidated flushes, all of them have to arrive.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSendBurstWithConsolidatedFlushes() throws Exception {
+        final int packets = 50;
+        final CountDownLatch latch = new CountDownLatch(packets);
+
+        final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        this.session1 = new SingleParticipantSession("Session1", PT_H263, local1, remote1);
+        this.session1.setConsolidateFlushes(true);
+        assertTrue(this.session1.init());
+
+        final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        this.session2 = new SingleParticipantSession("Session2", PT_H263, local2, remote2);
+        // the default receive buffer only holds a single packet
+        this.session2.setReceiveBufferSize(packets * 1500);
+        assertTrue(this.session2.init());
+        this.session2.addDataListener(new RtpSessionDataListener() {
+            @Override
+            public void dataPacketReceived(RtpSession session, RtpParticipantInfo participant, DataPacket packet) {
+                latch.countDown();
+            }
+        });
+
+        for (int i = 0; i < packets; i++) {
+            assertTrue(this.session1.sendData(new byte[]{0x45, 0x45, 0x45, 0x45}, i, false));
+        }
+        assertTrue(latch.await(2000L, TimeUnit.MILLISECONDS));
     }
 
     /**
@@ -199,6 +455,108 @@ public class SingleParticipantSessionFunctionalTest {
         }
     }
 
+    /**
+     * Test for sending the periodic RTCP reports to the address the last control packet of the remote participant was
+     * received from, if its control port was set wrong.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSendReportsToLastControlOrigin() throws Exception {
+        final CountDownLatch reportLatch = new CountDownLatch(1);
+
+        // session 1 only listens for the RTCP packets of session 2
+        final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        this.session1 = new SingleParticipantSession("Session1", PT_H263, local1, remote1);
+        this.session1.setAutomatedRtcpHandling(false);
+        assertTrue(this.session1.init());
+        this.session1.addControlListener(new RtpSessionControlListener() {
+            @Override
+            public void controlPacketReceived(RtpSession session, CompoundControlPacket packet) {
+                System.err.println("Session 1 received control packet: " + packet);
+                for (ControlPacket controlPacket : packet.getControlPackets()) {
+                    if (controlPacket instanceof AbstractReportPacket) {
+                        reportLatch.countDown();
+                    }
+                }
+            }
+
+            @Override
+            public void appDataReceived(RtpSession session, AppDataPacket appDataPacket) {
+            }
+        });
+
+        // session 2 setup
+        final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 9000, 9001); // <-- note the other ports
+        this.session2 = new SingleParticipantSession("Session2", PT_H263, local2, remote2);
+        this.session2.setSendToLastOrigin(true);
+        assertTrue(this.session2.init());
+
+        // send a source description from session1 to allow resolving the ip/port issue
+        final SdesChunk chunk = new SdesChunk(local1.getSsrc());
+        chunk.addItem(SdesChunkItems.createCnameItem("session1@127.0.0.1"));
+        final SourceDescriptionPacket sdesPacket = new SourceDescriptionPacket();
+        sdesPacket.addItem(chunk);
+        assertTrue(this.session1.sendControlPacket(new CompoundControlPacket(sdesPacket)));
+
+        // the first report is sent after at most 2.5 * 1.5 / 1.21828 seconds, the timer has a tick of one second
+        assertTrue(reportLatch.await(6000L, TimeUnit.MILLISECONDS));
+        assertEquals("/127.0.0.1:6001", this.session2.getRemoteParticipant().getLastControlOrigin().toString());
+    }
+
+    /**
+     * Test for sending the BYE packet of a terminated session to the address the last control packet of the remote 
+     * participant was received from, if its control port was set wrong.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSendByeToLastControlOrigin() throws Exception {
+        final CountDownLatch byeLatch = new CountDownLatch(1);
+
+        // session 1 only listens for the RTCP packets of session 2
+        final RtpParticipant local1 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 6000, 6001);
+        final RtpParticipant remote1 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        this.session1 = new SingleParticipantSession("Session1", PT_H263, local1, remote1);
+        this.session1.setAutomatedRtcpHandling(false);
+        assertTrue(this.session1.init());
+        this.session1.addControlListener(new RtpSessionControlListener() {
+            @Override
+            public void controlPacketReceived(RtpSession session, CompoundControlPacket packet) {
+                System.err.println("Session 1 received control packet: " + packet);
+                for (ControlPacket controlPacket : packet.getControlPackets()) {
+                    if (controlPacket instanceof ByePacket) {
+                        byeLatch.countDown();
+                    }
+                }
+            }
+
+            @Override
+            public void appDataReceived(RtpSession session, AppDataPacket appDataPacket) {
+            }
+        });
+
+        // session 2 setup
+        final RtpParticipant local2 = RtpParticipant.createReceiver(new RtpParticipantInfo(2), "127.0.0.1", 7000, 7001);
+        final RtpParticipant remote2 = RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1", 9000, 9001); // <-- note the other ports
+        this.session2 = new SingleParticipantSession("Session2", PT_H263, local2, remote2);
+        this.session2.setSendToLastOrigin(true);
+        assertTrue(this.session2.init());
+
+        // send a source description from session1 to allow resolving the ip/port issue
+        final SdesChunk chunk = new SdesChunk(local1.getSsrc());
+        chunk.addItem(SdesChunkItems.createCnameItem("session1@127.0.0.1"));
+        final SourceDescriptionPacket sdesPacket = new SourceDescriptionPacket();
+        sdesPacket.addItem(chunk);
+        assertTrue(this.session1.sendControlPacket(new CompoundControlPacket(sdesPacket)));
+        Thread.sleep(500L);
+
+        this.session2.terminate();
+        assertTrue(byeLatch.await(2000L, TimeUnit.MILLISECONDS));
+    }
+
     /**
      * Test for ignoring packages from other remotes (with different SSRCs).
      * 
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.network.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sas.systems.imflux.network.DataPacketFilter;
+import sas.systems.imflux.network.udp.UdpDataFilterHandler;
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.DataPacketView;
+
+/**
+ * JUnit test for the class {@link UdpDataFilterHandler}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class UdpDataFilterHandlerTest {
+
+    private static final InetSocketAddress LOCAL = new InetSocketAddress("localhost", 8000);
+    private static final InetSocketAddress REMOTE = new InetSocketAddress("localhost", 9000);
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        this.channel = new EmbeddedChannel(new UdpDataFilterHandler(new DataPacketFilter() {
+            @Override
+            public boolean acceptDataPacket(SocketAddress origin, DataPacketView header) {
+                return header.getPayloadType() == 8;
+            }
+        }));
+    }
+
+    @After
+    public void tearDown() {
+        this.channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testAcceptedPacketIsForwarded() {
+        DatagramPacket datagram = datagram(8);
+        assertTrue(this.channel.writeInbound(datagram));
+
+        assertSame(datagram, this.channel.readInbound());
+        assertEquals(1, datagram.refCnt());
+        datagram.release();
+    }
+
+    @Test
+    public void testRejectedPacketIsReleased() {
+        DatagramPacket datagram = datagram(0);
+        assertFalse(this.channel.writeInbound(datagram));
+
+        assertNull(this.channel.readInbound());
+        assertEquals(0, datagram.refCnt());
+    }
+
+    @Test
+    public void testInvalidPacketIsReleased() {
+        DatagramPacket datagram = new DatagramPacket(Unpooled.wrappedBuffer(new byte[]{(byte) 0x80, 0x08}), LOCAL, REMOTE);
+        assertFalse(this.channel.writeInbound(datagram));
+
+        assertNull(this.channel.readInbound());
+        assertEquals(0, datagram.refCnt());
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private static DatagramPacket datagram(int payloadType) {
+        DataPacket packet = new DataPacket();
+        packet.setSsrc(0x45);
+        packet.setPayloadType(payloadType);
+        packet.setSequenceNumber(1);
+        packet.setData(new byte[]{0x01, 0x02, 0x03, 0x04});
+        return new DatagramPacket(packet.encode(), LOCAL, REMOTE);
+    }
+}
@@ -21,6 +21,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import sas.systems.imflux.packet.DataPacket;
 import sas.systems.imflux.packet.RtpVersion;
 import sas.systems.imflux.util.ByteUtils;
@@ -186,4 +189,127 @@ public class DataPacketTest {
         assertTrue(Arrays.equals(packet.getDataAsArray(), decoded.getDataAsArray()));
         System.out.println("decoded = " + decoded);
     }
+
+    @Test
+    public void testZeroCopyDecode() {
+        ByteBuf buffer = Unpooled.copiedBuffer(ALAW_RTP_PACKET_SAMPLE);
+        DataPacket packet = DataPacket.decode(buffer, true);
+        assertEquals(0, buffer.readableBytes());
+        assertEquals(6, packet.getDataSize());
+
+        // the payload is a view on the original buffer, holding its own reference
+        assertEquals(2, buffer.refCnt());
+        buffer.setByte(12, 0x42);
+        assertEquals(0x42, packet.getData().getByte(0));
+        assertEquals(6, packet.getDataAsArray().length);
+
+        buffer.release();
+        assertEquals(1, buffer.refCnt());
+        assertTrue(packet.release());
+        assertEquals(0, buffer.refCnt());
+    }
+
+    @Test
+    public void testCopyDecodeOutlivesRelease() {
+        DataPacket packet = DataPacket.decode(ALAW_RTP_PACKET_SAMPLE);
+        assertTrue(packet.release());
+        assertEquals(6, packet.getDataAsArray().length);
+        assertEquals((byte) 0xd5, packet.getDataAsArray()[0]);
+    }
+
+    @Test
+    public void testEncodeWithAllocator() {
+        DataPacket packet = new DataPacket();
+        packet.setMarker(true);
+        packet.setSsrc(0x45);
+        packet.setSequenceNumber(2);
+        packet.setPayloadType(8);
+        packet.setTimestamp(69);
+        packet.addContributingSourceId(0x46);
+        packet.setData(Unpooled.directBuffer().writeBytes(new byte[]{0x45, 0x45, 0x45, 0x45, 0x45}));
+
+        for (int fixedBlockSize : new int[]{0, 64}) {
+            ByteBuf expected = packet.encode(fixedBlockSize);
+            ByteBuf encoded = packet.encode(PooledByteBufAllocator.DEFAULT, fixedBlockSize);
+            assertTrue(ByteBufUtil.equals(expected, encoded));
+
+            // payload is referenced, not copied
+            assertEquals(2, packet.getData().refCnt());
+            encoded.release();
+            assertEquals(1, packet.getData().refCnt());
+        }
+    }
+
+    @Test
+    public void testPooledInstanceIsResetOnRelease() {
+        ByteBuf buffer = Unpooled.copiedBuffer(ALAW_RTP_PACKET_SAMPLE);
+        DataPacket packet = DataPacket.decodePooled(buffer);
+        assertEquals(0x1973, packet.getSequenceNumber());
+        assertEquals(2, buffer.refCnt());
+
+        assertTrue(packet.release());
+        assertEquals(1, buffer.refCnt());
+
+        DataPacket reused = DataPacket.newPooledInstance();
+        assertEquals(1, reused.refCnt());
+        assertEquals(0, reused.getSequenceNumber());
+        assertEquals(0, reused.getSsrc());
+        assertEquals(0, reused.getDataSize());
+        assertTrue(reused.release());
+    }
+
+    @Test
+    public void testContributingSources() {
+        DataPacket packet = new DataPacket();
+        assertEquals(0, packet.getContributingSourcesCount());
+        for (long i = 0; i < DataPacket.MAX_CONTRIBUTING_SOURCES; i++) {
+            packet.addContributingSourceId(0xffffff00L + i);
+        }
+        assertEquals(15, packet.getContributingSourcesCount());
+        assertEquals(0xffffff0eL, packet.getContributingSourceId(14));
+        assertEquals(Long.valueOf(0xffffff00L), packet.getContributingSourceIds().get(0));
+
+        DataPacket decoded = DataPacket.decode(packet.encode());
+        assertEquals(15, decoded.getContributingSourcesCount());
+        for (int i = 0; i < 15; i++) {
+            assertEquals(packet.getContributingSourceId(i), decoded.getContributingSourceId(i));
+        }
+    }
+
+    @Test
+    public void testContributingSourcesAndExtensionLayout() {
+        DataPacket packet = new DataPacket();
+        packet.setPayloadType(8);
+        packet.setSequenceNumber(1);
+        packet.setTimestamp(2);
+        packet.setSsrc(0x45);
+        packet.addContributingSourceId(0x11);
+        packet.addContributingSourceId(0x22);
+        packet.setExtensionHeader((short) 0xbede, new byte[]{0x01, 0x02, 0x03, 0x04});
+        packet.setData(new byte[]{(byte) 0xaa, (byte) 0xbb});
+
+        // the extension header follows the CSRC list (RFC 3550, section 5.3.1)
+        ByteBuf encoded = packet.encode();
+        assertEquals("92080001" + "00000002" + "00000045" + // V=2, X, CC=2, PT=8, sequence number, timestamp, SSRC
+                     "00000011" + "00000022" +               // CSRCs
+                     "bede0001" + "01020304" +               // extension header
+                     "aabb",                                 // payload
+                     ByteBufUtil.hexDump(encoded));
+
+        DataPacket decoded = DataPacket.decode(encoded);
+        assertEquals(2, decoded.getContributingSourcesCount());
+        assertEquals(0x11, decoded.getContributingSourceId(0));
+        assertEquals(0x22, decoded.getContributingSourceId(1));
+        assertEquals((short) 0xbede, decoded.getExtensionHeaderData());
+        assertTrue(Arrays.equals(new byte[]{0x01, 0x02, 0x03, 0x04}, decoded.getExtensionData()));
+        assertTrue(Arrays.equals(new byte[]{(byte) 0xaa, (byte) 0xbb}, decoded.getDataAsArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyContributingSources() {
+        DataPacket packet = new DataPacket();
+        for (int i = 0; i <= DataPacket.MAX_CONTRIBUTING_SOURCES; i++) {
+            packet.addContributingSourceId(i);
+        }
+    }
 }
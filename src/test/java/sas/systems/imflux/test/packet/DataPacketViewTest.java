@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.DataPacketView;
+import sas.systems.imflux.util.ByteUtils;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for the class {@link DataPacketView}.
+ * 
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class DataPacketViewTest {
+
+    @Test
+    public void testReadHeaderFields() {
+        ByteBuf buffer = Unpooled.wrappedBuffer(ByteUtils.convertHexStringToByteArray(DataPacketTest.H263_PACKET));
+        DataPacket packet = DataPacket.decode(buffer.duplicate());
+        DataPacketView view = new DataPacketView().wrap(buffer);
+
+        assertTrue(view.isValid());
+        assertEquals(packet.getVersion(), view.getVersion());
+        assertEquals(packet.hasMarker(), view.hasMarker());
+        assertEquals(packet.hasExtension(), view.hasExtension());
+        assertEquals(packet.getPayloadType(), view.getPayloadType());
+        assertEquals(packet.getSequenceNumber(), view.getSequenceNumber());
+        assertEquals(packet.getTimestamp(), view.getTimestamp());
+        assertEquals(packet.getSsrc(), view.getSsrc());
+        assertEquals(packet.getHeaderSize(), view.getHeaderSize());
+        // the view does not consume the buffer
+        assertEquals(0, buffer.readerIndex());
+    }
+
+    @Test
+    public void testContributingSourcesAndDecode() {
+        DataPacket packet = new DataPacket();
+        packet.setSsrc(0x45);
+        packet.setSequenceNumber(0xfffe);
+        packet.setPayloadType(96);
+        packet.addContributingSourceId(0xffffffffL);
+        packet.addContributingSourceId(0x47);
+        packet.setExtensionHeader((short) 1, new byte[]{1, 2, 3, 4});
+        packet.setData(new byte[]{0x45, 0x45});
+
+        DataPacketView view = new DataPacketView().wrap(packet.encode());
+        assertTrue(view.isValid());
+        assertEquals(2, view.getContributingSourcesCount());
+        assertEquals(0xffffffffL, view.getContributingSourceId(0));
+        assertEquals(0x47, view.getContributingSourceId(1));
+        assertEquals(0xfffe, view.getSequenceNumber());
+        assertEquals(packet.getHeaderSize(), view.getHeaderSize());
+
+        DataPacket decoded = view.toDataPacket(false);
+        assertEquals(packet.getSsrc(), decoded.getSsrc());
+        assertEquals(2, decoded.getDataSize());
+    }
+
+    @Test
+    public void testTruncatedPacketIsInvalid() {
+        DataPacketView view = new DataPacketView();
+        assertFalse(view.isValid());
+        assertFalse(view.wrap(Unpooled.wrappedBuffer(new byte[]{(byte) 0x80, 0x08, 0x00})).isValid());
+        // CSRC count of 15, but no CSRCs
+        byte[] header = new byte[12];
+        header[0] = (byte) 0x8f;
+        assertFalse(view.wrap(Unpooled.wrappedBuffer(header)).isValid());
+    }
+
+    @Test
+    public void testTruncatedExtensionIsInvalid() {
+        // extension bit set, but the datagram ends within the extension header
+        ByteBuf buffer = Unpooled.buffer(64);
+        buffer.writeByte(0x90);
+        buffer.writeZero(13);
+        // garbage after the end of the datagram must not be read as extension length
+        buffer.setShort(buffer.writerIndex(), 0x0001);
+        DataPacketView view = new DataPacketView().wrap(buffer);
+        assertFalse(view.isValid());
+
+        try {
+            view.getHeaderSize();
+            fail("IndexOutOfBoundsException expected");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        // with the extension header but without the announced extension
+        buffer.writeZero(2);
+        buffer.setShort(14, 1);
+        assertFalse(view.isValid());
+        buffer.writeZero(4);
+        assertTrue(view.isValid());
+    }
+}
@@ -21,18 +21,23 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import io.netty.util.HashedWheelTimer;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import sas.systems.imflux.packet.DataPacket;
 import sas.systems.imflux.packet.rtcp.SdesChunk;
+import sas.systems.imflux.packet.rtcp.SdesChunkItems;
 import sas.systems.imflux.participant.DefaultParticipantDatabase;
 import sas.systems.imflux.participant.ParticipantEventListener;
 import sas.systems.imflux.participant.ParticipantOperation;
@@ -94,6 +99,37 @@ public class DefaultParticipantDatabaseTest {
         assertTrue(doSomething.get());
     }
 
+    @Test
+    public void testDoWithReceiversSkipsLeftReceivers() throws Exception {
+        RtpParticipant leaving = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        leaving.getInfo().setCname("leaving@localhost");
+        final RtpParticipant staying = RtpParticipant.createReceiver("localhost", 8002, 8003);
+        staying.getInfo().setCname("staying@localhost");
+        assertTrue(this.database.addReceiver(leaving));
+        assertTrue(this.database.addReceiver(staying));
+
+        leaving.byeReceived();
+        this.database.participantLeft(leaving);
+        final AtomicInteger operations = new AtomicInteger();
+        this.database.doWithReceivers(new ParticipantOperation() {
+            public void doWithParticipant(RtpParticipant participant) throws Exception {
+                assertSame(staying, participant);
+                operations.incrementAndGet();
+            }
+        });
+        assertEquals(1, operations.get());
+        // the receiver is still known until it expires
+        assertEquals(2, this.database.getReceiverCount());
+
+        assertTrue(this.database.removeReceiver(staying));
+        this.database.doWithReceivers(new ParticipantOperation() {
+            public void doWithParticipant(RtpParticipant participant) throws Exception {
+                operations.incrementAndGet();
+            }
+        });
+        assertEquals(1, operations.get());
+    }
+
     @Test
     public void testRemoveReceiver() throws Exception {
         RtpParticipant participant = RtpParticipant.createReceiver("localhost", 8000, 8001);
@@ -208,6 +244,118 @@ public class DefaultParticipantDatabaseTest {
         assertEquals(0, this.listener.getDeletions());
     }
 
+    @Test
+    public void testAssociationOfParticipantViaCname() throws Exception {
+        RtpParticipant receiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        assertTrue(this.database.addReceiver(receiver));
+        // the CNAME is changed after the receiver was added
+        receiver.getInfo().setCname("receiver@localhost");
+        this.database.participantUpdated(receiver);
+
+        SdesChunk chunk = new SdesChunk(0x45);
+        chunk.addItem(SdesChunkItems.createCnameItem("receiver@localhost"));
+        SocketAddress address = new InetSocketAddress("localhost", 9001);
+
+        RtpParticipant participant = this.database.getOrCreateParticipantFromSdesChunk(address, chunk);
+        assertSame(receiver, participant);
+        assertEquals(0x45, participant.getSsrc());
+        assertEquals(0, this.listener.getSdesCreations());
+    }
+
+    @Test
+    public void testNonAssociationOfRemovedReceiver() throws Exception {
+        RtpParticipant receiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        receiver.getInfo().setCname("receiver@localhost");
+        RtpParticipant otherReceiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        otherReceiver.getInfo().setCname("other@localhost");
+        assertTrue(this.database.addReceiver(receiver));
+        assertTrue(this.database.addReceiver(otherReceiver));
+        assertTrue(this.database.removeReceiver(receiver));
+
+        DataPacket packet = new DataPacket();
+        packet.setSsrc(0x45);
+        SocketAddress address = new InetSocketAddress("localhost", 8000);
+
+        // the remaining receiver with the same address is found
+        RtpParticipant participant = this.database.getOrCreateParticipantFromDataPacket(address, packet);
+        assertSame(otherReceiver, participant);
+
+        // a new receiver with the addresses of the member reuses the member
+        RtpParticipant newReceiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        newReceiver.getInfo().setCname("new@localhost");
+        assertTrue(this.database.addReceiver(newReceiver));
+        assertEquals(2, this.database.getReceiverCount());
+        for (RtpParticipant each : this.database.getReceivers()) {
+            assertSame(otherReceiver, each);
+        }
+    }
+
+    @Test
+    public void testExpiryOnTimer() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        try {
+            DefaultParticipantDatabase database = new DefaultParticipantDatabase("testDatabase", this.listener, timer);
+            database.setTimeoutAfterByeAndNoPacketsReceived(1);
+            database.setTimeoutAfterNoPacketsReceived(2);
+
+            DataPacket packet = new DataPacket();
+            packet.setSsrc(0x45);
+            RtpParticipant leaving = database.getOrCreateParticipantFromDataPacket(
+                    new InetSocketAddress("localhost", 8000), packet);
+            packet.setSsrc(0x46);
+            RtpParticipant inactive = database.getOrCreateParticipantFromDataPacket(
+                    new InetSocketAddress("localhost", 9000), packet);
+            assertEquals(2, database.getParticipantCount());
+
+            leaving.packetReceived();
+            leaving.byeReceived();
+            database.participantLeft(leaving);
+            // cleanup is not needed, the participants expire on their own
+            database.cleanup();
+            Thread.sleep(1500);
+            assertEquals(1, database.getParticipantCount());
+            assertNull(database.getParticipant(0x45));
+            assertSame(inactive, database.getParticipant(0x46));
+            assertEquals(1, this.listener.getDeletions());
+
+            Thread.sleep(1500);
+            assertEquals(0, database.getParticipantCount());
+            assertEquals(2, this.listener.getDeletions());
+            database.close();
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testSsrcChangeOfReceiver() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        try {
+            DefaultParticipantDatabase database = new DefaultParticipantDatabase("testDatabase", this.listener, timer);
+            database.setTimeoutAfterNoPacketsReceived(1);
+            RtpParticipant receiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+            assertTrue(database.addReceiver(receiver));
+
+            DataPacket packet = new DataPacket();
+            packet.setSsrc(0x45);
+            SocketAddress address = new InetSocketAddress("localhost", 8000);
+            assertSame(receiver, database.getOrCreateParticipantFromDataPacket(address, packet));
+            // the receiver changes its SSRC, the previous one must not be kept
+            packet.setSsrc(0x46);
+            assertSame(receiver, database.getOrCreateParticipantFromDataPacket(address, packet));
+            assertEquals(1, database.getParticipantCount());
+            assertNull(database.getParticipant(0x45));
+            assertSame(receiver, database.getParticipant(0x46));
+
+            Thread.sleep(1500);
+            assertEquals(0, database.getParticipantCount());
+            assertEquals(1, this.listener.getDeletions());
+            database.close();
+        } finally {
+            timer.stop();
+        }
+    }
+
 //    @Test
 //    public void testCleanup() throws Exception {
 //    }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.participant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sas.systems.imflux.participant.ExtendedSequenceTracker;
+import sas.systems.imflux.participant.ExtendedSequenceTracker.Result;
+
+/**
+ * JUnit test for the class {@link ExtendedSequenceTracker}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class ExtendedSequenceTrackerTest {
+
+    private ExtendedSequenceTracker tracker;
+
+    @Before
+    public void setUp() throws Exception {
+        this.tracker = new ExtendedSequenceTracker();
+    }
+
+    @Test
+    public void testProbation() throws Exception {
+        assertEquals(Result.PROBATION, this.tracker.update(10));
+        // not sequential, the probation starts again
+        assertEquals(Result.PROBATION, this.tracker.update(20));
+        assertFalse(this.tracker.isValid());
+        assertEquals(Result.RESTARTED, this.tracker.update(21));
+        assertTrue(this.tracker.isValid());
+        assertEquals(21, this.tracker.getBaseSequenceNumber());
+        assertEquals(Result.IN_ORDER, this.tracker.update(22));
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        this.tracker.update(65534);
+        this.tracker.update(65535);
+        assertEquals(Result.IN_ORDER, this.tracker.update(0));
+        assertEquals(Result.IN_ORDER, this.tracker.update(2));
+        assertEquals(Result.REORDERED, this.tracker.update(1));
+        assertEquals(Result.REORDERED, this.tracker.update(65535));
+        assertEquals(Result.REORDERED, this.tracker.update(2));
+        assertEquals(65536 + 2, this.tracker.getExtendedHighestSequenceNumber());
+
+        // the whole cycle, in order
+        for (int seq = 3; seq < (65536 + 3); seq++) {
+            assertEquals(Result.IN_ORDER, this.tracker.update(seq & 0xffff));
+        }
+        assertEquals((2 * 65536) + 2, this.tracker.getExtendedHighestSequenceNumber());
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        this.tracker.update(1000);
+        this.tracker.update(1001);
+
+        // a single large jump is not accepted
+        assertEquals(Result.INVALID, this.tracker.update(40000));
+        assertEquals(Result.IN_ORDER, this.tracker.update(1002));
+
+        // two sequential packets after a jump restart the sequence
+        assertEquals(Result.INVALID, this.tracker.update(5));
+        assertEquals(Result.RESTARTED, this.tracker.update(6));
+        assertEquals(6, this.tracker.getBaseSequenceNumber());
+        assertEquals(6, this.tracker.getExtendedHighestSequenceNumber());
+        assertEquals(Result.IN_ORDER, this.tracker.update(7));
+    }
+
+    @Test
+    public void testIsReordered() throws Exception {
+        assertFalse(ExtendedSequenceTracker.isReordered(0, -1));
+        assertFalse(ExtendedSequenceTracker.isReordered(0, 65535));
+        assertFalse(ExtendedSequenceTracker.isReordered(40000, 10));
+        assertTrue(ExtendedSequenceTracker.isReordered(65535, 0));
+        assertTrue(ExtendedSequenceTracker.isReordered(10, 10));
+        assertTrue(ExtendedSequenceTracker.isReordered(9, 10));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.participant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.rtcp.ReceptionReport;
+import sas.systems.imflux.participant.ReceptionStatistics;
+
+/**
+ * JUnit test for the class {@link ReceptionStatistics}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class ReceptionStatisticsTest {
+
+    private static final int CLOCK_RATE = 90000;
+    private static final long MILLIS = 1000000L;
+
+    private ReceptionStatistics statistics;
+    private DataPacket packet;
+
+    @Before
+    public void setUp() throws Exception {
+        this.statistics = new ReceptionStatistics();
+        this.packet = new DataPacket();
+        this.packet.setData(new byte[10]);
+    }
+
+    @Test
+    public void testLoss() throws Exception {
+        // the first packet only starts the validation of the source
+        this.receive(100, 0, 0);
+        assertFalse(this.statistics.hasReceivedPackets());
+        for (int seq = 101; seq < 110; seq++) {
+            if (seq != 105) {
+                this.receive(seq, seq * 90, seq * MILLIS);
+            }
+        }
+        assertTrue(this.statistics.hasReceivedPackets());
+        assertEquals(8, this.statistics.getReceivedPackets());
+        assertEquals(80, this.statistics.getReceivedBytes());
+
+        ReceptionReport block = new ReceptionReport();
+        this.statistics.updateReceptionReport(block, 0);
+        assertEquals(109, block.getExtendedHighestSequenceNumberReceived());
+        assertEquals(1, block.getCumulativeNumberOfPacketsLost());
+        assertEquals((1 << 8) / 9, block.getFractionLost());
+        assertEquals(0, block.getInterArrivalJitter());
+
+        // the next interval has no loss
+        this.receive(110, 110 * 90, 110 * MILLIS);
+        this.statistics.updateReceptionReport(block, 0);
+        assertEquals(110, block.getExtendedHighestSequenceNumberReceived());
+        assertEquals(1, block.getCumulativeNumberOfPacketsLost());
+        assertEquals(0, block.getFractionLost());
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        this.receive(65533, 0, 0);
+        this.receive(65534, 90, MILLIS);
+        this.receive(65535, 180, 2 * MILLIS);
+        this.receive(0, 270, 3 * MILLIS);
+        this.receive(1, 360, 4 * MILLIS);
+        // reordered packet
+        this.receive(65535, 180, 5 * MILLIS);
+
+        ReceptionReport block = new ReceptionReport();
+        this.statistics.updateReceptionReport(block, 0);
+        assertEquals(65536 + 1, block.getExtendedHighestSequenceNumberReceived());
+        assertEquals(0, block.getCumulativeNumberOfPacketsLost());
+        assertEquals(0, block.getFractionLost());
+    }
+
+    @Test
+    public void testJitter() throws Exception {
+        for (int seq = 0; seq < 10; seq++) {
+            this.receive(seq, seq * 90, seq * MILLIS);
+        }
+        assertEquals(0, this.statistics.getJitter());
+
+        // delayed by 10ms, i.e. 900 timestamp units
+        this.receive(10, 10 * 90, 20 * MILLIS);
+        assertEquals(900 / 16, this.statistics.getJitter());
+    }
+
+    @Test
+    public void testSenderReport() throws Exception {
+        this.receive(0, 0, 0);
+        this.receive(1, 90, MILLIS);
+
+        ReceptionReport block = new ReceptionReport();
+        this.statistics.updateReceptionReport(block, 0);
+        assertEquals(0, block.getLastSenderReport());
+        assertEquals(0, block.getDelaySinceLastSenderReport());
+
+        this.statistics.senderReportReceived(0x0001234567890000L, 5 * MILLIS);
+        this.statistics.updateReceptionReport(block, 1005 * MILLIS);
+        assertEquals(0x23456789L, block.getLastSenderReport());
+        assertEquals(65536, block.getDelaySinceLastSenderReport());
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private void receive(int sequenceNumber, long timestamp, long arrivalNanos) {
+        this.packet.setSequenceNumber(sequenceNumber);
+        this.packet.setTimestamp(timestamp);
+        this.statistics.packetReceived(this.packet, arrivalNanos, CLOCK_RATE);
+    }
+}
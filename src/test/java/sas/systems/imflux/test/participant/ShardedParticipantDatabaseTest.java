@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.participant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.rtcp.SdesChunk;
+import sas.systems.imflux.packet.rtcp.SdesChunkItems;
+import sas.systems.imflux.participant.ParticipantEventListener;
+import sas.systems.imflux.participant.ParticipantOperation;
+import sas.systems.imflux.participant.RtpParticipant;
+import sas.systems.imflux.participant.ShardedParticipantDatabase;
+
+/**
+ * JUnit test for the class {@link ShardedParticipantDatabase}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class ShardedParticipantDatabaseTest {
+
+    private ForkJoinPool pool;
+    private ShardedParticipantDatabase database;
+    private AtomicInteger deletions;
+
+    @Before
+    public void setUp() throws Exception {
+        this.pool = new ForkJoinPool(4);
+        this.deletions = new AtomicInteger();
+        this.database = new ShardedParticipantDatabase("testDatabase", new ParticipantEventListener() {
+            public void participantCreatedFromSdesChunk(RtpParticipant participant) {
+            }
+
+            public void participantCreatedFromDataPacket(RtpParticipant participant) {
+            }
+
+            public void participantDeleted(RtpParticipant participant) {
+                deletions.incrementAndGet();
+            }
+        }, 10, this.pool);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.pool.shutdown();
+    }
+
+    @Test
+    public void testShardCount() throws Exception {
+        assertEquals(16, this.database.getShardCount());
+    }
+
+    @Test
+    public void testMembersInAllShards() throws Exception {
+        DataPacket packet = new DataPacket();
+        for (int ssrc = 0; ssrc < 1000; ssrc++) {
+            packet.setSsrc(ssrc);
+            this.database.getOrCreateParticipantFromDataPacket(new InetSocketAddress("localhost", 10000 + ssrc),
+                    packet);
+        }
+        assertEquals(1000, this.database.getParticipantCount());
+        assertEquals(0, this.database.getReceiverCount());
+
+        Map<Long, RtpParticipant> members = this.database.getMembers();
+        assertEquals(1000, members.size());
+        assertEquals(1000, members.entrySet().size());
+        for (Map.Entry<Long, RtpParticipant> entry : members.entrySet()) {
+            assertEquals(entry.getKey().longValue(), entry.getValue().getSsrc());
+            assertSame(entry.getValue(), this.database.getParticipant(entry.getKey()));
+        }
+        assertNull(members.get(1000L));
+
+        final AtomicInteger operations = new AtomicInteger();
+        this.database.doWithParticipants(new ParticipantOperation() {
+            public void doWithParticipant(RtpParticipant participant) throws Exception {
+                operations.incrementAndGet();
+            }
+        });
+        assertEquals(1000, operations.get());
+    }
+
+    @Test
+    public void testAssociationOfReceivers() throws Exception {
+        RtpParticipant dataReceiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        dataReceiver.getInfo().setCname("data@localhost");
+        RtpParticipant sdesReceiver = RtpParticipant.createReceiver("localhost", 9000, 9001);
+        sdesReceiver.getInfo().setCname("sdes@localhost");
+        assertTrue(this.database.addReceiver(dataReceiver));
+        assertTrue(this.database.addReceiver(sdesReceiver));
+
+        DataPacket packet = new DataPacket();
+        packet.setSsrc(0x45);
+        SocketAddress address = new InetSocketAddress("localhost", 8000);
+        assertSame(dataReceiver, this.database.getOrCreateParticipantFromDataPacket(address, packet));
+
+        SdesChunk chunk = new SdesChunk(0x46);
+        chunk.addItem(SdesChunkItems.createCnameItem("sdes@localhost"));
+        address = new InetSocketAddress("localhost", 7001);
+        assertSame(sdesReceiver, this.database.getOrCreateParticipantFromSdesChunk(address, chunk));
+
+        assertEquals(2, this.database.getParticipantCount());
+        assertEquals(2, this.database.getReceiverCount());
+
+        // a receiver with the addresses of a member reuses the member
+        RtpParticipant receiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        receiver.getInfo().setCname("other@localhost");
+        assertTrue(this.database.addReceiver(receiver));
+        assertEquals(3, this.database.getReceiverCount());
+        assertTrue(this.database.getReceivers().contains(dataReceiver));
+        assertFalse(this.database.removeReceiver(RtpParticipant.createReceiver("localhost", 8002, 8003)));
+    }
+
+    @Test
+    public void testSsrcChangeOfReceiver() throws Exception {
+        this.database.setTimeoutAfterNoPacketsReceived(0);
+        RtpParticipant receiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        assertTrue(this.database.addReceiver(receiver));
+
+        DataPacket packet = new DataPacket();
+        SocketAddress address = new InetSocketAddress("localhost", 8000);
+        // the receiver changes its SSRC several times, so it moves between shards
+        for (int ssrc = 0x45; ssrc < 0x55; ssrc++) {
+            packet.setSsrc(ssrc);
+            assertSame(receiver, this.database.getOrCreateParticipantFromDataPacket(address, packet));
+            assertEquals(1, this.database.getParticipantCount());
+            assertNull(this.database.getParticipant(ssrc - 1));
+            assertSame(receiver, this.database.getParticipant(ssrc));
+        }
+        assertEquals(1, this.database.getMembers().size());
+
+        receiver.packetReceived();
+        Thread.sleep(10);
+        this.database.cleanup();
+        assertEquals(0, this.database.getParticipantCount());
+        assertEquals(1, this.deletions.get());
+    }
+
+    @Test
+    public void testParallelCleanup() throws Exception {
+        this.database.setTimeoutAfterByeAndNoPacketsReceived(0);
+        RtpParticipant receiver = RtpParticipant.createReceiver("localhost", 8000, 8001);
+        assertTrue(this.database.addReceiver(receiver));
+
+        DataPacket packet = new DataPacket();
+        for (int ssrc = 0; ssrc < 100; ssrc++) {
+            packet.setSsrc(ssrc);
+            RtpParticipant participant = this.database.getOrCreateParticipantFromDataPacket(
+                    new InetSocketAddress("localhost", 8000 + (ssrc * 2)), packet);
+            participant.packetReceived();
+            if ((ssrc % 2) == 0) {
+                participant.byeReceived();
+                this.database.participantLeft(participant);
+            }
+        }
+        assertSame(receiver, this.database.getParticipant(0));
+
+        final AtomicInteger operations = new AtomicInteger();
+        this.database.doWithReceivers(new ParticipantOperation() {
+            public void doWithParticipant(RtpParticipant participant) throws Exception {
+                operations.incrementAndGet();
+            }
+        });
+        // the receiver left
+        assertEquals(0, operations.get());
+
+        this.database.cleanup();
+        assertEquals(50, this.database.getParticipantCount());
+        assertEquals(50, this.deletions.get());
+        assertEquals(0, this.database.getReceiverCount());
+        for (int ssrc = 0; ssrc < 100; ssrc++) {
+            assertEquals((ssrc % 2) != 0, this.database.getParticipant(ssrc) != null);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.session.rtp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import io.netty.buffer.ByteBuf;
+
+import org.junit.Test;
+
+import sas.systems.imflux.packet.rtcp.SourceDescriptionPacket;
+import sas.systems.imflux.participant.RtpParticipant;
+import sas.systems.imflux.participant.RtpParticipantInfo;
+import sas.systems.imflux.session.rtp.MultiParticipantSession;
+
+/**
+ * JUnit test for the cached {@link SourceDescriptionPacket} of the local participant.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class EncodedSdesPacketTest {
+
+    @Test
+    public void testCachedUntilModified() throws Exception {
+        final RtpParticipantInfo info = new RtpParticipantInfo(1);
+        info.setCname("local@127.0.0.1");
+        final SdesSession session = new SdesSession(info);
+
+        final ByteBuf first = session.sdes(1);
+        final ByteBuf second = session.sdes(1);
+        // both are views of the same cached buffer
+        assertEquals(first.unwrap(), second.unwrap());
+        assertEquals(first, second);
+        second.release();
+
+        info.setName("local participant");
+        final ByteBuf modified = session.sdes(1);
+        assertNotEquals(first.unwrap(), modified.unwrap());
+        assertNotEquals(first, modified);
+        first.release();
+
+        final ByteBuf otherSsrc = session.sdes(2);
+        assertNotEquals(modified, otherSsrc);
+        modified.release();
+        otherSsrc.release();
+    }
+
+    @Test
+    public void testModificationCount() throws Exception {
+        final RtpParticipantInfo info = new RtpParticipantInfo(1);
+        final int initial = info.getModificationCount();
+        info.setNote("note");
+        info.setPriv("prefix", "value");
+        assertEquals(initial + 2, info.getModificationCount());
+        info.setSsrc(2);
+        assertEquals(initial + 3, info.getModificationCount());
+    }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    private static class SdesSession extends MultiParticipantSession {
+
+        SdesSession(RtpParticipantInfo info) {
+            super("sdesSession", 8, RtpParticipant.createReceiver(info, "127.0.0.1", 6000, 6001));
+        }
+
+        ByteBuf sdes(long ssrc) {
+            return this.encodedSdesPacket(ssrc);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.session.rtp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.participant.ExtendedSequenceTracker;
+import sas.systems.imflux.session.rtp.JitterBuffer;
+import sas.systems.imflux.util.TimeUtils;
+
+/**
+ * JUnit test for the class {@link JitterBuffer}. The playout delay is long enough for the scheduled deadlines not to
+ * expire during a test, the deadlines are simulated by calling {@link JitterBuffer#releaseExpired(long)}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class JitterBufferTest {
+
+    private static final long DELAY = 10000;
+    private static final long MILLIS = 1000000L;
+
+    private ScheduledExecutorService executor;
+    private List<Integer> released;
+    private JitterBuffer buffer;
+    private long start;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.released = new ArrayList<>();
+        this.buffer = new JitterBuffer(6, DELAY, new JitterBuffer.PacketHandler() {
+            @Override
+            public void packetReleased(DataPacket packet) {
+                released.add(packet.getSequenceNumber());
+            }
+        }, this.executor);
+        this.start = TimeUtils.nowNanos();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.buffer.clear();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        assertEquals(8, this.buffer.getCapacity());
+        assertEquals(DELAY, this.buffer.getPlayoutDelay());
+    }
+
+    @Test
+    public void testReorder() throws Exception {
+        this.offer(10, 0);
+        this.offer(12, 1);
+        this.offer(13, 2);
+        assertEquals(Arrays.asList(10), this.released);
+        assertEquals(2, this.buffer.size());
+
+        this.offer(11, 3);
+        assertEquals(Arrays.asList(10, 11, 12, 13), this.released);
+        assertEquals(0, this.buffer.size());
+
+        // duplicate of a released packet
+        assertFalse(this.offer(12, ExtendedSequenceTracker.Result.REORDERED, 4));
+        assertEquals(1, this.buffer.getLatePackets());
+    }
+
+    @Test
+    public void testPlayoutDelay() throws Exception {
+        this.offer(65534, 0);
+        this.offer(0, 1);
+        this.offer(2, 2);
+
+        this.buffer.releaseExpired(this.start + ((DELAY - 1) * MILLIS));
+        assertEquals(Arrays.asList(65534), this.released);
+
+        // the delay of the packet 0 expired, 65535 is considered lost
+        this.buffer.releaseExpired(this.start + ((DELAY + 1) * MILLIS));
+        assertEquals(Arrays.asList(65534, 0), this.released);
+        assertEquals(1, this.buffer.size());
+
+        // too late
+        assertFalse(this.offer(65535, ExtendedSequenceTracker.Result.REORDERED, 3));
+        this.offer(1, 4);
+        assertEquals(Arrays.asList(65534, 0, 1, 2), this.released);
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        this.offer(100, 0);
+        for (int seq = 102; seq < 109; seq++) {
+            if (seq != 105) {
+                this.offer(seq, seq);
+            }
+        }
+        assertEquals(Arrays.asList(100), this.released);
+
+        // does not fit into the ring anymore, 101 is skipped
+        this.offer(110, 110);
+        assertEquals(Arrays.asList(100, 102, 103, 104), this.released);
+        assertEquals(4, this.buffer.size());
+    }
+
+    @Test
+    public void testRestartedSource() throws Exception {
+        this.offer(30000, 0);
+        this.offer(30002, 1);
+        assertTrue(this.offer(5, ExtendedSequenceTracker.Result.RESTARTED, 2));
+        assertEquals(Arrays.asList(30000, 30002, 5), this.released);
+        assertEquals(0, this.buffer.size());
+    }
+
+    @Test
+    public void testLatePacketBeyondCapacity() throws Exception {
+        for (int seq = 100; seq < 120; seq++) {
+            this.offer(seq, seq);
+        }
+        this.offer(121, 121);
+        assertEquals(1, this.buffer.size());
+
+        // a reordered packet further behind than the capacity must neither be released nor reset the buffer
+        assertFalse(this.offer(105, ExtendedSequenceTracker.Result.REORDERED, 122));
+        assertEquals(1, this.buffer.getLatePackets());
+        assertEquals(1, this.buffer.size());
+
+        this.offer(120, 123);
+        assertEquals(22, this.released.size());
+        for (int i = 0; i < this.released.size(); i++) {
+            assertEquals(100 + i, this.released.get(i).intValue());
+        }
+        assertEquals(0, this.buffer.size());
+    }
+
+    @Test
+    public void testInvalidJump() throws Exception {
+        this.offer(100, 0);
+        this.offer(102, 1);
+
+        // a single jump does not skip the held packets
+        assertFalse(this.offer(5000, ExtendedSequenceTracker.Result.INVALID, 2));
+        assertEquals(Arrays.asList(100), this.released);
+        assertEquals(1, this.buffer.size());
+
+        this.offer(101, 3);
+        assertEquals(Arrays.asList(100, 101, 102), this.released);
+    }
+
+    @Test
+    public void testHandlerCalledWithoutLock() throws Exception {
+        final List<Integer> released = new ArrayList<>();
+        final List<Boolean> locked = new ArrayList<>();
+        final JitterBuffer[] buffer = new JitterBuffer[1];
+        buffer[0] = new JitterBuffer(8, DELAY, new JitterBuffer.PacketHandler() {
+            @Override
+            public void packetReleased(DataPacket packet) {
+                released.add(packet.getSequenceNumber());
+                locked.add(Thread.holdsLock(buffer[0]));
+                if (packet.getSequenceNumber() == 11) {
+                    // re-entering the buffer from the handler keeps the order
+                    DataPacket next = new DataPacket();
+                    next.setSequenceNumber(13);
+                    buffer[0].offer(next, ExtendedSequenceTracker.Result.IN_ORDER, start);
+                }
+            }
+        }, this.executor);
+
+        for (int sequenceNumber : new int[]{10, 12, 11}) {
+            DataPacket packet = new DataPacket();
+            packet.setSequenceNumber(sequenceNumber);
+            buffer[0].offer(packet, ExtendedSequenceTracker.Result.IN_ORDER, this.start);
+        }
+        assertEquals(Arrays.asList(10, 11, 12, 13), released);
+        assertFalse(locked.contains(Boolean.TRUE));
+        assertEquals(0, buffer[0].size());
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private boolean offer(int sequenceNumber, long arrivalMillis) {
+        return this.offer(sequenceNumber, ExtendedSequenceTracker.Result.IN_ORDER, arrivalMillis);
+    }
+
+    private boolean offer(int sequenceNumber, ExtendedSequenceTracker.Result result, long arrivalMillis) {
+        DataPacket packet = new DataPacket();
+        packet.setSequenceNumber(sequenceNumber);
+        packet.setData(new byte[10]);
+        return this.buffer.offer(packet, result, this.start + (arrivalMillis * MILLIS));
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.session.rtp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+
+import sas.systems.imflux.packet.DataPacket;
+import sas.systems.imflux.packet.rtcp.AbstractReportPacket;
+import sas.systems.imflux.packet.rtcp.ControlPacket;
+import sas.systems.imflux.packet.rtcp.ReceiverReportPacket;
+import sas.systems.imflux.packet.rtcp.ReceptionReport;
+import sas.systems.imflux.participant.RtpParticipant;
+import sas.systems.imflux.participant.RtpParticipantInfo;
+import sas.systems.imflux.session.rtp.MultiParticipantSession;
+
+/**
+ * JUnit test for the aggregation of the report blocks of all sources into the report packets of a single compound
+ * packet.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class ReportPacketsTest {
+
+    @Test
+    public void testBlocksOfAllSources() throws Exception {
+        final ReportingSession session = new ReportingSession();
+        final int sources = 70;
+        final DataPacket packet = new DataPacket();
+        packet.setData(new byte[10]);
+        for (int ssrc = 100; ssrc < (100 + sources); ssrc++) {
+            packet.setSsrc(ssrc);
+            final RtpParticipant participant = session.addSource(packet);
+            // the source is valid after two sequential packets
+            for (int seq = 0; seq < 3; seq++) {
+                packet.setSequenceNumber(seq);
+                participant.getReceptionStatistics().packetReceived(packet, seq, 8000);
+            }
+        }
+        // a source which did not pass the probation yet
+        packet.setSsrc(99);
+        session.addSource(packet).getReceptionStatistics().packetReceived(packet, 0, 8000);
+
+        final List<ControlPacket> packets = session.reports();
+        assertEquals(3, packets.size());
+        final Set<Long> reported = new HashSet<>();
+        final int[] expectedBlocks = {31, 31, 8};
+        for (int i = 0; i < packets.size(); i++) {
+            assertTrue(packets.get(i) instanceof ReceiverReportPacket);
+            final AbstractReportPacket report = (AbstractReportPacket) packets.get(i);
+            assertEquals(1, report.getSenderSsrc());
+            assertEquals(expectedBlocks[i], report.getReportCount());
+            for (ReceptionReport block : report.getReports()) {
+                reported.add(block.getSsrc());
+                assertEquals(2, block.getExtendedHighestSequenceNumberReceived());
+            }
+        }
+        assertEquals(sources, reported.size());
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+        final ReportingSession session = new ReportingSession();
+        final int sources = 100;
+        final RtpParticipant[] participants = new RtpParticipant[sources];
+        final DataPacket packet = new DataPacket();
+        packet.setData(new byte[10]);
+        for (int i = 0; i < sources; i++) {
+            packet.setSsrc(100 + i);
+            participants[i] = session.addSource(packet);
+        }
+        receive(participants, packet, 0);
+
+        // 31 blocks in the first packet and 10 blocks in the second one fit into 1000 octets
+        final List<Long> reported = new ArrayList<>();
+        List<ControlPacket> packets = session.reports(1000);
+        assertTrue(encodedSize(packets) <= 1000);
+        assertEquals(41, reportedSsrcs(packets, reported));
+        packets = session.reports(1000);
+        assertTrue(encodedSize(packets) <= 1000);
+        assertEquals(41, reportedSsrcs(packets, reported));
+        // only the sources not reported yet are left, the others were not heard since their report
+        packets = session.reports(1000);
+        assertEquals(18, reportedSsrcs(packets, reported));
+        assertEquals(0, reportedSsrcs(session.reports(1000), reported));
+        for (int i = 0; i < sources; i++) {
+            assertEquals(100 + i, reported.get(i).longValue());
+        }
+
+        // all sources are heard again, the next report continues with the first source
+        receive(participants, packet, 3);
+        reported.clear();
+        assertEquals(41, reportedSsrcs(session.reports(1000), reported));
+        assertEquals(100, reported.get(0).longValue());
+
+        // the limit of a single UDP datagram is never exceeded
+        for (int i = 0; i < 3000; i++) {
+            packet.setSsrc(1000 + i);
+            receive(new RtpParticipant[] {session.addSource(packet)}, packet, 0);
+        }
+        packets = session.reports(65507);
+        assertTrue(encodedSize(packets) <= 65507);
+        // 87 packets with 31 blocks (752 octets each) and one with 3 blocks
+        assertEquals((87 * 31) + 3, reportedSsrcs(packets, reported));
+    }
+
+    @Test
+    public void testNoSources() throws Exception {
+        final List<ControlPacket> packets = new ReportingSession().reports();
+        assertEquals(1, packets.size());
+        assertEquals(0, ((AbstractReportPacket) packets.get(0)).getReportCount());
+    }
+
+    // private helpers ------------------------------------------------------------------------------------------------
+    private static void receive(RtpParticipant[] participants, DataPacket packet, int firstSequenceNumber) {
+        for (RtpParticipant participant : participants) {
+            packet.setSsrc(participant.getSsrc());
+            // the source is valid after two sequential packets
+            for (int seq = firstSequenceNumber; seq < (firstSequenceNumber + 3); seq++) {
+                packet.setSequenceNumber(seq);
+                participant.getReceptionStatistics().packetReceived(packet, seq, 8000);
+            }
+        }
+    }
+
+    private static int reportedSsrcs(List<ControlPacket> packets, List<Long> reported) {
+        int blocks = 0;
+        for (ControlPacket packet : packets) {
+            for (ReceptionReport block : ((AbstractReportPacket) packet).getReports()) {
+                reported.add(block.getSsrc());
+                blocks++;
+            }
+        }
+        return blocks;
+    }
+
+    private static int encodedSize(List<ControlPacket> packets) {
+        int size = 0;
+        for (ControlPacket packet : packets) {
+            final ByteBuf encoded = packet.encode();
+            size += encoded.readableBytes();
+            encoded.release();
+        }
+        return size;
+    }
+
+    // private classes ------------------------------------------------------------------------------------------------
+    private static class ReportingSession extends MultiParticipantSession {
+
+        ReportingSession() {
+            super("reportingSession", 8, RtpParticipant.createReceiver(new RtpParticipantInfo(1), "127.0.0.1",
+                                                                       6000, 6001));
+        }
+
+        RtpParticipant addSource(DataPacket packet) {
+            return this.participantDatabase.getOrCreateParticipantFromDataPacket(
+                    new InetSocketAddress("127.0.0.1", 10000 + (int) packet.getSsrc()), packet);
+        }
+
+        List<ControlPacket> reports() {
+            return this.reports(Integer.MAX_VALUE);
+        }
+
+        List<ControlPacket> reports(int maxSize) {
+            return this.buildReportPackets(1, maxSize);
+        }
+    }
+}
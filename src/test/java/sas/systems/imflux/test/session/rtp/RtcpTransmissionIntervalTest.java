@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.session.rtp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import sas.systems.imflux.session.rtp.RtcpTransmissionInterval;
+
+/**
+ * JUnit test for the class {@link RtcpTransmissionInterval}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class RtcpTransmissionIntervalTest {
+
+    private static final double BANDWIDTH = 400;
+    private static final long SECONDS = 1000000000L;
+
+    @Test
+    public void testMinimumInterval() throws Exception {
+        assertEquals(2.5, RtcpTransmissionInterval.deterministicInterval(2, 0, BANDWIDTH, false, 100, true), 0);
+        assertEquals(5.0, RtcpTransmissionInterval.deterministicInterval(2, 1, BANDWIDTH, true, 100, false), 0);
+    }
+
+    @Test
+    public void testLargeGroup() throws Exception {
+        // the receivers share 75% of the RTCP bandwidth
+        assertEquals((10000 * 100) / (BANDWIDTH * 0.75),
+                RtcpTransmissionInterval.deterministicInterval(10000, 0, BANDWIDTH, false, 100, false), 0.001);
+        // the group uses the same bandwidth regardless of its size
+        final double small = RtcpTransmissionInterval.deterministicInterval(1000, 0, BANDWIDTH, false, 100, false);
+        final double large = RtcpTransmissionInterval.deterministicInterval(100000, 0, BANDWIDTH, false, 100, false);
+        assertEquals((1000 * 100) / small, (100000 * 100) / large, 0.001);
+    }
+
+    @Test
+    public void testSenderShare() throws Exception {
+        // 10 senders share 25% of the RTCP bandwidth
+        assertEquals((10 * 100) / (BANDWIDTH * 0.25),
+                RtcpTransmissionInterval.deterministicInterval(1000, 10, BANDWIDTH, true, 100, false), 0.001);
+        assertEquals((990 * 100) / (BANDWIDTH * 0.75),
+                RtcpTransmissionInterval.deterministicInterval(1000, 10, BANDWIDTH, false, 100, false), 0.001);
+        // too many senders for a separate share
+        assertEquals((1000 * 100) / BANDWIDTH,
+                RtcpTransmissionInterval.deterministicInterval(1000, 500, BANDWIDTH, true, 100, false), 0.001);
+    }
+
+    @Test
+    public void testRandomization() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final RtcpTransmissionInterval interval = new RtcpTransmissionInterval(BANDWIDTH, 72);
+            final double next = (double) interval.start(0, 2) / SECONDS;
+            assertTrue(next >= ((2.5 * 0.5) / RtcpTransmissionInterval.COMPENSATION));
+            assertTrue(next <= ((2.5 * 1.5) / RtcpTransmissionInterval.COMPENSATION));
+        }
+    }
+
+    @Test
+    public void testTimerReconsideration() throws Exception {
+        final RtcpTransmissionInterval interval = new RtcpTransmissionInterval(BANDWIDTH, 72);
+        final long first = interval.start(0, 2);
+        // a report is always due after the maximum of the randomized interval
+        assertTrue(interval.reconsider(10 * SECONDS, 2, 0, false));
+
+        // the group grew a lot in the meantime, the report is postponed
+        assertFalse(interval.reconsider(first, 10000, 0, false));
+        assertTrue(interval.getNextTransmission() > (100 * SECONDS));
+
+        final long next = interval.reportSent(first, 72, 2, 0, false);
+        assertTrue(next > first);
+        assertEquals(100, interval.getAverageSize(), 0.001);
+    }
+
+    @Test
+    public void testReverseReconsideration() throws Exception {
+        final RtcpTransmissionInterval interval = new RtcpTransmissionInterval(BANDWIDTH, 72);
+        final long first = interval.start(0, 1000);
+        assertFalse(interval.membersDecreased(0, 1000));
+
+        assertTrue(interval.membersDecreased(0, 500));
+        assertEquals(first / 2, interval.getNextTransmission(), 1);
+    }
+}
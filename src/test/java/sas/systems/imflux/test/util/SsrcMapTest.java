@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 Sebastian Schmidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package sas.systems.imflux.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import sas.systems.imflux.util.ConcurrentSsrcMap;
+import sas.systems.imflux.util.SsrcMap;
+
+/**
+ * JUnit test for the classes {@link SsrcMap} and {@link ConcurrentSsrcMap}.
+ *
+ * @author <a href="https://github.com/CodeLionX">CodeLionX</a>
+ */
+public class SsrcMapTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        SsrcMap<String> map = new SsrcMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(0xffffffffL, "max"));
+        assertEquals("zero", map.put(0, "null"));
+        assertEquals("null", map.putIfAbsent(0, "zero"));
+        assertEquals(2, map.size());
+
+        assertEquals("null", map.get(0));
+        assertEquals("max", map.get(0xffffffffL));
+        assertNull(map.get(1));
+
+        assertEquals("max", map.remove(0xffffffffL));
+        assertNull(map.remove(0xffffffffL));
+        assertFalse(map.containsKey(0xffffffffL));
+        assertFalse(map.remove(0, "zero"));
+        assertTrue(map.remove(0, "null"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testGrowAndReuseRemovedSlots() throws Exception {
+        SsrcMap<Long> map = new SsrcMap<>();
+        for (long ssrc = 0; ssrc < 10000; ssrc++) {
+            map.put(ssrc * 7919, ssrc);
+        }
+        for (long ssrc = 0; ssrc < 10000; ssrc += 2) {
+            assertEquals(Long.valueOf(ssrc), map.remove(ssrc * 7919));
+        }
+        for (long ssrc = 0; ssrc < 10000; ssrc += 2) {
+            map.put(ssrc * 7919, -ssrc);
+        }
+        assertEquals(10000, map.size());
+        for (long ssrc = 0; ssrc < 10000; ssrc++) {
+            assertEquals(Long.valueOf((ssrc % 2) == 0 ? -ssrc : ssrc), map.get(ssrc * 7919));
+        }
+    }
+
+    @Test
+    public void testValuesAndMapView() throws Exception {
+        SsrcMap<String> map = new SsrcMap<>();
+        map.put(1, "one");
+        map.put(2, "two");
+        map.put(3, "three");
+
+        Iterator<String> iterator = map.values().iterator();
+        while (iterator.hasNext()) {
+            if ("two".equals(iterator.next())) {
+                iterator.remove();
+            }
+        }
+        assertEquals(2, map.size());
+        assertFalse(map.containsKey(2));
+
+        Map<Long, String> view = map.asMap();
+        assertEquals(2, view.size());
+        assertEquals("one", view.get(1L));
+        assertNull(view.get(2L));
+        assertNull(view.get("1"));
+        assertEquals(new HashSet<>(view.values()), new HashSet<>(map.values()));
+        assertTrue(view.keySet().contains(3L));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMapViewIsReadOnly() throws Exception {
+        ConcurrentSsrcMap<String> map = new ConcurrentSsrcMap<>();
+        map.put(1, "one");
+        map.asMap().put(2L, "two");
+    }
+
+    @Test
+    public void testConcurrentPutGetRemove() throws Exception {
+        ConcurrentSsrcMap<String> map = new ConcurrentSsrcMap<>();
+        assertNull(map.put(0, "zero"));
+        assertEquals("zero", map.putIfAbsent(0, "null"));
+        assertEquals("zero", map.get(0));
+        assertEquals("zero", map.asMap().get(0L));
+        assertEquals(1, map.size());
+
+        Iterator<String> iterator = map.values().iterator();
+        assertEquals("zero", iterator.next());
+        iterator.remove();
+        assertFalse(iterator.hasNext());
+        assertTrue(map.isEmpty());
+        assertNull(map.remove(0));
+    }
+
+    @Test
+    public void testConcurrentReadsWhileGrowing() throws Exception {
+        final ConcurrentSsrcMap<Long> map = new ConcurrentSsrcMap<>();
+        final int entries = 20000;
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        // the first entries are always present and must be found while the table is grown by the writer
+        for (long ssrc = 0; ssrc < 100; ssrc++) {
+            map.put(ssrc, ssrc);
+        }
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while (done.getCount() > 0) {
+                    for (long ssrc = 0; ssrc < 100; ssrc++) {
+                        if (!Long.valueOf(ssrc).equals(map.get(ssrc))) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        };
+        reader.start();
+        for (long ssrc = 100; ssrc < entries; ssrc++) {
+            map.put(ssrc, ssrc);
+            if ((ssrc % 3) == 0) {
+                map.remove(ssrc);
+            }
+        }
+        done.countDown();
+        reader.join();
+
+        assertEquals(0, errors.get());
+        Set<Long> values = new HashSet<>(map.values());
+        assertEquals(map.size(), values.size());
+        for (long ssrc = 100; ssrc < entries; ssrc++) {
+            assertEquals((ssrc % 3) != 0, values.contains(ssrc));
+        }
+    }
+}